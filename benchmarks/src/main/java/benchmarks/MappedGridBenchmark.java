@@ -0,0 +1,51 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import view.MappedGrid;
+import view.PatternGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a generation of grids too big for the heap, stepped in place in a memory-mapped wire
+ * file written row by row by the pattern generator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class MappedGridBenchmark {
+
+    @Param({"16384", "65536"})
+    public int size;
+
+    @Param({"diodes", "mesh"})
+    public String pattern;
+
+    private File file;
+    private MappedGrid grid;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("benchmark", ".wire");
+        file.deleteOnExit();
+        new PatternGenerator(pattern, size, size).write(file);
+        grid = MappedGrid.open(file.toPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        grid.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long step() {
+        grid.step();
+        return grid.getGeneration();
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import view.PatternGenerator;
+import view.SimulationEngine;
+import view.SimulationModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generations per second on random wire meshes, to see how the engines scale with the
+ * density of the wire and of the signals on it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MeshBenchmark {
+
+    @Param({"naive", "bitsliced", "frontier", "parallel"})
+    public String engine;
+
+    @Param({"512"})
+    public int size;
+
+    @Param({"0.2", "0.8"})
+    public double wireDensity;
+
+    @Param({"0.001", "0.05"})
+    public double headDensity;
+
+    private SimulationModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PatternGenerator generator = new PatternGenerator("mesh", size, size);
+        generator.setWireDensity(wireDensity);
+        generator.setHeadDensity(headDensity);
+        model = generator.toModel();
+        model.setEngine(SimulationEngine.byName(engine));
+        model.step();
+    }
+
+    @Benchmark
+    public int step() {
+        model.step();
+        return model.getChangedCount();
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import view.PatternGenerator;
+import view.SavedSims;
+import view.SimulationModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of saving and loading a simulation through SavedSims, in the binary and the RLE format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SavedSimsBenchmark {
+
+    @Param({"256", "2048"})
+    public int size;
+
+    @Param({".wire", ".rle"})
+    public String extension;
+
+    private final SavedSims savedSims = new SavedSims(".wire");
+    private SimulationModel model;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        model = new PatternGenerator("diodes", size, size).toModel();
+        file = File.createTempFile("benchmark", extension);
+        file.deleteOnExit();
+        savedSims.saveModel(model, 500, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        savedSims.saveModel(model, 500, file);
+    }
+
+    @Benchmark
+    public SimulationModel load() throws IOException, ClassNotFoundException {
+        return savedSims.loadModel(file);
+    }
+}
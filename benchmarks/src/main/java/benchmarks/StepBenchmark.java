@@ -0,0 +1,54 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import view.PatternGenerator;
+import view.SimulationEngine;
+import view.SimulationModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generations per second of every engine on the representative patterns, without any rendering.
+ * step measures single generations (what the GUI does), advance measures batches of 100
+ * generations (what the batch runner does), where engines can skip writing back every generation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StepBenchmark {
+
+    @Param({"naive", "bitsliced", "frontier", "parallel", "hashlife", "netlist", "indexed"})
+    public String engine;
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"clocks", "delaylines", "diodes", "mesh"})
+    public String pattern;
+
+    private SimulationModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new PatternGenerator(pattern, size, size).toModel();
+        model.setEngine(SimulationEngine.byName(engine));
+        //the first step loads the engine's own data structures
+        model.step();
+    }
+
+    @Benchmark
+    public int step() {
+        model.step();
+        return model.getChangedCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public int advance() {
+        model.advance(100);
+        return model.getChangedCount();
+    }
+}
@@ -0,0 +1,274 @@
+package view;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Command line runner for display-less machines: loads a saved simulation, advances it by the
+ * given number of generations with the chosen engine, optionally saves the final state and
+ * prints timing statistics. Only the legacy serialized files need Swing classes to load,
+ * everything else runs without initializing AWT.
+ * <pre>
+ * java view.BatchRunner &lt;input&gt; &lt;generations&gt; [--engine name] [--rule name] [--output file] [--cycles]
+ * java view.BatchRunner &lt;input&gt; &lt;generations&gt; --export file.gif|directory [--stride n] [--region x,y,w,h] [--scale n] [--engine name] [--rule name] [--output file]
+ * java view.BatchRunner &lt;input&gt; &lt;generations&gt; --mapped
+ * </pre>
+ * With --cycles the generations are stepped one by one until the simulation becomes periodic,
+ * then the rest of them is skipped by modular arithmetic.
+ * With --rule the generations are computed by another rule than Wireworld, see {@link Rule#byName}.
+ * With --export a frame of every stride-th generation is written into an animated GIF or into
+ * numbered PNG images in a directory, see {@link FrameExporter}.
+ * With --mapped a packed wire file is memory-mapped and advanced in place instead of being loaded,
+ * so the heap stays small whatever the size of the grid.
+ */
+public class BatchRunner {
+
+    private static final String usage = "usage: BatchRunner <input> <generations> [--engine naive|bitsliced|frontier|parallel|hashlife|netlist|indexed] [--rule wireworld|digits] [--output file] [--cycles] [--export file.gif|directory [--stride n] [--region x,y,w,h] [--scale n]] | --mapped";
+
+    private final SavedSims savedSims = new SavedSims(".wire");
+    private long elapsedNanos;
+    private CycleDetector cycleDetector;
+    private Rule rule = Rule.WIREWORLD;
+    private FrameExporter exporter;
+    private File exportTarget;
+    private int exportedFrames;
+
+    /**
+     * getter for elapsedNanos
+     * @return the time the last run spent computing generations, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * setter for detecting cycles
+     * @param detectCycles whether to skip the periodic part of the run
+     */
+    public void setDetectCycles(boolean detectCycles) {
+        cycleDetector = detectCycles ? new CycleDetector() : null;
+    }
+
+    /**
+     * setter for rule
+     * @param rule the rule to compute the generations by
+     */
+    public void setRule(Rule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * setter for exporting the frames of the runs
+     * @param exporter the exporter with the frame options, or null to export nothing
+     * @param target the .gif file or the directory of the PNG images to export to
+     */
+    public void setExport(FrameExporter exporter, File target) {
+        this.exporter = exporter;
+        exportTarget = target;
+    }
+
+    /**
+     * loads the input, advances it and saves the result
+     * @param input the file to load
+     * @param generations the number of generations to compute
+     * @param engine the engine to compute the generations with
+     * @param output the file to save the final state to, or null
+     * @return the model in its final state
+     * @throws IOException
+     * @throws ClassNotFoundException
+     * @throws IllegalArgumentException if the engine doesn't support the rule
+     */
+    public SimulationModel run(File input, long generations, SimulationEngine engine, File output) throws IOException, ClassNotFoundException {
+        SimulationModel model = savedSims.loadModel(input);
+        //the final state is saved with the speed of the input
+        int timeBetweenSteps = savedSims.getLoadedTimeBetweenSteps();
+        model.setEngine(engine);
+        model.setRule(rule);
+        long start = System.nanoTime();
+        if (exporter != null) {
+            try {
+                exportedFrames = exporter.export(model, exportTarget, generations);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while exporting to " + exportTarget);
+            }
+        } else if (cycleDetector != null) {
+            cycleDetector.advanceTo(model, model.getGeneration() + generations);
+        } else {
+            model.advance(generations);
+        }
+        elapsedNanos = System.nanoTime() - start;
+        if (output != null)
+            savedSims.saveModel(model, timeBetweenSteps, output);
+        return model;
+    }
+
+    /**
+     * maps the input and advances it in place
+     * @param input a packed wire file, it's overwritten by the final state
+     * @param generations the number of generations to compute
+     * @return the grid in its final state, it has to be closed
+     * @throws IOException if the input can't be mapped
+     */
+    public MappedGrid runMapped(File input, long generations) throws IOException {
+        MappedGrid grid = MappedGrid.open(input.toPath());
+        long start = System.nanoTime();
+        grid.advance(generations);
+        elapsedNanos = System.nanoTime() - start;
+        grid.force();
+        return grid;
+    }
+
+    /**
+     * prints the statistics of the last run as key=value lines
+     * @param model the model in its final state
+     * @param generations the number of generations computed
+     * @param out the stream to print to
+     */
+    public void printStatistics(SimulationModel model, long generations, PrintStream out) {
+        printTiming(model.getWidth(), model.getHeight(), model.getEngine().getClass().getSimpleName(),
+                generations, model.getGeneration(), out);
+        out.printf(Locale.ROOT, "rule=%s%n", model.getRule());
+        if (exporter != null)
+            out.printf(Locale.ROOT, "frames=%d%n", exportedFrames);
+        else if (cycleDetector != null)
+            out.printf(Locale.ROOT, "period=%d%n", cycleDetector.getPeriod());
+        out.printf(Locale.ROOT, "heads=%d%n", model.count(CellState.HEAD));
+        out.printf(Locale.ROOT, "tails=%d%n", model.count(CellState.TAIL));
+        out.printf(Locale.ROOT, "wires=%d%n", model.count(CellState.WIRE));
+    }
+
+    /**
+     * prints the statistics of the last mapped run as key=value lines
+     * @param grid the grid in its final state
+     * @param generations the number of generations computed
+     * @param out the stream to print to
+     */
+    public void printStatistics(MappedGrid grid, long generations, PrintStream out) {
+        printTiming(grid.getWidth(), grid.getHeight(), grid.getClass().getSimpleName(), generations, grid.getGeneration(), out);
+        out.printf(Locale.ROOT, "heads=%d%n", grid.count(CellState.HEAD));
+        out.printf(Locale.ROOT, "tails=%d%n", grid.count(CellState.TAIL));
+        out.printf(Locale.ROOT, "wires=%d%n", grid.count(CellState.WIRE));
+    }
+
+    /**
+     * prints the size and the timing of the last run
+     * @param width width of the grid
+     * @param height height of the grid
+     * @param engine the name of the engine
+     * @param generations the number of generations computed
+     * @param finalGeneration the generation reached
+     * @param out the stream to print to
+     */
+    private void printTiming(int width, int height, String engine, long generations, long finalGeneration, PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        long cells = (long) width * height;
+        out.printf(Locale.ROOT, "size=%dx%d%n", width, height);
+        out.printf(Locale.ROOT, "engine=%s%n", engine);
+        out.printf(Locale.ROOT, "generations=%d%n", generations);
+        out.printf(Locale.ROOT, "finalGeneration=%d%n", finalGeneration);
+        out.printf(Locale.ROOT, "elapsedMillis=%.3f%n", elapsedNanos / 1e6);
+        out.printf(Locale.ROOT, "generationsPerSecond=%.1f%n", seconds > 0 ? generations / seconds : 0);
+        out.printf(Locale.ROOT, "cellUpdatesPerSecond=%.1f%n", seconds > 0 ? cells * generations / seconds : 0);
+    }
+
+    /**
+     * returns the given exporter, or a new one with the default options if there is none yet
+     * @param exporter the exporter of the parsed options, or null
+     * @return the exporter
+     */
+    private static FrameExporter orNewExporter(FrameExporter exporter) {
+        return exporter != null ? exporter : new FrameExporter();
+    }
+
+    /**
+     * main method
+     * @param args the input file, the number of generations and the options
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2) {
+            System.err.println(usage);
+            System.exit(2);
+        }
+        File input = new File(args[0]);
+        long generations;
+        SimulationEngine engine = new NaiveEngine();
+        Rule rule = Rule.WIREWORLD;
+        File output = null, export = null;
+        //created only for the frame options, the exporter loads the image classes
+        FrameExporter exporter = null;
+        boolean detectCycles = false, mapped = false, frameOptions = false;
+        try {
+            generations = Long.parseLong(args[1]);
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--engine" -> engine = SimulationEngine.byName(args[++i]);
+                    case "--rule" -> rule = Rule.byName(args[++i]);
+                    case "--output" -> output = new File(args[++i]);
+                    case "--cycles" -> detectCycles = true;
+                    case "--mapped" -> mapped = true;
+                    case "--export" -> export = new File(args[++i]);
+                    case "--stride" -> {
+                        exporter = orNewExporter(exporter);
+                        exporter.setStride(Integer.parseInt(args[++i]));
+                        frameOptions = true;
+                    }
+                    case "--scale" -> {
+                        exporter = orNewExporter(exporter);
+                        exporter.setScale(Integer.parseInt(args[++i]));
+                        frameOptions = true;
+                    }
+                    case "--region" -> {
+                        String[] region = args[++i].split(",");
+                        if (region.length != 4)
+                            throw new IllegalArgumentException("The region has to be x,y,width,height");
+                        exporter = orNewExporter(exporter);
+                        exporter.setRegion(Integer.parseInt(region[0]), Integer.parseInt(region[1]),
+                                Integer.parseInt(region[2]), Integer.parseInt(region[3]));
+                        frameOptions = true;
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (mapped && args.length > 3)
+                throw new IllegalArgumentException("--mapped advances the input in place, it can't be combined with other options");
+            if (frameOptions && export == null)
+                throw new IllegalArgumentException("--stride, --scale and --region need --export");
+            if (export != null && detectCycles)
+                throw new IllegalArgumentException("--export steps through every generation, it can't skip cycles");
+            if (!engine.supports(rule))
+                throw new IllegalArgumentException(engine.getClass().getSimpleName() + " doesn't support the rule " + rule);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage);
+            System.exit(2);
+            return;
+        }
+        BatchRunner runner = new BatchRunner();
+        runner.setDetectCycles(detectCycles);
+        runner.setRule(rule);
+        if (export != null)
+            runner.setExport(orNewExporter(exporter), export);
+        if (mapped) {
+            try (MappedGrid grid = runner.runMapped(input, generations)) {
+                runner.printStatistics(grid, generations, System.out);
+            } catch (IOException e) {
+                System.err.println("Failed to run " + input + ": " + e.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+        try {
+            SimulationModel model = runner.run(input, generations, engine, output);
+            runner.printStatistics(model, generations, System.out);
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Failed to run " + input + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
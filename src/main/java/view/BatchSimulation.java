@@ -0,0 +1,246 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static view.SimulationModel.*;
+
+/**
+ * Runs many variations of the same circuit concurrently, e.g. every input combination of a
+ * truth table. The base pattern is compiled once into a neighbour index (the compact index of
+ * the non-empty cells and their neighbours in compressed sparse rows) that is shared read-only
+ * by every run; a run only owns two state arrays. A variation sets cells of the base pattern
+ * before the run, one that draws or erases wire gets a neighbour index of its own. The runs are
+ * distributed over a fixed pool of threads, and the probed cells of every run are reported.
+ */
+public class BatchSimulation {
+
+    private final int width, height;
+    private final byte[] base;
+    private final Rule rule;
+    private final NeighbourIndex topology;
+    private final ArrayList<Integer> probes = new ArrayList<>();
+    private final int threads;
+
+    /**
+     * constructor of BatchSimulation with a thread per processor
+     * @param base the pattern the variations are applied to, it's copied, the runs use its rule
+     */
+    public BatchSimulation(SimulationModel base) {
+        this(base, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * constructor of BatchSimulation
+     * @param base the pattern the variations are applied to, it's copied, the runs use its rule
+     * @param threads the number of runs computed at the same time
+     */
+    public BatchSimulation(SimulationModel base, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        width = base.getWidth();
+        height = base.getHeight();
+        this.base = base.current().clone();
+        rule = base.getRule();
+        this.threads = threads;
+        topology = new NeighbourIndex(width, height, this.base, 0);
+    }
+
+    /**
+     * adds a cell whose states are reported for every run
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @return the number of the probe, the position of its data in the results
+     */
+    public int addProbe(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") is outside of a " + width + "x" + height + " grid");
+        probes.add(y * width + x);
+        return probes.size() - 1;
+    }
+
+    /**
+     * runs every variation for the given number of generations
+     * @param variations the variations to run
+     * @param generations the number of generations of every run
+     * @return the results in the order of the variations
+     * @throws InterruptedException if the thread is interrupted while waiting for the runs
+     */
+    public List<Result> run(List<Variation> variations, long generations) throws InterruptedException {
+        if (generations < 0)
+            throw new IllegalArgumentException("Cannot advance by " + generations + " generations");
+        int[] probeCells = probes.stream().mapToInt(Integer::intValue).toArray();
+        ArrayList<Callable<Result>> runs = new ArrayList<>();
+        for (Variation variation : variations) {
+            runs.add(() -> run(variation, generations, probeCells));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(variations.size(), 1)));
+        try {
+            ArrayList<Result> results = new ArrayList<>();
+            for (Future<Result> future : executor.invokeAll(runs)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A run of the batch failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * computes one run
+     * @param variation the cells to set before the run
+     * @param generations the number of generations
+     * @param probeCells the probed cells
+     * @return the states of the probed cells
+     */
+    private Result run(Variation variation, long generations, int[] probeCells) {
+        NeighbourIndex topology = this.topology;
+        for (int k = 0; k < variation.size; k++) {
+            int i = variation.cells[k];
+            if ((base[i] == EMPTY) != (variation.states[k] == EMPTY)) {
+                byte[] cells = base.clone();
+                for (int j = 0; j < variation.size; j++) {
+                    cells[variation.cells[j]] = variation.states[j];
+                }
+                topology = new NeighbourIndex(width, height, cells, 0);
+                break;
+            }
+        }
+        byte[] state = topology.state.clone(), nextState = new byte[state.length];
+        if (topology == this.topology) {
+            for (int k = 0; k < variation.size; k++) {
+                int i = topology.indexOf[variation.cells[k]];
+                if (i >= 0)
+                    state[i] = variation.states[k];
+            }
+        }
+        int[] probeIndexes = new int[probeCells.length];
+        for (int p = 0; p < probeCells.length; p++) {
+            probeIndexes[p] = topology.indexOf[probeCells[p]];
+        }
+        Result result = new Result(probeCells.length);
+        for (long g = 1; g <= generations; g++) {
+            IndexedEngine.step(rule, state, nextState, topology.size, topology.rowStart, topology.rowLength, topology.neighbours);
+            byte[] tmp = state;
+            state = nextState;
+            nextState = tmp;
+            for (int p = 0; p < probeIndexes.length; p++) {
+                if (probeIndexes[p] >= 0 && state[probeIndexes[p]] == HEAD)
+                    result.head(p, g);
+            }
+        }
+        for (int p = 0; p < probeIndexes.length; p++) {
+            result.finalStates[p] = probeIndexes[p] >= 0 ? state[probeIndexes[p]] : EMPTY;
+        }
+        return result;
+    }
+
+    /**
+     * the cells to set for one run
+     */
+    public static class Variation {
+
+        private int[] cells = new int[4];
+        private byte[] states = new byte[4];
+        private int size;
+        private final int width, height;
+
+        /**
+         * constructor of Variation
+         * @param width width of the grid
+         * @param height height of the grid
+         */
+        public Variation(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * sets a cell for the run
+         * @param x x coordinate of the cell
+         * @param y y coordinate of the cell
+         * @param state the state of the cell
+         * @return this variation
+         */
+        public Variation set(int x, int y, CellState state) {
+            if (x < 0 || x >= width || y < 0 || y >= height)
+                throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") is outside of a " + width + "x" + height + " grid");
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+            }
+            cells[size] = y * width + x;
+            states[size++] = (byte) state.ordinal();
+            return this;
+        }
+    }
+
+    /**
+     * the states of the probed cells during a run
+     */
+    public static class Result {
+
+        private static final CellState[] cellStates = CellState.values();
+        private final byte[] finalStates;
+        private final int[] headCounts;
+        private final long[] firstHeads;
+
+        /**
+         * constructor of Result
+         * @param probes the number of probes
+         */
+        Result(int probes) {
+            finalStates = new byte[probes];
+            headCounts = new int[probes];
+            firstHeads = new long[probes];
+            Arrays.fill(firstHeads, -1);
+        }
+
+        /**
+         * records a head at a probe
+         * @param probe the number of the probe
+         * @param generation the generation of the head
+         */
+        private void head(int probe, long generation) {
+            if (headCounts[probe]++ == 0)
+                firstHeads[probe] = generation;
+        }
+
+        /**
+         * returns the state of a probed cell at the end of the run
+         * @param probe the number of the probe
+         * @return the final state
+         */
+        public CellState getFinalState(int probe) {
+            return cellStates[finalStates[probe]];
+        }
+
+        /**
+         * returns the number of generations a probed cell was a head in
+         * @param probe the number of the probe
+         * @return the number of heads, 0 if no signal reached the cell
+         */
+        public int getHeadCount(int probe) {
+            return headCounts[probe];
+        }
+
+        /**
+         * returns the first generation a probed cell was a head in
+         * @param probe the number of the probe
+         * @return the generation counted from the start of the run, -1 if no signal reached the cell
+         */
+        public long getFirstHead(int probe) {
+            return firstHeads[probe];
+        }
+    }
+}
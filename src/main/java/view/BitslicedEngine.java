@@ -0,0 +1,220 @@
+package view;
+
+import java.util.Arrays;
+
+import static view.SimulationModel.*;
+
+/**
+ * Dense engine that stores the wire, head and tail cells of every row in separate bitplanes
+ * (one bit per cell, 64 cells per long) and computes a whole word of cells at once.
+ * The "exactly 1 or 2 head neighbours" rule is evaluated with bitwise adder logic, other electron
+ * rules compare the full 4-bit head count with their birth counts.
+ * The planes are cached between calls and reloaded when the model was edited.
+ */
+public class BitslicedEngine implements SimulationEngine {
+
+    private SimulationModel loadedModel;
+    private int loadedModCount;
+    private int width, height, wordsPerRow;
+    private long[] wire, head, tail;
+    private long[] nextWire, nextHead, nextTail;
+    private long[] startWire, startHead, startTail;
+    //horizontal sums of the head plane (bit 0 and bit 1) for three consecutive rows
+    private long[] sumAbove0, sumAbove1, sum0, sum1, sumBelow0, sumBelow1;
+    private int birthCounts;
+
+    @Override
+    public boolean supports(Rule rule) {
+        return rule.isElectronRule();
+    }
+
+    @Override
+    public void advance(SimulationModel model, long generations) {
+        if (model != loadedModel || model.getModCount() != loadedModCount)
+            load(model);
+        birthCounts = model.getRule().getBirthCounts();
+        System.arraycopy(wire, 0, startWire, 0, wire.length);
+        System.arraycopy(head, 0, startHead, 0, head.length);
+        System.arraycopy(tail, 0, startTail, 0, tail.length);
+        for (long g = 0; g < generations; g++) {
+            step();
+        }
+        store(model);
+        model.addGenerations(generations);
+    }
+
+    /**
+     * builds the bitplanes from the state of the model
+     * @param model the model to load
+     */
+    private void load(SimulationModel model) {
+        width = model.getWidth();
+        height = model.getHeight();
+        wordsPerRow = (width + 63) >>> 6;
+        int size = wordsPerRow * height;
+        wire = new long[size];
+        head = new long[size];
+        tail = new long[size];
+        nextWire = new long[size];
+        nextHead = new long[size];
+        nextTail = new long[size];
+        startWire = new long[size];
+        startHead = new long[size];
+        startTail = new long[size];
+        sumAbove0 = new long[wordsPerRow];
+        sumAbove1 = new long[wordsPerRow];
+        sum0 = new long[wordsPerRow];
+        sum1 = new long[wordsPerRow];
+        sumBelow0 = new long[wordsPerRow];
+        sumBelow1 = new long[wordsPerRow];
+        byte[] cells = model.current();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int word = y * wordsPerRow + (x >>> 6);
+                long bit = 1L << x;
+                switch (cells[y * width + x]) {
+                    case WIRE -> wire[word] |= bit;
+                    case HEAD -> head[word] |= bit;
+                    case TAIL -> tail[word] |= bit;
+                }
+            }
+        }
+        loadedModel = model;
+        loadedModCount = model.getModCount();
+    }
+
+    /**
+     * writes the cells that changed since the start of the current advance back into the model
+     * @param model the model to write into
+     */
+    private void store(SimulationModel model) {
+        byte[] cells = model.current();
+        model.resetChanges();
+        for (int y = 0; y < height; y++) {
+            for (int k = 0; k < wordsPerRow; k++) {
+                int word = y * wordsPerRow + k;
+                long diff = (wire[word] ^ startWire[word]) | (head[word] ^ startHead[word]) | (tail[word] ^ startTail[word]);
+                while (diff != 0) {
+                    int bitIndex = Long.numberOfTrailingZeros(diff);
+                    diff &= diff - 1;
+                    long bit = 1L << bitIndex;
+                    int i = y * width + (k << 6) + bitIndex;
+                    if ((head[word] & bit) != 0)
+                        cells[i] = HEAD;
+                    else if ((tail[word] & bit) != 0)
+                        cells[i] = TAIL;
+                    else if ((wire[word] & bit) != 0)
+                        cells[i] = WIRE;
+                    else
+                        cells[i] = EMPTY;
+                    model.recordChange(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * computes one generation from the current planes into the next planes, then swaps them
+     */
+    private void step() {
+        if (height == 0) return;
+        Arrays.fill(sumAbove0, 0);
+        Arrays.fill(sumAbove1, 0);
+        horizontalSum(0, sum0, sum1);
+        for (int y = 0; y < height; y++) {
+            if (y + 1 < height) {
+                horizontalSum(y + 1, sumBelow0, sumBelow1);
+            } else {
+                Arrays.fill(sumBelow0, 0);
+                Arrays.fill(sumBelow1, 0);
+            }
+            int row = y * wordsPerRow;
+            for (int k = 0; k < wordsPerRow; k++) {
+                long a0 = sumAbove0[k], b0 = sum0[k], c0 = sumBelow0[k];
+                //the ones of the three row sums: bit 0 of the count and a carry of weight 2
+                long ones = a0 ^ b0 ^ c0;
+                long carry = (a0 & b0) | (a0 & c0) | (b0 & c0);
+                long p = sumAbove1[k], q = sum1[k], r = sumBelow1[k], s = carry;
+                long born;
+                if (birthCounts == 0b110) {
+                    //four values of weight 2: the count is 1 or 2 if ones is set and none of them is,
+                    //or ones is clear and exactly one of them is
+                    long any = p | q | r | s;
+                    long atLeastTwo = (p & q) | (r & s) | ((p ^ q) & (r ^ s));
+                    born = (ones & ~any) | (~ones & any & ~atLeastTwo);
+                } else {
+                    born = born(ones, p, q, r, s);
+                }
+                int word = row + k;
+                long w = wire[word];
+                long h = w & born;
+                nextHead[word] = h;
+                nextTail[word] = head[word];
+                nextWire[word] = tail[word] | (w & ~h);
+            }
+            long[] tmp0 = sumAbove0, tmp1 = sumAbove1;
+            sumAbove0 = sum0;
+            sumAbove1 = sum1;
+            sum0 = sumBelow0;
+            sum1 = sumBelow1;
+            sumBelow0 = tmp0;
+            sumBelow1 = tmp1;
+        }
+        long[] tmp = wire;
+        wire = nextWire;
+        nextWire = tmp;
+        tmp = head;
+        head = nextHead;
+        nextHead = tmp;
+        tmp = tail;
+        tail = nextTail;
+        nextTail = tmp;
+    }
+
+    /**
+     * adds up the weight 2 values into the 4-bit head count and compares it with the birth counts
+     * @param ones bit 0 of the count
+     * @param p bit 1 of the sum of the row above
+     * @param q bit 1 of the sum of the row
+     * @param r bit 1 of the sum of the row below
+     * @param s the carry of the ones
+     * @return the cells whose count is one of the birth counts
+     */
+    private long born(long ones, long p, long q, long r, long s) {
+        long x = p ^ q ^ r;
+        long fours = (p & q) | (p & r) | (q & r);
+        long twos = x ^ s;
+        long carry = x & s;
+        long fours2 = fours ^ carry;
+        long eights = fours & carry;
+        long born = 0;
+        for (int counts = birthCounts; counts != 0; counts &= counts - 1) {
+            int n = Integer.numberOfTrailingZeros(counts);
+            born |= ((n & 1) != 0 ? ones : ~ones)
+                    & ((n & 2) != 0 ? twos : ~twos)
+                    & ((n & 4) != 0 ? fours2 : ~fours2)
+                    & ((n & 8) != 0 ? eights : ~eights);
+        }
+        return born;
+    }
+
+    /**
+     * adds up the heads of the given row and its left and right neighbour for every cell,
+     * the center is included as well (a wire cell is never a head itself)
+     * @param y the row
+     * @param out0 bit 0 of the sums
+     * @param out1 bit 1 of the sums
+     */
+    private void horizontalSum(int y, long[] out0, long[] out1) {
+        int row = y * wordsPerRow;
+        for (int k = 0; k < wordsPerRow; k++) {
+            long c = head[row + k];
+            long previous = k > 0 ? head[row + k - 1] : 0;
+            long following = k + 1 < wordsPerRow ? head[row + k + 1] : 0;
+            long left = (c << 1) | (previous >>> 63);
+            long right = (c >>> 1) | (following << 63);
+            out0[k] = left ^ c ^ right;
+            out1[k] = (left & c) | (left & right) | (c & right);
+        }
+    }
+}
@@ -3,25 +3,24 @@ package view;
 import javax.swing.*;
 import java.awt.*;
 import java.io.Serializable;
-import java.util.Arrays;
 
 /**
- *
+ * Swing view of one cell. While attached to a SimulationModel the state is read from and
+ * written to the model, otherwise the cell keeps its own state.
  */
 public class Cell extends JButton implements Serializable {
 
-    private static final CellState[] cellCarousel = {CellState.EMPTY, CellState.WIRE, CellState.HEAD, CellState.TAIL};
+    private static final long serialVersionUID = 3345429340686897433L;
     private final int xInM, yInM;
     private CellState cellstate;
-    public boolean needsEvaluation = false;
-    public CellState nextCellState = CellState.EMPTY;
+    private transient SimulationModel model;
 
     /**
      * getter for the cellstate property
      * @return cell's state
      */
     public CellState getCellstate() {
-        return cellstate;
+        return model != null ? model.getState(xInM, yInM) : cellstate;
     }
 
     /**
@@ -29,7 +28,26 @@ public class Cell extends JButton implements Serializable {
      * @param cellstate
      */
     public void setCellstate(CellState cellstate) {
-        this.cellstate = cellstate;
+        if (model != null)
+            model.setState(xInM, yInM, cellstate);
+        else
+            this.cellstate = cellstate;
+    }
+
+    /**
+     * attaches the cell to the given model, the cell's own state is written into the model
+     * @param model the model to attach to
+     */
+    void attach(SimulationModel model) {
+        model.setState(xInM, yInM, cellstate);
+        this.model = model;
+    }
+
+    /**
+     * copies the state from the attached model into the cell's own (serialized) state
+     */
+    void storeState() {
+        cellstate = getCellstate();
     }
 
     /**
@@ -65,20 +83,29 @@ public class Cell extends JButton implements Serializable {
      * sets the cell to the next state
      */
     public void nextCellState() {
-        cellstate = cellCarousel[(Arrays.asList(cellCarousel).indexOf(cellstate) + 1) % cellCarousel.length];
+        setCellstate(getCellstate().nextInCarousel());
     }
 
     /**
      * updates the cell's background according to it's state
      */
     public void updateCellBackground() {
+        setBackground(colorOf(getCellstate()));
+    }
+
+    /**
+     * returns the color cells of the given state are drawn with
+     * @param state the state of the cell
+     * @return the color of the state
+     */
+    static Color colorOf(CellState state) {
         Color color;
-        switch (cellstate) {
+        switch (state) {
             case HEAD -> color = Color.blue;
             case TAIL -> color = Color.red;
             case WIRE -> color = Color.gray;
             default -> color = Color.black;
         }
-        setBackground(color);
+        return color;
     }
 }
\ No newline at end of file
@@ -3,20 +3,50 @@ package view;
 import javax.swing.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Runs a simulation. The state lives in a SimulationModel, the Cell buttons are an optional
+ * Swing view over it (cells is null for a headless grid).
+ * While the simulation is running, the model and the view are only touched by the simulation
+ * thread: edits are put into a lock-free queue that is drained before every generation.
+ */
 public class CellGrid implements Serializable {
 
-    private int timeBetweenSteps;
+    private static final long serialVersionUID = -7221014531261058933L;
+
+    private volatile int timeBetweenSteps;
 
     private final int width, height;
-    private transient ScheduledExecutorService executor;
-    private transient ScheduledFuture<?> scheduledSimulation;
+    private transient ExecutorService executor;
+    private transient Future<?> scheduledSimulation;
+    //true from runSimulation until the loop has exited, a cancelled future is done before that
+    private transient volatile boolean running;
+    private transient volatile Thread simulationThread;
+    private transient SimulationModel model;
+    private transient ArrayList<StepListener> stepListeners = new ArrayList<>();
+    private transient SimulationMetrics metrics;
+    private transient StepHistory history;
+    private transient CycleDetector cycleDetector;
+    private transient EditJournal journal;
+    private transient EditQueue edits = new EditQueue();
+    //the cells edited from the queue before the current step, reported as changed by it
+    private transient int[] editedCells = new int[16];
+    private transient int editedCount;
+    //a clearing was taken from the queue since the last step, the changed cells don't list the cleared ones
+    private transient boolean clearedFromQueue;
     public Cell[][] cells;
     public HashSet<Cell> evaluableCells;
 
@@ -27,31 +57,141 @@ public class CellGrid implements Serializable {
      * @param timeBetweenSteps the time elapsed between each two steps in the simulation
      */
     public CellGrid(int width, int height, int timeBetweenSteps) {
+        this(new SimulationModel(width, height), timeBetweenSteps, true);
+    }
+
+    /**
+     * constructor of CellGrid
+     * @param model the model holding the state of the simulation
+     * @param timeBetweenSteps the time elapsed between each two steps in the simulation
+     * @param withView whether to create the Cell buttons for the grid
+     */
+    public CellGrid(SimulationModel model, int timeBetweenSteps, boolean withView) {
         this.timeBetweenSteps = timeBetweenSteps;
-        this.width = width;
-        this.height = height;
-        cells = new Cell[width][height];
+        this.model = model;
+        this.width = model.getWidth();
+        this.height = model.getHeight();
         evaluableCells = new HashSet<>();
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                Cell cell = new Cell(CellState.EMPTY, j, i);
-                cells[j][i] = cell;
+        if (withView) {
+            cells = new Cell[width][height];
+            for (int i = 0; i < height; i++) {
+                for (int j = 0; j < width; j++) {
+                    Cell cell = new Cell(model.getState(j, i), j, i);
+                    cell.attach(model);
+                    cells[j][i] = cell;
+                }
             }
+            setListenerForCells();
+            fillEvaluableCells();
         }
-        setListenerForCells();
+        metrics = new SimulationMetrics(model);
+        history = new StepHistory();
+        cycleDetector = new CycleDetector();
         initializeExecutor();
     }
 
+    /**
+     * getter for model
+     * @return the model holding the state of the simulation
+     */
+    public SimulationModel getModel() {
+        return model;
+    }
+
+    /**
+     * getter for metrics
+     * @return the instrumentation of the simulation
+     */
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * makes the grid record its steps into the given metrics, which are reset first;
+     * lets a registered MBean outlive the grid it was created for
+     * @param metrics the metrics to record into
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        metrics.reset(model);
+        this.metrics = metrics;
+    }
+
+    /**
+     * sets the engine that computes the generations of the simulation
+     * @param engine the engine to use
+     */
+    public void setEngine(SimulationEngine engine) {
+        model.setEngine(engine);
+    }
+
+    /**
+     * registers a listener that is notified after every step of the simulation and every restored generation
+     * @param listener the listener to add
+     */
+    public void addStepListener(StepListener listener) {
+        stepListeners.add(listener);
+    }
+
+    /**
+     * removes a listener added with addStepListener
+     * @param listener the listener to remove
+     */
+    public void removeStepListener(StepListener listener) {
+        stepListeners.remove(listener);
+    }
+
+    /**
+     * makes the journal record every edit of the simulation, replacing the previous journal
+     * @param journal the journal to record into, or null to stop journaling
+     * @throws IOException if the journal can't be started
+     */
+    public void setJournal(EditJournal journal) throws IOException {
+        if (this.journal != null) {
+            model.setEditListener(null);
+            removeStepListener(this.journal);
+        }
+        this.journal = journal;
+        if (journal != null) {
+            journal.start(this);
+            model.setEditListener(journal);
+            addStepListener(journal);
+        }
+    }
+
+    /**
+     * compacts the journal if it's due, unless the simulation is running and the cells could change meanwhile
+     */
+    private void compactJournalIfDue() {
+        if (journal != null && !isRunning())
+            journal.compactIfDue();
+    }
+
+    /**
+     * tells whether the grid has Cell buttons
+     * @return true if the grid has a Swing view, false if it's headless
+     */
+    public boolean hasView() {
+        return cells != null;
+    }
+
     /**
      * initializes the executor for the simulation
      */
     public void initializeExecutor() {
-        executor = Executors.newScheduledThreadPool(1);
+        executor = Executors.newSingleThreadExecutor();
     }
 
     /**
-     * setter for timeBetweenSteps
-     * @param value
+     * getter for timeBetweenSteps
+     * @return the time elapsed between each two steps in the simulation
+     */
+    public int getTimeBetweenSteps() {
+        return timeBetweenSteps;
+    }
+
+    /**
+     * setter for timeBetweenSteps, takes effect immediately even if the simulation is running
+     * @param value the time between two steps in milliseconds, 0 runs the simulation as fast as possible
      */
     public void setTimeBetweenSteps(int value) {
         timeBetweenSteps = value;
@@ -61,6 +201,8 @@ public class CellGrid implements Serializable {
      * sets the proper mouselistener for all cells in the grid
      */
     public void setListenerForCells() {
+        if (!hasView())
+            return;
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
                 cells[j][i].addMouseListener(new MouseAdapter() {
@@ -69,18 +211,11 @@ public class CellGrid implements Serializable {
                         super.mousePressed(e);
                         Cell cell = (Cell) e.getSource();
                         //left button: next state
-                        if (e.getButton() == 1) {
-                            cell.nextCellState();
-                            if (cell.getCellstate() != CellState.EMPTY)
-                                evaluableCells.add(cell);
-                            else
-                                evaluableCells.remove(cell);
-                        }
+                        if (e.getButton() == 1)
+                            cycleCell(cell.getxInM(), cell.getyInM());
                         //right button: delete (aka set cell to empty)
-                        else if (e.getButton() == 3) {
-                            clearCell(cell);
-                        }
-                        cell.updateCellBackground();
+                        else if (e.getButton() == 3)
+                            editCell(cell.getxInM(), cell.getyInM(), CellState.EMPTY);
                     }
 
                     //"paint" mode
@@ -89,38 +224,117 @@ public class CellGrid implements Serializable {
                         super.mouseEntered(e);
                         Cell cell = (Cell) e.getSource();
                         //left button - paint wire
-                        if (SwingUtilities.isLeftMouseButton(e)) {
-                            cell.setCellstate(CellState.WIRE);
-                            cell.updateCellBackground();
-                            evaluableCells.add(cell);
-                        }
+                        if (SwingUtilities.isLeftMouseButton(e))
+                            editCell(cell.getxInM(), cell.getyInM(), CellState.WIRE);
                         //right button - delete
-                        else if (SwingUtilities.isRightMouseButton(e)) {
-                            clearCell(cell);
-                        }
+                        else if (SwingUtilities.isRightMouseButton(e))
+                            editCell(cell.getxInM(), cell.getyInM(), CellState.EMPTY);
                     }
                 });
             }
         }
     }
 
+    /**
+     * sets the state of the cell at the given coordinates, keeping the Cell view in sync;
+     * while the simulation is running, the edit is queued and made before the next generation
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @param state the new state of the cell
+     * @throws IndexOutOfBoundsException if the cell is outside of the grid
+     */
+    public void editCell(int x, int y, CellState state) {
+        //checked on the calling thread, a queued edit outside of the grid would stop the simulation thread
+        model.index(x, y);
+        if (isRunning()) {
+            edits.offer(x, y, state);
+            return;
+        }
+        applyQueuedEdits();
+        applyEdit(x, y, state);
+        compactJournalIfDue();
+    }
+
+    /**
+     * makes the edits queued while the simulation was running, on the thread that owns the model
+     */
+    private void applyQueuedEdits() {
+        EditQueue.Edit edit;
+        while ((edit = edits.poll()) != null) {
+            if (edit.isClear()) {
+                clearCells();
+                editedCount = 0;
+                clearedFromQueue = true;
+                continue;
+            }
+            applyEdit(edit.x, edit.y, edit.state);
+            if (editedCount == editedCells.length)
+                editedCells = Arrays.copyOf(editedCells, editedCount * 2);
+            editedCells[editedCount++] = model.index(edit.x, edit.y);
+        }
+    }
+
+    /**
+     * sets the state of a cell in the model and the view
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @param state the new state of the cell
+     */
+    private void applyEdit(int x, int y, CellState state) {
+        if (hasView()) {
+            Cell cell = cells[x][y];
+            cell.setCellstate(state);
+            if (state != CellState.EMPTY)
+                evaluableCells.add(cell);
+            else
+                evaluableCells.remove(cell);
+            cell.updateCellBackground();
+        } else {
+            model.setState(x, y, state);
+        }
+    }
+
+    /**
+     * sets the cell at the given coordinates to its next state (empty, wire, head, tail)
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     */
+    public void cycleCell(int x, int y) {
+        editCell(x, y, model.getState(x, y).nextInCarousel());
+    }
+
     /**
      * clears the given cell (i.e. sets it to empty, removes it from evaluableCells and repaints it)
      * @param cell the cell to clear
      */
     private void clearCell(Cell cell) {
         cell.setCellstate(CellState.EMPTY);
-        cell.nextCellState = CellState.EMPTY;
-        cell.needsEvaluation = false;
         evaluableCells.remove(cell);
         cell.updateCellBackground();
     }
 
     /**
-     * clears all cells in the grid using clearCell
+     * clears all cells in the grid; while the simulation is running, the clearing is queued
+     * like the edits
      */
     public void clearAllCells() {
+        if (isRunning()) {
+            edits.offerClear();
+            return;
+        }
+        applyQueuedEdits();
+        clearCells();
+        compactJournalIfDue();
+    }
+
+    /**
+     * clears all cells in the grid using clearCell
+     */
+    private void clearCells() {
         evaluableCells.clear();
+        model.clear();
+        if (!hasView())
+            return;
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
                 clearCell(cells[j][i]);
@@ -129,75 +343,198 @@ public class CellGrid implements Serializable {
     }
 
     /**
-     * runs the simulation infinitely
+     * runs the simulation infinitely on its own thread, one step every timeBetweenSteps
+     * milliseconds, or as fast as possible if timeBetweenSteps is 0. The thread never waits
+     * for the screen: views are notified through the step listeners and should only sample
+     * the latest generation.
      * @throws InterruptedException interrupted exception
      */
     public void runSimulation() throws InterruptedException {
-        Runnable nextStepRunnable = () -> {
+        if (isRunning())
+            return;
+        running = true;
+        Runnable simulationLoop = () -> {
+            simulationThread = Thread.currentThread();
             try {
-                nextStep();
-            } catch (WrongCellTypeException e) {
-                e.printStackTrace();
+                loop();
+            } finally {
+                simulationThread = null;
+                running = false;
             }
         };
-        scheduledSimulation = executor.scheduleAtFixedRate(nextStepRunnable, 0, timeBetweenSteps, TimeUnit.MILLISECONDS);
+        scheduledSimulation = executor.submit(simulationLoop);
     }
 
     /**
-     * stops the simulation if it's currently running
+     * computes the steps until the thread is interrupted
+     */
+    private void loop() {
+        long nextStepTime = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            computeStep();
+            long period = TimeUnit.MILLISECONDS.toNanos(timeBetweenSteps);
+            if (period == 0)
+                continue;
+            nextStepTime += period;
+            long now = System.nanoTime();
+            //if we're late, don't try to catch up with a burst of steps
+            if (nextStepTime <= now) {
+                metrics.recordMissedTicks((now - nextStepTime) / period + 1);
+                nextStepTime = now;
+            } else
+                LockSupport.parkNanos(nextStepTime - now);
+        }
+    }
+
+    /**
+     * stops the simulation if it's currently running, and waits until the current step is
+     * finished, so the model can be used right after it returns (unless it's called by a step
+     * listener on the simulation thread, then the loop exits after the step)
      */
     public void stopSimulation() {
-        if (scheduledSimulation != null)
-            scheduledSimulation.cancel(false);
+        if (scheduledSimulation == null)
+            return;
+        scheduledSimulation.cancel(true);
+        if (Thread.currentThread() == simulationThread)
+            return;
+        //the executor has a single thread, the loop has exited (or never started) once a task after it has run
+        Future<?> barrier = executor.submit(() -> {});
+        boolean interrupted = false;
+        while (true) {
+            try {
+                barrier.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        running = false;
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * tells whether the simulation is running
+     * @return true if the simulation is running
+     */
+    public boolean isRunning() {
+        return running;
     }
 
     /**
-     * calculates and draws the next iteration of the simulation
+     * calculates and draws the next iteration of the simulation; does nothing while the
+     * simulation is running, as only the simulation thread may step the model then
      * @throws WrongCellTypeException wrong cell type exception
      */
     public void nextStep() throws WrongCellTypeException {
-        //find out which cells need to be upgraded...
-        for (Cell cell : evaluableCells) {
-            CellState state = CellState.WIRE;
-            switch (cell.getCellstate()) {
-                case HEAD -> state = CellState.TAIL;
-                case WIRE -> {
-                    if (ShouldTurnIntoHead(cell)) state = CellState.HEAD;
-                }
-            }
-            cell.needsEvaluation = true;
-            cell.nextCellState = state;
-        }
-        //...and update them at once
-        for (Cell cell : evaluableCells) {
-            cell.needsEvaluation = false;
-            cell.setCellstate(cell.nextCellState);
-            cell.updateCellBackground();
+        if (isRunning())
+            return;
+        computeStep();
+    }
+
+    /**
+     * calculates and draws the next iteration of the simulation, on the thread that owns the model
+     */
+    private void computeStep() {
+        applyQueuedEdits();
+        //an edit since the last step invalidates the recorded generations
+        if (!history.contains(model, model.getGeneration()))
+            history.reset(model);
+        long start = System.nanoTime();
+        model.step();
+        long stepped = System.nanoTime();
+        history.record(model);
+        cycleDetector.record(model);
+        //the views haven't seen the queued edits yet
+        for (int k = 0; k < editedCount; k++) {
+            model.recordChange(editedCells[k]);
         }
+        editedCount = 0;
+        updateViews(clearedFromQueue);
+        clearedFromQueue = false;
+        metrics.recordStep(stepped - start, System.nanoTime() - stepped);
+    }
+
+    /**
+     * getter for history
+     * @return the recorded generations of the simulation
+     */
+    public StepHistory getHistory() {
+        return history;
     }
 
-    ///
-    ///otherwise false.
+    /**
+     * restores the previous generation of the simulation
+     * @return false if the simulation is running or the previous generation isn't retained
+     */
+    public boolean stepBack() {
+        return goToGeneration(model.getGeneration() - 1);
+    }
+
+    /**
+     * restores a recorded generation of the simulation and draws it
+     * @param generation the generation to restore
+     * @return false if the simulation is running or the generation isn't retained
+     */
+    public boolean goToGeneration(long generation) {
+        if (isRunning() || !history.goTo(model, generation))
+            return false;
+        updateViews(false);
+        return true;
+    }
+
+    /**
+     * getter for cycleDetector
+     * @return the detector that watches the simulation for a periodic state
+     */
+    public CycleDetector getCycleDetector() {
+        return cycleDetector;
+    }
 
     /**
-     * returns true if exactly 1 or 2 electron heads are next to the given cell, false otherwise
-     * @param wireCell the cell to run the function on
-     * @return true if exactly 1 or 2 electron heads are next to the given cell, false otherwise
-     * @throws WrongCellTypeException wrong cell type exeption
+     * advances the simulation to the given generation and draws it; once the simulation
+     * is periodic, only the remainder of the distance modulo the period is computed
+     * @param generation the generation to reach, not before the current one
+     * @return false if the simulation is running
      */
-    private boolean ShouldTurnIntoHead(Cell wireCell) throws WrongCellTypeException {
-        if (wireCell.getCellstate() != CellState.WIRE)
-            throw new WrongCellTypeException("Wrong type. Expected a wire, but got a " + wireCell.getCellstate() + " instead");
-        int headsNearby = 0;
-        for (int i = wireCell.getyInM() - 1; i <= wireCell.getyInM() + 1; i++) {
-            for (int j = wireCell.getxInM() - 1; j <= wireCell.getxInM() + 1; j++) {
-                if (!inRange(0, width, j) || !inRange(0, height, i))
-                    continue;
-                if (cells[j][i].getCellstate() == CellState.HEAD)
-                    headsNearby++;
+    public boolean advanceTo(long generation) {
+        if (isRunning())
+            return false;
+        cycleDetector.advanceTo(model, generation);
+        //the last advance only knows about its own changes
+        updateViews(true);
+        return true;
+    }
+
+    /**
+     * repaints the cells changed in the model and notifies the step listeners
+     * @param jumped true if the changed cells of the model don't list every changed cell,
+     * then every cell is repainted and the listeners are told about a jump
+     */
+    private void updateViews(boolean jumped) {
+        if (hasView()) {
+            if (jumped) {
+                for (Cell[] column : cells) {
+                    for (Cell cell : column) {
+                        cell.updateCellBackground();
+                    }
+                }
+            } else {
+                //only the cells that changed need to be repainted
+                int[] changed = model.getChangedCells();
+                for (int k = 0; k < model.getChangedCount(); k++) {
+                    cells[changed[k] % width][changed[k] / width].updateCellBackground();
+                }
             }
         }
-        return headsNearby == 1 || headsNearby == 2;
+        for (StepListener listener : stepListeners) {
+            if (jumped)
+                listener.jumped(model);
+            else
+                listener.stepped(model);
+        }
     }
 
     /**
@@ -205,6 +542,8 @@ public class CellGrid implements Serializable {
      */
     public void fillEvaluableCells() {
         evaluableCells.clear();
+        if (!hasView())
+            return;
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
                 if (cells[j][i].getCellstate() != CellState.EMPTY)
@@ -214,14 +553,63 @@ public class CellGrid implements Serializable {
     }
 
     /**
-     * calculates whether x is in between low (inclusive) and high (exclusive)
-     * @param low
-     * @param high
-     * @param x
-     * @return true if x is between low and high, false otherwise
+     * copies the state of the model into the cells before serializing the grid
+     * @param out the stream to write to
+     * @throws IOException
      */
-    private boolean inRange(int low, int high, int x) {
-        return x < high && x >= low;
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (hasView()) {
+            for (Cell[] column : cells) {
+                for (Cell cell : column) {
+                    cell.storeState();
+                }
+            }
+        }
+        out.defaultWriteObject();
     }
 
+    /**
+     * rebuilds the model from the deserialized cells
+     * @param in the stream to read from
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        model = new SimulationModel(width, height);
+        stepListeners = new ArrayList<>();
+        edits = new EditQueue();
+        editedCells = new int[16];
+        metrics = new SimulationMetrics(model);
+        history = new StepHistory();
+        cycleDetector = new CycleDetector();
+        if (hasView()) {
+            for (Cell[] column : cells) {
+                for (Cell cell : column) {
+                    cell.attach(model);
+                }
+            }
+        }
+    }
+
+    /**
+     * gets notified after every step of the simulation
+     */
+    public interface StepListener {
+        /**
+         * called on the thread that computed the step
+         * @param model the model after the step, its changed cells are the ones changed by the step
+         * (or the ones restored when going back in the history)
+         */
+        void stepped(SimulationModel model);
+
+        /**
+         * called instead of stepped when the changed cells of the model don't list every cell
+         * that changed, e.g. after advancing many generations at once
+         * @param model the model after the jump
+         */
+        default void jumped(SimulationModel model) {
+            stepped(model);
+        }
+    }
 }
@@ -1,3 +1,18 @@
 package view;
 
-enum CellState {EMPTY, HEAD, TAIL, WIRE}
+public enum CellState {EMPTY, HEAD, TAIL, WIRE;
+
+    private static final CellState[] cellCarousel = {EMPTY, WIRE, HEAD, TAIL};
+
+    /**
+     * returns the state that follows this one when a cell is clicked (empty, wire, head, tail)
+     * @return the next state in the carousel
+     */
+    public CellState nextInCarousel() {
+        for (int i = 0; i < cellCarousel.length; i++) {
+            if (cellCarousel[i] == this)
+                return cellCarousel[(i + 1) % cellCarousel.length];
+        }
+        return EMPTY;
+    }
+}
@@ -0,0 +1,180 @@
+package view;
+
+import java.util.HashMap;
+
+import static view.SimulationModel.EMPTY;
+
+/**
+ * Sparse, unbounded store of cells, the buffer the pattern readers collect the cells into before
+ * the size of the pattern is known. The cells are stored in chunks of 64x64 cells kept in a hash
+ * map; a chunk is allocated on the first non-empty write and freed when it becomes empty again,
+ * so memory is proportional to the used area instead of the bounding box. It doesn't compute
+ * generations: the simulations run on a bounded SimulationModel made by toModel.
+ */
+public class ChunkedGrid {
+
+    static final int chunkShift = 6;
+    static final int chunkSize = 1 << chunkShift;
+    private static final int chunkMask = chunkSize - 1;
+
+    private final HashMap<Long, Chunk> chunks = new HashMap<>();
+
+    /**
+     * getter for the number of chunks
+     * @return the number of allocated chunks
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * returns the state of the cell at the given coordinates
+     * @param x x coordinate, can be negative
+     * @param y y coordinate, can be negative
+     * @return the state of the cell
+     */
+    public CellState getState(int x, int y) {
+        Chunk chunk = chunks.get(key(x >> chunkShift, y >> chunkShift));
+        if (chunk == null)
+            return CellState.EMPTY;
+        return CellState.values()[chunk.cells[local(x, y)]];
+    }
+
+    /**
+     * sets the state of the cell at the given coordinates
+     * @param x x coordinate, can be negative
+     * @param y y coordinate, can be negative
+     * @param state the new state of the cell
+     */
+    public void setState(int x, int y, CellState state) {
+        int cx = x >> chunkShift, cy = y >> chunkShift;
+        long key = key(cx, cy);
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            if (state == CellState.EMPTY)
+                return;
+            chunk = new Chunk(cx, cy);
+            chunks.put(key, chunk);
+        }
+        chunk.set(local(x, y), (byte) state.ordinal());
+        if (chunk.population == 0)
+            chunks.remove(key);
+    }
+
+    /**
+     * copies the given model into the grid
+     * @param model the model to copy
+     * @param offsetX the x coordinate of the model's top left corner in the grid
+     * @param offsetY the y coordinate of the model's top left corner in the grid
+     */
+    public void load(SimulationModel model, int offsetX, int offsetY) {
+        for (int y = 0; y < model.getHeight(); y++) {
+            for (int x = 0; x < model.getWidth(); x++) {
+                setState(offsetX + x, offsetY + y, model.getState(x, y));
+            }
+        }
+    }
+
+    /**
+     * copies the given rectangle of the grid into a new model
+     * @param fromX x coordinate of the top left corner of the rectangle
+     * @param fromY y coordinate of the top left corner of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @return the model
+     */
+    public SimulationModel toModel(int fromX, int fromY, int width, int height) {
+        SimulationModel model = new SimulationModel(width, height);
+        for (Chunk chunk : chunks.values()) {
+            int chunkX = chunk.cx << chunkShift, chunkY = chunk.cy << chunkShift;
+            for (int ly = 0; ly < chunkSize; ly++) {
+                int y = chunkY + ly - fromY;
+                if (y < 0 || y >= height)
+                    continue;
+                for (int lx = 0; lx < chunkSize; lx++) {
+                    int x = chunkX + lx - fromX;
+                    if (x >= 0 && x < width)
+                        model.set(y * width + x, chunk.cells[(ly << chunkShift) | lx]);
+                }
+            }
+        }
+        return model;
+    }
+
+    /**
+     * returns the smallest rectangle containing every non-empty cell
+     * @return {minX, minY, maxX, maxY} (inclusive), or null if the grid is empty
+     */
+    public int[] getBounds() {
+        int[] bounds = null;
+        for (Chunk chunk : chunks.values()) {
+            for (int i = 0; i < chunkSize * chunkSize; i++) {
+                if (chunk.cells[i] == EMPTY)
+                    continue;
+                int x = (chunk.cx << chunkShift) + (i & chunkMask), y = (chunk.cy << chunkShift) + (i >> chunkShift);
+                if (bounds == null) {
+                    bounds = new int[]{x, y, x, y};
+                } else {
+                    bounds[0] = Math.min(bounds[0], x);
+                    bounds[1] = Math.min(bounds[1], y);
+                    bounds[2] = Math.max(bounds[2], x);
+                    bounds[3] = Math.max(bounds[3], y);
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * packs the coordinates of a chunk into a key
+     * @param cx x coordinate of the chunk
+     * @param cy y coordinate of the chunk
+     * @return the key of the chunk
+     */
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /**
+     * calculates the index of a cell inside of its chunk
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @return the index in the chunk
+     */
+    private static int local(int x, int y) {
+        return ((y & chunkMask) << chunkShift) | (x & chunkMask);
+    }
+
+    /**
+     * a 64x64 block of cells
+     */
+    private static class Chunk {
+
+        final int cx, cy;
+        final byte[] cells = new byte[chunkSize * chunkSize];
+        int population;
+
+        /**
+         * constructor of Chunk
+         * @param cx x coordinate of the chunk
+         * @param cy y coordinate of the chunk
+         */
+        Chunk(int cx, int cy) {
+            this.cx = cx;
+            this.cy = cy;
+        }
+
+        /**
+         * sets a cell and updates the number of non-empty cells
+         * @param i index of the cell in the chunk
+         * @param state the new state
+         */
+        void set(int i, byte state) {
+            if (cells[i] != EMPTY)
+                population--;
+            cells[i] = state;
+            if (state != EMPTY)
+                population++;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * Detects when a simulation settles into a periodic state. The state is summarized by a 64-bit
+ * Zobrist hash (the xor of a pseudo-random key for every non-empty cell and its state) that is
+ * updated only for the changed cells. Brent's algorithm compares the hash with a checkpoint
+ * whose distance doubles every time it's reached, so no table of past hashes is needed; a
+ * matching hash is confirmed by comparing the cells. Once the period is known, later
+ * generations are reached by simulating only the remainder of the distance modulo the period.
+ */
+public class CycleDetector {
+
+    private SimulationModel model;
+    private int modCount;
+    private long generation;
+    private long hash;
+    //the state of the model at the last recorded generation, to know the old state of a changed cell
+    private byte[] shadow;
+    //Brent's algorithm: the checkpoint, the steps since it and the steps after which it's moved
+    private byte[] checkpoint;
+    private long checkpointHash, checkpointGeneration;
+    private long distance, power;
+    private long period, cycleStart;
+
+    /**
+     * getter for hash
+     * @return the Zobrist hash of the last recorded state
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * getter for period
+     * @return the period of the simulation, or 0 if no recurring state was found yet
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * getter for cycleStart
+     * @return a generation that is part of the cycle, valid if the period is known
+     */
+    public long getCycleStart() {
+        return cycleStart;
+    }
+
+    /**
+     * forgets everything and starts watching the current state of the model
+     * @param model the model to watch
+     */
+    public void reset(SimulationModel model) {
+        this.model = model;
+        modCount = model.getModCount();
+        generation = model.getGeneration();
+        shadow = model.current().clone();
+        hash = 0;
+        for (int i = 0; i < shadow.length; i++) {
+            hash ^= key(i, shadow[i]);
+        }
+        period = 0;
+        restartSearch();
+    }
+
+    /**
+     * updates the hash after the model has advanced and looks for a recurring state;
+     * starts over if the model was edited since the last recorded state
+     * @param model the model after advancing
+     */
+    public void record(SimulationModel model) {
+        if (model != this.model || model.getModCount() != modCount) {
+            reset(model);
+            return;
+        }
+        byte[] cells = model.current();
+        int[] changed = model.getChangedCells();
+        for (int k = 0; k < model.getChangedCount(); k++) {
+            int i = changed[k];
+            if (shadow[i] != cells[i]) {
+                hash ^= key(i, shadow[i]) ^ key(i, cells[i]);
+                shadow[i] = cells[i];
+            }
+        }
+        long steps = model.getGeneration() - generation;
+        generation = model.getGeneration();
+        if (period != 0)
+            return;
+        if (steps != 1) {
+            restartSearch();
+            return;
+        }
+        distance++;
+        if (hash == checkpointHash && Arrays.equals(cells, checkpoint)) {
+            period = distance;
+            cycleStart = checkpointGeneration;
+        } else if (distance == power) {
+            power *= 2;
+            moveCheckpoint();
+        }
+    }
+
+    /**
+     * advances the model to the given generation, simulating until the period is found and
+     * then only the remainder of the distance modulo the period
+     * @param model the model to advance
+     * @param target the generation to reach
+     * @throws IllegalArgumentException if the model is already past the target
+     */
+    public void advanceTo(SimulationModel model, long target) {
+        if (target < model.getGeneration())
+            throw new IllegalArgumentException("Cannot go back from generation " + model.getGeneration() + " to " + target);
+        if (model != this.model || model.getModCount() != modCount || model.getGeneration() != generation)
+            reset(model);
+        while (period == 0 && model.getGeneration() < target) {
+            model.step();
+            record(model);
+        }
+        long remainder = (target - model.getGeneration()) % Math.max(period, 1);
+        if (remainder > 0) {
+            model.advance(remainder);
+            record(model);
+        }
+        model.addGenerations(target - model.getGeneration());
+        generation = target;
+    }
+
+    /**
+     * starts Brent's algorithm over from the current state
+     */
+    private void restartSearch() {
+        power = 1;
+        moveCheckpoint();
+    }
+
+    /**
+     * makes the current state the checkpoint
+     */
+    private void moveCheckpoint() {
+        if (checkpoint == null || checkpoint.length != shadow.length)
+            checkpoint = new byte[shadow.length];
+        System.arraycopy(shadow, 0, checkpoint, 0, shadow.length);
+        checkpointHash = hash;
+        checkpointGeneration = generation;
+        distance = 0;
+    }
+
+    /**
+     * calculates the Zobrist key of a cell in a state, mixed from the index and the state
+     * instead of looked up in a table of random numbers
+     * @param i index of the cell
+     * @param state state of the cell
+     * @return the key, 0 for an empty cell
+     */
+    static long key(int i, byte state) {
+        if (state == SimulationModel.EMPTY)
+            return 0;
+        //splitmix64 finalizer
+        long z = ((long) i << 2 | state) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,427 @@
+package view;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-safe autosave of a simulation. Every edit of the model is appended to a journal file as
+ * a fixed size record, and the journal is periodically compacted into a full snapshot in the
+ * binary format. The files are numbered: snapshot N holds the state when journal N was started.
+ * <pre>
+ * record:
+ * index        1 int   the edited cell, clearRecord for clearing every cell,
+ *                      generationRecord if only the generation moved
+ * generation   1 long  the generation of the model at the edit
+ * state        1 byte  the new state ordinal of the cell
+ * checksum     1 int   CRC32C of the fields above
+ * </pre>
+ * Compaction copies the cells between two steps, starts the next journal and writes the
+ * snapshot on a background thread; the older files are only deleted once it's durable. The first
+ * snapshot of a journaled grid is written before journaling starts, so the files of the previous
+ * simulation are kept until the new one can be recovered without them. Recovery
+ * loads the newest complete snapshot and replays every journal from its number on, simulating
+ * forward to the generation of each record; a torn record at the end of a journal is ignored.
+ */
+public class EditJournal implements SimulationModel.EditListener, CellGrid.StepListener, Closeable {
+
+    static final int recordSize = 4 + 8 + 1 + 4;
+    static final int clearRecord = -1, generationRecord = -2;
+    static final long defaultCompactionSeconds = 60;
+    static final long defaultMaxRecords = 1 << 20;
+    private static final Pattern fileName = Pattern.compile("(snapshot|journal)-(\\d+)\\.(?:wire|log)");
+    private static final Logger logger = Logger.getLogger(EditJournal.class.getName());
+
+    private final Path directory;
+    private final long maxRecords;
+    private final ByteBuffer record = ByteBuffer.allocate(recordSize);
+    private final CRC32C checksum = new CRC32C();
+    private final WireFormat wireFormat = new WireFormat();
+    private final ScheduledExecutorService worker;
+    private CellGrid grid;
+    private FileChannel journal;
+    private long sequence;
+    private long records, lastGeneration, snapshotGeneration;
+    private boolean dirty;
+    private volatile boolean compactionDue;
+    private int timeBetweenSteps;
+
+    /**
+     * constructor of EditJournal with the default limits
+     * @param directory the directory of the snapshots and the journals, created if needed
+     */
+    public EditJournal(Path directory) {
+        this(directory, defaultCompactionSeconds, defaultMaxRecords);
+    }
+
+    /**
+     * constructor of EditJournal
+     * @param directory the directory of the snapshots and the journals, created if needed
+     * @param compactionSeconds the time between two compactions, 0 to compact only when the journal is full
+     * @param maxRecords the number of records after which the journal is compacted
+     */
+    public EditJournal(Path directory, long compactionSeconds, long maxRecords) {
+        this.directory = directory;
+        this.maxRecords = maxRecords;
+        worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edit-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (compactionSeconds > 0)
+            worker.scheduleAtFixedRate(() -> compactionDue = true, compactionSeconds, compactionSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * getter for timeBetweenSteps
+     * @return the time between steps of the last recovered simulation
+     */
+    public int getTimeBetweenSteps() {
+        return timeBetweenSteps;
+    }
+
+    /**
+     * restores the simulation from the newest snapshot and the journals after it
+     * @return the model as it was at the last journaled edit, or null if there is nothing to recover
+     * @throws IOException if the snapshot can't be read
+     */
+    public SimulationModel recover() throws IOException {
+        long snapshot = -1;
+        for (long number : numbers("snapshot")) {
+            snapshot = Math.max(snapshot, number);
+        }
+        if (snapshot < 0)
+            return null;
+        SimulationModel model;
+        try (FileChannel channel = FileChannel.open(file("snapshot", snapshot), StandardOpenOption.READ)) {
+            model = wireFormat.read(channel);
+        }
+        timeBetweenSteps = wireFormat.getTimeBetweenSteps();
+        CycleDetector cycleDetector = new CycleDetector();
+        for (long number : numbers("journal")) {
+            if (number >= snapshot)
+                replay(file("journal", number), model, cycleDetector);
+        }
+        return model;
+    }
+
+    /**
+     * starts journaling the edits of the grid: the first snapshot is written and made durable, then
+     * the files of the previous simulation are deleted
+     * @param grid the grid to journal
+     * @throws IOException if the directory or the snapshot can't be written, the previous files are kept then
+     */
+    public synchronized void start(CellGrid grid) throws IOException {
+        Files.createDirectories(directory);
+        closeJournal();
+        this.grid = null;
+        for (long number : numbers("journal")) {
+            sequence = Math.max(sequence, number);
+        }
+        for (long number : numbers("snapshot")) {
+            sequence = Math.max(sequence, number);
+        }
+        compactionDue = false;
+        SimulationModel copy = copy(grid.getModel());
+        long number = ++sequence;
+        writeSnapshot(copy, grid.getTimeBetweenSteps(), number);
+        this.grid = grid;
+        openJournal(number);
+    }
+
+    /**
+     * appends an edit to the journal
+     * @param model the edited model
+     * @param index index of the cell
+     * @param state the new state ordinal of the cell
+     */
+    @Override
+    public synchronized void edited(SimulationModel model, int index, byte state) {
+        if (grid != null && model == grid.getModel())
+            append(index, model.getGeneration(), state);
+    }
+
+    /**
+     * appends the clearing of every cell to the journal
+     * @param model the edited model
+     */
+    @Override
+    public synchronized void cleared(SimulationModel model) {
+        if (grid != null && model == grid.getModel())
+            append(clearRecord, model.getGeneration(), SimulationModel.EMPTY);
+    }
+
+    /**
+     * notes a generation that wasn't reached by a single step, and compacts the journal if it's
+     * due; called between two steps, so the copied cells are consistent
+     * @param model the model after the step
+     */
+    @Override
+    public synchronized void stepped(SimulationModel model) {
+        if (grid == null || model != grid.getModel())
+            return;
+        long generation = model.getGeneration();
+        if (generation != lastGeneration + 1)
+            append(generationRecord, generation, SimulationModel.EMPTY);
+        lastGeneration = generation;
+        compactIfDue();
+    }
+
+    /**
+     * compacts the journal if the compaction period has elapsed or the journal is full;
+     * has to be called while the simulation isn't running
+     */
+    public synchronized void compactIfDue() {
+        if (grid != null && (compactionDue || records >= maxRecords) && (records > 0 || snapshotGeneration != grid.getModel().getGeneration()))
+            compact();
+    }
+
+    /**
+     * copies the state of the model, starts the next journal and writes the copy as its snapshot
+     * in the background
+     */
+    synchronized void compact() {
+        if (worker.isShutdown())
+            return;
+        compactionDue = false;
+        SimulationModel copy = copy(grid.getModel());
+        int timeBetweenSteps = grid.getTimeBetweenSteps();
+        long number = ++sequence;
+        openJournal(number);
+        worker.execute(() -> {
+            try {
+                writeSnapshot(copy, timeBetweenSteps, number);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot write snapshot " + number, e);
+            }
+        });
+    }
+
+    /**
+     * copies the cells and the generation of a model for a snapshot
+     * @param model the journaled model
+     * @return the copy
+     */
+    private SimulationModel copy(SimulationModel model) {
+        SimulationModel copy = new SimulationModel(model.getWidth(), model.getHeight());
+        System.arraycopy(model.current(), 0, copy.current(), 0, copy.current().length);
+        copy.addGenerations(model.getGeneration());
+        lastGeneration = snapshotGeneration = model.getGeneration();
+        return copy;
+    }
+
+    /**
+     * closes the current journal and starts the one of the given snapshot; an error is logged,
+     * the edits aren't journaled then
+     * @param number the number of the journal
+     */
+    private void openJournal(long number) {
+        try {
+            closeJournal();
+            journal = FileChannel.open(file("journal", number), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            records = 0;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot start journal " + number, e);
+        }
+    }
+
+    /**
+     * waits for the snapshots being written and closes the journal; the files are kept, so that
+     * the simulation can be recovered
+     * @throws IOException if the journal can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        //under the lock, so append and compact see it before they submit a task
+        synchronized (this) {
+            worker.shutdown();
+        }
+        try {
+            worker.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeJournal();
+            grid = null;
+        }
+    }
+
+    /**
+     * writes a record to the end of the journal; an error is logged, the simulation goes on
+     * @param index the edited cell or the type of the record
+     * @param generation the generation of the model
+     * @param state the new state ordinal of the cell
+     */
+    private void append(int index, long generation, byte state) {
+        if (journal == null)
+            return;
+        record.clear();
+        record.putInt(index).putLong(generation).put(state);
+        checksum.reset();
+        checksum.update(record.array(), 0, recordSize - 4);
+        record.putInt((int) checksum.getValue());
+        record.flip();
+        try {
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            records++;
+            //after close, the worker takes no more tasks
+            if (!dirty && !worker.isShutdown()) {
+                dirty = true;
+                //a journal write survives a crash of the JVM, flushing it to the disk is left to the worker
+                worker.execute(this::force);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot write the journal", e);
+        }
+    }
+
+    /**
+     * flushes the journal to the disk; the channel is forced outside of the lock, so the edits
+     * and the steps don't wait for the disk
+     */
+    private void force() {
+        FileChannel channel;
+        synchronized (this) {
+            dirty = false;
+            channel = journal;
+        }
+        try {
+            if (channel != null)
+                channel.force(false);
+        } catch (ClosedChannelException e) {
+            //a compaction has started the next journal meanwhile, its snapshot covers this one
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot flush the journal", e);
+        }
+    }
+
+    /**
+     * writes a snapshot into a temporary file and renames it once it's durable,
+     * then deletes the files it made obsolete
+     * @param model the copied model
+     * @param timeBetweenSteps the time between two steps of the simulation
+     * @param number the number of the snapshot
+     * @throws IOException if the snapshot can't be written, the older files are kept then
+     */
+    private void writeSnapshot(SimulationModel model, int timeBetweenSteps, long number) throws IOException {
+        Path target = file("snapshot", number), temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            //the first snapshot is written on the calling thread, it can't share the buffer of the worker
+            new WireFormat().write(model, timeBetweenSteps, channel);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        deleteBefore(number);
+    }
+
+    /**
+     * applies the records of a journal to the model, up to the first incomplete or corrupt one
+     * @param journalFile the journal to replay
+     * @param model the model to apply the records to
+     * @param cycleDetector the detector used to simulate forward to the generation of a record
+     * @throws IOException if the journal can't be read
+     */
+    private void replay(Path journalFile, SimulationModel model, CycleDetector cycleDetector) throws IOException {
+        byte[] bytes = Files.readAllBytes(journalFile);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= recordSize) {
+            int start = buffer.position();
+            int index = buffer.getInt();
+            long generation = buffer.getLong();
+            byte state = buffer.get();
+            crc.reset();
+            crc.update(bytes, start, recordSize - 4);
+            if (buffer.getInt() != (int) crc.getValue() || index < generationRecord || index >= model.current().length
+                    || state < 0 || state > SimulationModel.WIRE)
+                return;
+            //a generation ahead was simulated, one behind was restored by the edits before it
+            if (generation > model.getGeneration())
+                cycleDetector.advanceTo(model, generation);
+            else
+                model.addGenerations(generation - model.getGeneration());
+            if (index == clearRecord)
+                model.clear();
+            else if (index >= 0)
+                model.set(index, state);
+        }
+    }
+
+    /**
+     * deletes the snapshots and the journals numbered below the given number
+     * @param number the first number to keep
+     * @throws IOException if a file can't be deleted
+     */
+    private void deleteBefore(long number) throws IOException {
+        for (String kind : new String[]{"snapshot", "journal"}) {
+            for (long old : numbers(kind)) {
+                if (old < number)
+                    Files.deleteIfExists(file(kind, old));
+            }
+        }
+    }
+
+    /**
+     * lists the numbers of the snapshots or the journals in the directory
+     * @param kind snapshot or journal
+     * @return the numbers in ascending order
+     * @throws IOException if the directory can't be listed
+     */
+    private ArrayList<Long> numbers(String kind) throws IOException {
+        ArrayList<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory))
+            return numbers;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                Matcher matcher = fileName.matcher(path.getFileName().toString());
+                if (matcher.matches() && matcher.group(1).equals(kind))
+                    numbers.add(Long.parseLong(matcher.group(2)));
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * calculates the path of a snapshot or a journal
+     * @param kind snapshot or journal
+     * @param number the number of the file
+     * @return the path of the file
+     */
+    private Path file(String kind, long number) {
+        return directory.resolve(kind + "-" + number + (kind.equals("snapshot") ? ".wire" : ".log"));
+    }
+
+    /**
+     * closes the current journal if there is one
+     * @throws IOException
+     */
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package view;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free queue of cell edits with any number of producers and a single consumer, so the
+ * UI can edit a running simulation without waiting for it. The edits are linked in a list
+ * whose last node is swapped in atomically by the producers; the consumer owns the first node,
+ * a stub that is replaced by every polled edit. A producer that has swapped in its node but
+ * not linked it yet hides the rest of the list for a moment, its edits are polled next time.
+ */
+class EditQueue {
+
+    private final AtomicReference<Edit> last;
+    //the last polled edit, only used by the consumer
+    private Edit first;
+
+    /**
+     * constructor of EditQueue
+     */
+    EditQueue() {
+        first = new Edit(0, 0, null);
+        last = new AtomicReference<>(first);
+    }
+
+    /**
+     * appends an edit, can be called from any thread
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @param state the new state of the cell
+     */
+    void offer(int x, int y, CellState state) {
+        append(new Edit(x, y, state));
+    }
+
+    /**
+     * appends the clearing of every cell, can be called from any thread
+     */
+    void offerClear() {
+        append(new Edit(-1, -1, null));
+    }
+
+    /**
+     * removes the first edit, can only be called from the consumer thread
+     * @return the first edit, or null if there is none
+     */
+    Edit poll() {
+        Edit next = first.next;
+        if (next == null)
+            return null;
+        first = next;
+        return next;
+    }
+
+    /**
+     * links a node after the last one
+     * @param edit the node to append
+     */
+    private void append(Edit edit) {
+        Edit previous = last.getAndSet(edit);
+        previous.next = edit;
+    }
+
+    /**
+     * an edit of a cell, or the clearing of the grid
+     */
+    static class Edit {
+
+        final int x, y;
+        final CellState state;
+        private volatile Edit next;
+
+        /**
+         * constructor of Edit
+         * @param x x coordinate of the cell
+         * @param y y coordinate of the cell
+         * @param state the new state of the cell, null for clearing the grid
+         */
+        private Edit(int x, int y, CellState state) {
+            this.x = x;
+            this.y = y;
+            this.state = state;
+        }
+
+        /**
+         * tells whether the edit clears the grid
+         * @return true if every cell has to be cleared
+         */
+        boolean isClear() {
+            return state == null;
+        }
+    }
+}
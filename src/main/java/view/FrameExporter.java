@@ -0,0 +1,302 @@
+package view;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exports the generations of a simulation as an animated GIF or a sequence of PNG images,
+ * without a display. The calling thread advances the model and copies the exported region of
+ * every frame; the frames are scaled and encoded on a pool of worker threads, then written in
+ * order. At most two frames per worker are in the pipeline at a time, so the simulation waits
+ * for the encoders instead of filling the memory, and the export runs at the speed of the
+ * encoders rather than in real time.
+ */
+public class FrameExporter {
+
+    //the colors of Cell.colorOf by the ordinal of the state, without loading Swing and AWT
+    private static final int[] stateColors = {0x000000, 0x0000FF, 0xFF0000, 0x808080};
+
+    private int stride = 1;
+    private int scale = 1;
+    private int frameDelay = 100;
+    private int regionX, regionY, regionWidth = -1, regionHeight = -1;
+    private final int threads;
+
+    /**
+     * constructor of FrameExporter with a thread per processor
+     */
+    public FrameExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * constructor of FrameExporter
+     * @param threads the number of frames encoded at the same time
+     */
+    public FrameExporter(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        this.threads = threads;
+    }
+
+    /**
+     * setter for stride
+     * @param stride the number of generations between two frames
+     */
+    public void setStride(int stride) {
+        if (stride < 1)
+            throw new IllegalArgumentException("Invalid stride: " + stride);
+        this.stride = stride;
+    }
+
+    /**
+     * setter for scale
+     * @param scale the size of a cell in pixels
+     */
+    public void setScale(int scale) {
+        if (scale < 1)
+            throw new IllegalArgumentException("Invalid scale: " + scale);
+        this.scale = scale;
+    }
+
+    /**
+     * setter for frameDelay
+     * @param frameDelay the time a frame of a GIF is shown for, in milliseconds
+     */
+    public void setFrameDelay(int frameDelay) {
+        if (frameDelay < 0)
+            throw new IllegalArgumentException("Invalid frame delay: " + frameDelay);
+        this.frameDelay = frameDelay;
+    }
+
+    /**
+     * setter for the exported region, the whole grid is exported by default
+     * @param x x coordinate of the top left cell
+     * @param y y coordinate of the top left cell
+     * @param width width of the region in cells
+     * @param height height of the region in cells
+     */
+    public void setRegion(int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid region: " + x + "," + y + "," + width + "," + height);
+        regionX = x;
+        regionY = y;
+        regionWidth = width;
+        regionHeight = height;
+    }
+
+    /**
+     * advances the model and exports a frame of the current and of every stride-th generation
+     * @param model the model to export, it's advanced by the given number of generations
+     * @param target a .gif file, or the directory of the numbered PNG images
+     * @param generations the number of generations to advance the model by
+     * @return the number of exported frames
+     * @throws IOException if a frame can't be written
+     * @throws InterruptedException if the thread is interrupted while waiting for the encoders
+     * @throws IllegalArgumentException if the region is outside of the model
+     */
+    public int export(SimulationModel model, File target, long generations) throws IOException, InterruptedException {
+        if (generations < 0)
+            throw new IllegalArgumentException("Cannot advance by " + generations + " generations");
+        int width = regionWidth < 0 ? model.getWidth() - regionX : regionWidth;
+        int height = regionHeight < 0 ? model.getHeight() - regionY : regionHeight;
+        if (regionX + width > model.getWidth() || regionY + height > model.getHeight() || width < 1 || height < 1)
+            throw new IllegalArgumentException("The region is outside of the " + model.getWidth() + "x" + model.getHeight() + " grid");
+        long frames = generations / stride + 1;
+        if (frames > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many frames: " + frames);
+        if (target.getName().toLowerCase().endsWith(".gif")) {
+            GifEncoder encoder = new GifEncoder(width * scale, height * scale);
+            int delay = (frameDelay + 5) / 10;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+                encoder.writeHeader(out, stateColors);
+                run(model, generations, (int) frames, width, height,
+                        frame -> () -> encoder.encodeFrame(scale(frame, width, height), delay), out::write);
+                encoder.writeTrailer(out);
+            }
+        } else {
+            if (!target.isDirectory() && !target.mkdirs())
+                throw new IOException("Cannot create the directory " + target);
+            IndexColorModel colorModel = colorModel();
+            int[] number = new int[1];
+            run(model, generations, (int) frames, width, height, frame -> {
+                File file = new File(target, String.format("frame%06d.png", number[0]++));
+                return () -> {
+                    writePng(scale(frame, width, height), width * scale, height * scale, colorModel, file);
+                    return null;
+                };
+            }, bytes -> {});
+        }
+        return (int) frames;
+    }
+
+    /**
+     * runs the pipeline: copies the frames on this thread, encodes them on the workers and
+     * writes the results in order
+     * @param model the model to advance
+     * @param generations the number of generations to advance the model by
+     * @param frames the number of frames
+     * @param width width of the region
+     * @param height height of the region
+     * @param encoder creates the encoding task of a frame
+     * @param writer writes the result of a task
+     * @throws IOException if a task or the writer failed
+     * @throws InterruptedException if the thread is interrupted while waiting for the encoders
+     */
+    private void run(SimulationModel model, long generations, int frames, int width, int height,
+                     FrameEncoder encoder, FrameWriter writer) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        try {
+            for (int f = 0; f < frames; f++) {
+                if (f > 0)
+                    model.advance(stride);
+                pending.add(executor.submit(encoder.encode(copyRegion(model, width, height))));
+                if (pending.size() >= 2 * threads)
+                    write(pending.poll(), writer);
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), writer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long rest = generations - (long) (frames - 1) * stride;
+        if (rest > 0)
+            model.advance(rest);
+    }
+
+    /**
+     * waits for an encoded frame and writes it
+     * @param future the encoding task
+     * @param writer writes the result
+     * @throws IOException if the task or the writer failed
+     * @throws InterruptedException if the thread is interrupted while waiting for the task
+     */
+    private static void write(Future<byte[]> future, FrameWriter writer) throws IOException, InterruptedException {
+        byte[] bytes;
+        try {
+            bytes = future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("Encoding a frame failed", e.getCause());
+        }
+        writer.write(bytes);
+    }
+
+    /**
+     * copies the states of the exported region
+     * @param model the model
+     * @param width width of the region
+     * @param height height of the region
+     * @return the states of the region in row-major order
+     */
+    private byte[] copyRegion(SimulationModel model, int width, int height) {
+        byte[] cells = model.current();
+        byte[] frame = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(cells, model.index(regionX, regionY + y), frame, y * width, width);
+        }
+        return frame;
+    }
+
+    /**
+     * scales a frame up to a block of pixels per cell
+     * @param frame the states of the region
+     * @param width width of the region
+     * @param height height of the region
+     * @return the states of the pixels in row-major order
+     */
+    private byte[] scale(byte[] frame, int width, int height) {
+        if (scale == 1)
+            return frame;
+        int pixelWidth = width * scale;
+        byte[] pixels = new byte[pixelWidth * height * scale];
+        for (int y = 0; y < height; y++) {
+            int row = y * scale * pixelWidth;
+            for (int x = 0; x < width; x++) {
+                byte state = frame[y * width + x];
+                for (int i = 0; i < scale; i++) {
+                    pixels[row + x * scale + i] = state;
+                }
+            }
+            for (int i = 1; i < scale; i++) {
+                System.arraycopy(pixels, row, pixels, row + i * pixelWidth, pixelWidth);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * creates the palette of the PNG images
+     * @return a 2 bit color model with a color per state
+     */
+    private static IndexColorModel colorModel() {
+        byte[] r = new byte[4], g = new byte[4], b = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            r[i] = (byte) (stateColors[i] >> 16);
+            g[i] = (byte) (stateColors[i] >> 8);
+            b[i] = (byte) stateColors[i];
+        }
+        return new IndexColorModel(2, 4, r, g, b);
+    }
+
+    /**
+     * writes a PNG image
+     * @param pixels the states of the pixels
+     * @param width width of the image
+     * @param height height of the image
+     * @param colorModel the palette
+     * @param file the file to write
+     * @throws IOException if the file can't be written
+     */
+    private static void writePng(byte[] pixels, int width, int height, IndexColorModel colorModel, File file) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, colorModel);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        //the raster packs 4 pixels into a byte, the first pixel in the highest bits
+        int rowBytes = (width + 3) / 4;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data[y * rowBytes + x / 4] |= (byte) (pixels[y * width + x] << (6 - 2 * (x & 3)));
+            }
+        }
+        if (!ImageIO.write(image, "png", file))
+            throw new IOException("No PNG writer is available");
+    }
+
+    /**
+     * creates the encoding task of a frame, called on the simulating thread in frame order
+     */
+    private interface FrameEncoder {
+        /**
+         * @param frame the states of the region
+         * @return the task returning the bytes to write
+         */
+        Callable<byte[]> encode(byte[] frame);
+    }
+
+    /**
+     * writes the result of an encoding task, called on the simulating thread in frame order
+     */
+    private interface FrameWriter {
+        /**
+         * @param bytes the result of the task
+         * @throws IOException if it can't be written
+         */
+        void write(byte[] bytes) throws IOException;
+    }
+}
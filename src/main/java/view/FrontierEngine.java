@@ -0,0 +1,217 @@
+package view;
+
+import java.util.Arrays;
+
+import static view.SimulationModel.*;
+
+/**
+ * Sparse engine that only touches the active frontier of the circuit: the electron heads,
+ * the tails and the wires next to a head. Idle wire costs nothing, so the work per
+ * generation is proportional to the signal activity instead of the size of the circuit.
+ * The frontier is cached between calls and rebuilt when the model was edited.
+ */
+public class FrontierEngine implements SimulationEngine {
+
+    private SimulationModel loadedModel;
+    private int loadedModCount;
+    private int width, height;
+    private int[] heads = new int[16], tails = new int[16], nextHeads = new int[16];
+    private int headCount, tailCount, nextHeadCount;
+    //stamps used to deduplicate candidates and touched cells without clearing arrays
+    private int[] candidateStamp, touchedStamp;
+    private int candidateRound, touchedRound;
+    private int[] touched = new int[16];
+    private byte[] touchedOriginal = new byte[16];
+    private int touchedCount;
+    private int birthCounts;
+
+    @Override
+    public boolean supports(Rule rule) {
+        return rule.isElectronRule();
+    }
+
+    @Override
+    public void advance(SimulationModel model, long generations) {
+        if (model != loadedModel || model.getModCount() != loadedModCount)
+            load(model);
+        birthCounts = model.getRule().getBirthCounts();
+        byte[] cells = model.current();
+        model.resetChanges();
+        if (generations == 1) {
+            //the old tails, the old heads (new tails) and the new heads are exactly the changed cells
+            for (int k = 0; k < tailCount; k++) {
+                model.recordChange(tails[k]);
+            }
+            step(cells, false);
+            for (int k = 0; k < tailCount; k++) {
+                model.recordChange(tails[k]);
+            }
+            for (int k = 0; k < headCount; k++) {
+                model.recordChange(heads[k]);
+            }
+        } else if (generations > 1) {
+            touchedCount = 0;
+            if (++touchedRound == 0) {
+                Arrays.fill(touchedStamp, 0);
+                touchedRound = 1;
+            }
+            for (long g = 0; g < generations; g++) {
+                step(cells, true);
+            }
+            for (int k = 0; k < touchedCount; k++) {
+                if (cells[touched[k]] != touchedOriginal[k])
+                    model.recordChange(touched[k]);
+            }
+        }
+        model.addGenerations(generations);
+    }
+
+    /**
+     * getter for headCount
+     * @return the number of electron heads in the frontier
+     */
+    public int getHeadCount() {
+        return headCount;
+    }
+
+    /**
+     * getter for tailCount
+     * @return the number of electron tails in the frontier
+     */
+    public int getTailCount() {
+        return tailCount;
+    }
+
+    /**
+     * rebuilds the frontier from the state of the model
+     * @param model the model to load
+     */
+    private void load(SimulationModel model) {
+        width = model.getWidth();
+        height = model.getHeight();
+        byte[] cells = model.current();
+        candidateStamp = new int[cells.length];
+        touchedStamp = new int[cells.length];
+        candidateRound = 0;
+        touchedRound = 0;
+        headCount = 0;
+        tailCount = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == HEAD) {
+                heads = append(heads, headCount++, i);
+            } else if (cells[i] == TAIL) {
+                tails = append(tails, tailCount++, i);
+            }
+        }
+        loadedModel = model;
+        loadedModCount = model.getModCount();
+    }
+
+    /**
+     * computes one generation in place: heads become tails, tails become wires and
+     * the wires next to a birth count of heads become heads
+     * @param cells the cells of the model
+     * @param track whether to remember the original state of the cells that are about to change
+     */
+    private void step(byte[] cells, boolean track) {
+        if (++candidateRound == 0) {
+            Arrays.fill(candidateStamp, 0);
+            candidateRound = 1;
+        }
+        nextHeadCount = 0;
+        for (int k = 0; k < headCount; k++) {
+            int i = heads[k];
+            int x = i % width, y = i / width;
+            int fromX = Math.max(x - 1, 0), toX = Math.min(x + 1, width - 1);
+            int fromY = Math.max(y - 1, 0), toY = Math.min(y + 1, height - 1);
+            for (int ny = fromY; ny <= toY; ny++) {
+                for (int nx = fromX; nx <= toX; nx++) {
+                    int n = ny * width + nx;
+                    if (cells[n] != WIRE || candidateStamp[n] == candidateRound)
+                        continue;
+                    candidateStamp[n] = candidateRound;
+                    int count = headsAround(cells, nx, ny);
+                    if ((birthCounts >>> count & 1) != 0)
+                        nextHeads = append(nextHeads, nextHeadCount++, n);
+                }
+            }
+        }
+        if (track) {
+            for (int k = 0; k < tailCount; k++) {
+                touch(cells, tails[k]);
+            }
+            for (int k = 0; k < headCount; k++) {
+                touch(cells, heads[k]);
+            }
+            for (int k = 0; k < nextHeadCount; k++) {
+                touch(cells, nextHeads[k]);
+            }
+        }
+        for (int k = 0; k < tailCount; k++) {
+            cells[tails[k]] = WIRE;
+        }
+        for (int k = 0; k < headCount; k++) {
+            cells[heads[k]] = TAIL;
+        }
+        for (int k = 0; k < nextHeadCount; k++) {
+            cells[nextHeads[k]] = HEAD;
+        }
+        //the old heads are the new tails, the new heads replace the old ones
+        int[] tmp = tails;
+        tails = heads;
+        tailCount = headCount;
+        heads = nextHeads;
+        headCount = nextHeadCount;
+        nextHeads = tmp;
+    }
+
+    /**
+     * counts the electron heads in the Moore neighbourhood of the given cell
+     * @param cells the cells of the model
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @return the number of heads around the cell
+     */
+    private int headsAround(byte[] cells, int x, int y) {
+        int heads = 0;
+        int fromX = Math.max(x - 1, 0), toX = Math.min(x + 1, width - 1);
+        int fromY = Math.max(y - 1, 0), toY = Math.min(y + 1, height - 1);
+        for (int i = fromY; i <= toY; i++) {
+            int row = i * width;
+            for (int j = fromX; j <= toX; j++) {
+                if (cells[row + j] == HEAD)
+                    heads++;
+            }
+        }
+        return heads;
+    }
+
+    /**
+     * remembers the original state of a cell the first time it's touched during a multi-generation advance
+     * @param cells the cells of the model
+     * @param i index of the cell
+     */
+    private void touch(byte[] cells, int i) {
+        if (touchedStamp[i] == touchedRound)
+            return;
+        touchedStamp[i] = touchedRound;
+        touched = append(touched, touchedCount, i);
+        if (touchedCount == touchedOriginal.length)
+            touchedOriginal = Arrays.copyOf(touchedOriginal, touchedCount * 2);
+        touchedOriginal[touchedCount++] = cells[i];
+    }
+
+    /**
+     * stores the value at the given position, growing the array if needed
+     * @param array the array to store into
+     * @param position the position to store at
+     * @param value the value to store
+     * @return the array, or a bigger copy of it
+     */
+    private static int[] append(int[] array, int position, int value) {
+        if (position == array.length)
+            array = Arrays.copyOf(array, position * 2);
+        array[position] = value;
+        return array;
+    }
+}
@@ -1,8 +1,13 @@
 package view;
 
+import javax.management.JMException;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
 
 public class GUI {
 
@@ -11,10 +16,17 @@ public class GUI {
     final int gridLayoutWidth, gridLayoutHeight, cellSize;
     private final String editMode = "Szerkesztés mód", runMode = "Aktív szimuláció";
     private CellGrid cellGrid;
+    private GridCanvas gridCanvas;
     private JButton stopButton;
+    //the single steps, disabled while the simulation is running
+    private JButton nextButton;
+    private JMenuItem nextStepItem;
     private JLabel mainLabel;
     private final int timeBetweenSteps;
     private final SavedSims savedSims = new SavedSims(extension);
+    private Supplier<SimulationEngine> engineFactory = NaiveEngine::new;
+    private SimulationMetrics metrics;
+    private EditJournal journal;
 
     /**
      * constructor of the GUI
@@ -41,11 +53,13 @@ public class GUI {
         JPanel mainPanel = new JPanel(new BorderLayout());
         JPanel controlPanel = new JPanel(new FlowLayout());
         JPanel topPanel = new JPanel(new FlowLayout());
-        JPanel buttonPanel = new JPanel(new GridLayout(gridLayoutHeight, gridLayoutWidth));
+        JPanel gridPanel = new JPanel(new BorderLayout());
 
-        drawGrid(buttonPanel);
+        startJournal();
+        publishMetrics();
+        drawGrid(gridPanel);
 
-        JButton nextButton = new JButton("Következő lépés");
+        nextButton = new JButton("Következő lépés");
         nextButton.addActionListener(x -> {
             try {
                 cellGrid.nextStep();
@@ -53,16 +67,18 @@ public class GUI {
                 e.printStackTrace();
             }
         });
+        JButton backButton = new JButton("Előző lépés");
+        backButton.addActionListener(x -> cellGrid.stepBack());
         stopButton = new JButton("Leállítás");
         stopButton.addActionListener(x -> {
             cellGrid.stopSimulation();
-            mainLabel.setText(editMode);
+            showRunning(false);
         });
 
         JLabel speedLabel = new JLabel("A szimuláció sebessége: ");
-        SpinnerModel spinnerModel = new SpinnerNumberModel(timeBetweenSteps, 100, 1000, 100);
+        SpinnerModel spinnerModel = new SpinnerNumberModel(timeBetweenSteps, 0, 1000, 100);
         JSpinner stepTimeSpinner = new JSpinner(spinnerModel);
-        stepTimeSpinner.setToolTipText("Milliszekundumban");
+        stepTimeSpinner.setToolTipText("Milliszekundumban, 0: turbó mód (amilyen gyorsan csak lehet)");
         JButton stepOkButton = new JButton("Ok");
         stepOkButton.addActionListener(x -> cellGrid.setTimeBetweenSteps((int) stepTimeSpinner.getValue()));
 
@@ -71,69 +87,109 @@ public class GUI {
 
         topPanel.add(mainLabel);
 
+        controlPanel.add(backButton);
         controlPanel.add(nextButton);
         controlPanel.add(stopButton);
         controlPanel.add(speedLabel);
         controlPanel.add(stepTimeSpinner);
         controlPanel.add(stepOkButton);
 
-        mainPanel.add(buttonPanel, BorderLayout.CENTER);
+        mainPanel.add(gridPanel, BorderLayout.CENTER);
         mainPanel.add(controlPanel, BorderLayout.SOUTH);
         mainPanel.add(topPanel, BorderLayout.NORTH);
         frame.add(mainPanel);
 
-        createMenuBar(frame, buttonPanel);
+        createMenuBar(frame, gridPanel);
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                //the journal is closed once the simulation can't write it any more
+                cellGrid.stopSimulation();
+                try {
+                    journal.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
         frame.pack();
-        frame.setResizable(false);
         frame.setVisible(true);
     }
 
     /**
-     * draws the button grid
-     * @param buttonPanel the panel to draw the grid on
+     * draws the grid, replacing the canvas of the previous grid if there was one
+     * @param gridPanel the panel to draw the grid on
      */
-    public void drawGrid(JPanel buttonPanel) {
-        buttonPanel.removeAll();
-        for (int i = 0; i < gridLayoutHeight; i++) {
-            for (int j = 0; j < gridLayoutWidth; j++) {
-                cellGrid.cells[j][i].setPreferredSize(new Dimension(cellSize, cellSize));
-                buttonPanel.add(cellGrid.cells[j][i]);
-            }
-        }
+    public void drawGrid(JPanel gridPanel) {
+        gridPanel.removeAll();
+        if (gridCanvas != null)
+            cellGrid.removeStepListener(gridCanvas);
+        gridCanvas = new GridCanvas(cellGrid, cellSize);
+        gridPanel.add(gridCanvas);
+        gridPanel.revalidate();
+    }
+
+    /**
+     * shows whether the simulation is running; the single steps are disabled while it is
+     * @param running true if the simulation has been started, false if it has been stopped
+     */
+    private void showRunning(boolean running) {
+        mainLabel.setText(running ? runMode : editMode);
+        nextButton.setEnabled(!running);
+        nextStepItem.setEnabled(!running);
+    }
+
+    /**
+     * stops the simulation and replaces it with another one, which uses the same engine, metrics and journal
+     * @param grid the new simulation
+     * @param gridPanel the panel to draw the grid on
+     * @throws IOException if the journal can't start recording the new simulation, it's shown anyway
+     */
+    private void replaceGrid(CellGrid grid, JPanel gridPanel) throws IOException {
+        cellGrid.stopSimulation();
+        cellGrid.removeStepListener(gridCanvas);
+        cellGrid.setJournal(null);
+        cellGrid = grid;
+        cellGrid.setEngine(engineFactory.get());
+        cellGrid.setMetrics(metrics);
+        cellGrid.fillEvaluableCells();
+        drawGrid(gridPanel);
+        cellGrid.setJournal(journal);
     }
 
     /**
      * creates the JMenuBar
      * @param frame the frame to create the menubar on
-     * @param buttonPanel the panel of the buttons
+     * @param gridPanel the panel of the buttons
      */
-    private void createMenuBar(JFrame frame, JPanel buttonPanel) {
+    private void createMenuBar(JFrame frame, JPanel gridPanel) {
         JMenuBar menuBar = new JMenuBar();
 
         JMenu fileMenu = new JMenu("Fájl");
         JMenu simMenu = new JMenu("Szimuláció");
+        JMenu viewMenu = new JMenu("Nézet");
         JMenu miscMenu = new JMenu("Egyéb");
 
         JMenuItem loadItem = new JMenuItem("Betöltés");
         loadItem.addActionListener(x -> {
             try {
                 JFileChooser fileChooser = savedSims.getFileChooser();
-                int result = fileChooser.showOpenDialog(buttonPanel);
+                int result = fileChooser.showOpenDialog(gridPanel);
                 if (result != JFileChooser.APPROVE_OPTION) {
                     return;
                 }
 
-                CellGrid response = savedSims.loadFromFile(fileChooser.getSelectedFile());
+                CellGrid response = savedSims.loadFromFile(fileChooser.getSelectedFile(), false);
                 if (response == null)
                     return;
-                cellGrid = response;
-                cellGrid.fillEvaluableCells();
-                drawGrid(buttonPanel);
-                buttonPanel.repaint();
+                replaceGrid(response, gridPanel);
+                showRunning(false);
+                frame.pack();
+                gridPanel.repaint();
                 stopButton.addActionListener(e -> cellGrid.stopSimulation());
             } catch (IOException | ClassNotFoundException e) {
-                JOptionPane.showMessageDialog(buttonPanel, "Nem várt hiba lépett fel betöltés közben", "Hiba", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(gridPanel, "Nem várt hiba lépett fel betöltés közben", "Hiba", JOptionPane.ERROR_MESSAGE);
                 e.printStackTrace();
             }
         });
@@ -142,14 +198,14 @@ public class GUI {
         saveItem.addActionListener(x -> {
             try {
                 JFileChooser fileChooser = savedSims.getFileChooser();
-                int result = fileChooser.showSaveDialog(buttonPanel);
+                int result = fileChooser.showSaveDialog(gridPanel);
                 if (result != JFileChooser.APPROVE_OPTION) {
                     return;
                 }
 
                 savedSims.saveToFile(cellGrid, fileChooser.getSelectedFile());
             } catch (IOException e) {
-                JOptionPane.showMessageDialog(buttonPanel, "Nem várt hiba lépett fel mentés közben", "Hiba", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(gridPanel, "Nem várt hiba lépett fel mentés közben", "Hiba", JOptionPane.ERROR_MESSAGE);
                 e.printStackTrace();
             }
         });
@@ -157,15 +213,14 @@ public class GUI {
         JMenuItem runItem = new JMenuItem("Futtatás");
         runItem.addActionListener(x -> {
             try {
-                mainLabel.setText(runMode);
-                mainLabel.repaint();
+                showRunning(true);
                 cellGrid.runSimulation();
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         });
 
-        JMenuItem nextStepItem = new JMenuItem("Következő lépés");
+        nextStepItem = new JMenuItem("Következő lépés");
         nextStepItem.addActionListener(x -> {
             try {
                 cellGrid.nextStep();
@@ -174,25 +229,120 @@ public class GUI {
             }
         });
 
+        JMenu engineMenu = new JMenu("Motor");
+        ButtonGroup engineGroup = new ButtonGroup();
+        JRadioButtonMenuItem naiveEngineItem = new JRadioButtonMenuItem("Cellánkénti", true);
+        naiveEngineItem.addActionListener(x -> selectEngine(NaiveEngine::new));
+        JRadioButtonMenuItem bitslicedEngineItem = new JRadioButtonMenuItem("Bitszeletelt");
+        bitslicedEngineItem.addActionListener(x -> selectEngine(BitslicedEngine::new));
+        JRadioButtonMenuItem frontierEngineItem = new JRadioButtonMenuItem("Aktív front");
+        frontierEngineItem.addActionListener(x -> selectEngine(FrontierEngine::new));
+        JRadioButtonMenuItem parallelEngineItem = new JRadioButtonMenuItem("Párhuzamos");
+        parallelEngineItem.addActionListener(x -> selectEngine(ParallelEngine::new));
+        JRadioButtonMenuItem hashlifeEngineItem = new JRadioButtonMenuItem("Hashlife");
+        hashlifeEngineItem.addActionListener(x -> selectEngine(HashlifeEngine::new));
+        JRadioButtonMenuItem netlistEngineItem = new JRadioButtonMenuItem("Huzalgráf");
+        netlistEngineItem.addActionListener(x -> selectEngine(NetlistEngine::new));
+        JRadioButtonMenuItem indexedEngineItem = new JRadioButtonMenuItem("Szomszédsági index");
+        indexedEngineItem.addActionListener(x -> selectEngine(IndexedEngine::new));
+        engineGroup.add(naiveEngineItem);
+        engineGroup.add(bitslicedEngineItem);
+        engineGroup.add(frontierEngineItem);
+        engineGroup.add(parallelEngineItem);
+        engineGroup.add(hashlifeEngineItem);
+        engineGroup.add(netlistEngineItem);
+        engineGroup.add(indexedEngineItem);
+        engineMenu.add(naiveEngineItem);
+        engineMenu.add(bitslicedEngineItem);
+        engineMenu.add(frontierEngineItem);
+        engineMenu.add(parallelEngineItem);
+        engineMenu.add(hashlifeEngineItem);
+        engineMenu.add(netlistEngineItem);
+        engineMenu.add(indexedEngineItem);
+
+        JMenuItem zoomInItem = new JMenuItem("Nagyítás");
+        zoomInItem.addActionListener(x -> gridCanvas.zoom(2));
+        JMenuItem zoomOutItem = new JMenuItem("Kicsinyítés");
+        zoomOutItem.addActionListener(x -> gridCanvas.zoom(0.5));
+        JMenuItem fitItem = new JMenuItem("Teljes rács");
+        fitItem.addActionListener(x -> gridCanvas.fitGrid());
+
         JMenuItem clearItem = new JMenuItem("Összes mező törlése");
         clearItem.addActionListener(x ->
         {
-            mainLabel.setText(editMode);
             cellGrid.stopSimulation();
+            showRunning(false);
             cellGrid.clearAllCells();
-            buttonPanel.repaint();
+            gridCanvas.refresh();
         });
 
         fileMenu.add(saveItem);
         fileMenu.add(loadItem);
         simMenu.add(nextStepItem);
         simMenu.add(runItem);
+        simMenu.add(engineMenu);
+        viewMenu.add(zoomInItem);
+        viewMenu.add(zoomOutItem);
+        viewMenu.add(fitItem);
         miscMenu.add(clearItem);
 
         menuBar.add(fileMenu);
         menuBar.add(simMenu);
+        menuBar.add(viewMenu);
         menuBar.add(miscMenu);
 
         frame.setJMenuBar(menuBar);
     }
+
+    /**
+     * selects the engine used by the current and every later loaded simulation
+     * @param engineFactory creates the engine
+     */
+    private void selectEngine(Supplier<SimulationEngine> engineFactory) {
+        this.engineFactory = engineFactory;
+        cellGrid.setEngine(engineFactory.get());
+    }
+
+    /**
+     * restores the simulation from the journal left by the last session, if there is one, and
+     * journals the edits of the simulation from now on; the directory of the journal is given
+     * by the view.journalDirectory system property
+     */
+    private void startJournal() {
+        Path directory = Path.of(System.getProperty("view.journalDirectory",
+                Path.of(System.getProperty("user.home"), ".wireworld", "journal").toString()));
+        journal = new EditJournal(directory);
+        try {
+            SimulationModel recovered = journal.recover();
+            if (recovered != null) {
+                cellGrid = new CellGrid(recovered, journal.getTimeBetweenSteps(), false);
+                cellGrid.setEngine(engineFactory.get());
+            }
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Nem sikerült visszaállítani az előző munkamenetet", "Hiba", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        }
+        try {
+            cellGrid.setJournal(journal);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Nem sikerült elindítani az automatikus mentést", "Hiba", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * publishes the metrics of the simulation through JMX and, if the view.metricsLogSeconds
+     * system property is set, as a periodic log line; loaded simulations record into the same metrics
+     */
+    private void publishMetrics() {
+        metrics = cellGrid.getMetrics();
+        try {
+            metrics.register();
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        long logSeconds = Long.getLong("view.metricsLogSeconds", 0);
+        if (logSeconds > 0)
+            metrics.startLogging(logSeconds);
+    }
 }
@@ -0,0 +1,202 @@
+package view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes animated GIF files with a 4 color palette, one color per state. Every frame is
+ * encoded on its own into a byte array (graphic control extension, image descriptor and LZW
+ * data), so the frames can be compressed on any number of threads and written in order.
+ */
+class GifEncoder {
+
+    //a 2 bit palette: the codes of the pixels are 0-3, then the clear and the end code
+    private static final int minCodeSize = 2;
+    private static final int clearCode = 1 << minCodeSize;
+    private static final int endCode = clearCode + 1;
+    private static final int maxCodeSize = 12;
+
+    private final int width, height;
+
+    /**
+     * constructor of GifEncoder
+     * @param width width of the frames in pixels
+     * @param height height of the frames in pixels
+     */
+    GifEncoder(int width, int height) {
+        if (width < 1 || height < 1 || width > 0xFFFF || height > 0xFFFF)
+            throw new IllegalArgumentException("Invalid GIF size: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * writes the header, the palette and the looping extension
+     * @param out the stream to write to
+     * @param colors the RGB colors of the states, indexed by the state
+     * @throws IOException
+     */
+    void writeHeader(OutputStream out, int[] colors) throws IOException {
+        out.write(new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+        writeShort(out, width);
+        writeShort(out, height);
+        //global color table of 2^(1 + 1) colors
+        out.write(0x80 | 1 << 4 | 1);
+        out.write(0);
+        out.write(0);
+        for (int i = 0; i < 4; i++) {
+            out.write(colors[i] >> 16);
+            out.write(colors[i] >> 8);
+            out.write(colors[i]);
+        }
+        out.write(new byte[]{0x21, (byte) 0xFF, 11, 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0', 3, 1, 0, 0, 0});
+    }
+
+    /**
+     * encodes a frame, can be called from any thread
+     * @param pixels the states of the pixels in row-major order
+     * @param delay the time the frame is shown for, in hundredths of a second
+     * @return the bytes of the frame
+     */
+    byte[] encodeFrame(byte[] pixels, int delay) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pixels.length / 4 + 64);
+        //graphic control extension: keep the frame when the next one is drawn
+        out.write(0x21);
+        out.write(0xF9);
+        out.write(4);
+        out.write(1 << 2);
+        out.write(delay);
+        out.write(delay >> 8);
+        out.write(0);
+        out.write(0);
+        //image descriptor of the whole screen, without local color table
+        out.write(0x2C);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        out.write(width);
+        out.write(width >> 8);
+        out.write(height);
+        out.write(height >> 8);
+        out.write(0);
+        out.write(minCodeSize);
+        new Compressor(out).compress(pixels);
+        out.write(0);
+        return out.toByteArray();
+    }
+
+    /**
+     * writes the end of the file
+     * @param out the stream to write to
+     * @throws IOException
+     */
+    void writeTrailer(OutputStream out) throws IOException {
+        out.write(0x3B);
+    }
+
+    /**
+     * writes a little-endian 16 bit number
+     * @param out the stream to write to
+     * @param value the number
+     * @throws IOException
+     */
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >> 8);
+    }
+
+    /**
+     * LZW compressor of the pixels of a frame. The strings of the dictionary are extended by
+     * one of 4 pixels, so the children of every code fit into a flat array.
+     */
+    private static class Compressor {
+
+        private final ByteArrayOutputStream out;
+        private final int[] children = new int[(1 << maxCodeSize) << minCodeSize];
+        private final byte[] block = new byte[255];
+        private int blockLength;
+        private int nextCode, codeSize;
+        private int bits, bitCount;
+
+        /**
+         * constructor of Compressor
+         * @param out receives the data sub-blocks
+         */
+        Compressor(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * compresses the pixels into data sub-blocks, without the terminating empty block
+         * @param pixels the codes of the pixels
+         */
+        void compress(byte[] pixels) {
+            codeSize = minCodeSize + 1;
+            nextCode = endCode + 1;
+            emit(clearCode);
+            int prefix = pixels[0];
+            for (int i = 1; i < pixels.length; i++) {
+                int pixel = pixels[i];
+                int child = children[prefix << minCodeSize | pixel];
+                if (child != 0) {
+                    prefix = child;
+                    continue;
+                }
+                emit(prefix);
+                if (nextCode < 1 << maxCodeSize) {
+                    children[prefix << minCodeSize | pixel] = nextCode++;
+                } else {
+                    emit(clearCode);
+                    Arrays.fill(children, 0);
+                    nextCode = endCode + 1;
+                    codeSize = minCodeSize + 1;
+                }
+                prefix = pixel;
+            }
+            emit(prefix);
+            emit(endCode);
+            if (bitCount > 0)
+                writeByte(bits);
+            if (blockLength > 0)
+                flushBlock();
+        }
+
+        /**
+         * writes a code, and widens the codes when the decoder's dictionary will need it
+         * @param code the code to write
+         */
+        private void emit(int code) {
+            bits |= code << bitCount;
+            bitCount += codeSize;
+            while (bitCount >= 8) {
+                writeByte(bits);
+                bits >>>= 8;
+                bitCount -= 8;
+            }
+            if (nextCode > (1 << codeSize) - 1 && codeSize < maxCodeSize)
+                codeSize++;
+        }
+
+        /**
+         * appends a byte to the current sub-block
+         * @param b the byte
+         */
+        private void writeByte(int b) {
+            block[blockLength++] = (byte) b;
+            if (blockLength == block.length)
+                flushBlock();
+        }
+
+        /**
+         * writes the current sub-block with its length
+         */
+        private void flushBlock() {
+            out.write(blockLength);
+            out.write(block, 0, blockLength);
+            blockLength = 0;
+        }
+    }
+}
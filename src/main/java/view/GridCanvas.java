@@ -0,0 +1,475 @@
+package view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Draws a pannable and zoomable view of the grid. The cells are kept as one pixel each in a
+ * BufferedImage, only the visible part of it is scaled up when painted. Zoomed out below a pixel
+ * per cell, the view is drawn from the summary tiles of the matching level instead, so painting
+ * costs as much as the screen, not the grid. The mouse wheel zooms around the cursor, dragging
+ * with the middle button pans.
+ * The simulation and the rendering are decoupled: every step marks the cells it changed, and the
+ * first step finished after the render timer requested a frame copies the current states of the
+ * marked cells into a snapshot. The timer then updates only those pixels and summary tiles, and
+ * repaints the rectangle around them. Jumps over many generations copy the whole grid instead.
+ * Mouse presses and drags are translated to cells for editing.
+ */
+public class GridCanvas extends JComponent implements CellGrid.StepListener {
+
+    private static final long serialVersionUID = -3326733713542712826L;
+
+    private static final int[] stateColors = new int[CellState.values().length];
+    private static final Color gridLineColor = new Color(40, 40, 40);
+    private static final Color outsideColor = new Color(64, 64, 64);
+    private static final int framesPerSecond = 60;
+    private static final int maxWidth = 1280, maxHeight = 800;
+    private static final double maxScale = 64, zoomStep = 1.25;
+
+    static {
+        for (CellState state : CellState.values()) {
+            stateColors[state.ordinal()] = Cell.colorOf(state).getRGB();
+        }
+    }
+
+    private final CellGrid cellGrid;
+    private final int gridWidth, gridHeight;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final SummaryTiles tiles;
+    private int lastEditedX = -1, lastEditedY = -1;
+    //pixels per cell, and the cell coordinates of the top left corner of the view
+    private double scale, viewX, viewY;
+    private Point panStart;
+    //the cells changed since the last snapshot, only used by the simulation thread
+    private final long[] dirtyBits;
+    private int[] dirtyCells = new int[64];
+    private int dirtyCount;
+    private boolean resyncNeeded;
+    //the latest sampled cells, guarded by the snapshot: either the whole grid or a list of cells
+    private final byte[] snapshot;
+    private int[] pendingCells = new int[64];
+    private byte[] pendingStates = new byte[64];
+    private int pendingCount;
+    private boolean snapshotReady, snapshotFull;
+    //the cells currently on screen
+    private final byte[] drawn;
+    private volatile boolean frameRequested = true;
+    private final Timer renderTimer = new Timer(1000 / framesPerSecond, e -> drawFrame());
+
+    /**
+     * constructor of GridCanvas
+     * @param cellGrid the grid to draw
+     * @param cellSize the initial size of a cell in pixels (both width and height)
+     */
+    public GridCanvas(CellGrid cellGrid, int cellSize) {
+        this.cellGrid = cellGrid;
+        this.scale = cellSize;
+        SimulationModel model = cellGrid.getModel();
+        gridWidth = model.getWidth();
+        gridHeight = model.getHeight();
+        image = new BufferedImage(Math.max(gridWidth, 1), Math.max(gridHeight, 1), BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        snapshot = new byte[gridWidth * gridHeight];
+        drawn = new byte[gridWidth * gridHeight];
+        Arrays.fill(pixels, stateColors[CellState.EMPTY.ordinal()]);
+        dirtyBits = new long[(gridWidth * gridHeight + 63) / 64];
+        tiles = new SummaryTiles(drawn, gridWidth, gridHeight, stateColors);
+        setPreferredSize(new Dimension(Math.min(gridWidth * cellSize, maxWidth), Math.min(gridHeight * cellSize, maxHeight)));
+        setOpaque(true);
+        refresh();
+        cellGrid.addStepListener(this);
+
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e)) {
+                    panStart = e.getPoint();
+                    return;
+                }
+                int x = cellX(e.getX()), y = cellY(e.getY());
+                if (!inGrid(x, y))
+                    return;
+                //left button: next state
+                if (e.getButton() == MouseEvent.BUTTON1)
+                    cellGrid.cycleCell(x, y);
+                //right button: delete (aka set cell to empty)
+                else if (e.getButton() == MouseEvent.BUTTON3)
+                    cellGrid.editCell(x, y, CellState.EMPTY);
+                lastEditedX = x;
+                lastEditedY = y;
+                cellEdited(x, y);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e))
+                    panStart = null;
+            }
+
+            //"paint" mode
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (panStart != null) {
+                    viewX -= (e.getX() - panStart.x) / scale;
+                    viewY -= (e.getY() - panStart.y) / scale;
+                    panStart = e.getPoint();
+                    clampView();
+                    repaint();
+                    return;
+                }
+                int x = cellX(e.getX()), y = cellY(e.getY());
+                if (!inGrid(x, y) || (x == lastEditedX && y == lastEditedY))
+                    return;
+                //left button - paint wire
+                if (SwingUtilities.isLeftMouseButton(e))
+                    cellGrid.editCell(x, y, CellState.WIRE);
+                //right button - delete
+                else if (SwingUtilities.isRightMouseButton(e))
+                    cellGrid.editCell(x, y, CellState.EMPTY);
+                lastEditedX = x;
+                lastEditedY = y;
+                cellEdited(x, y);
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(Math.pow(zoomStep, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+            }
+        };
+        addMouseListener(mouseAdapter);
+        addMouseMotionListener(mouseAdapter);
+        addMouseWheelListener(mouseAdapter);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                clampView();
+                repaint();
+            }
+        });
+    }
+
+    /**
+     * redraws every cell from the model, used after bulk changes like loading or clearing
+     */
+    public void refresh() {
+        SimulationModel model = cellGrid.getModel();
+        for (int i = 0; i < gridWidth * gridHeight; i++) {
+            draw(i, model.get(i));
+        }
+        repaint();
+    }
+
+    /**
+     * getter for scale
+     * @return the size of a cell in pixels, less than 1 when zoomed out
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * zooms in or out around the center of the view
+     * @param factor the ratio of the new and the current scale
+     */
+    public void zoom(double factor) {
+        zoom(factor, getWidth() / 2, getHeight() / 2);
+    }
+
+    /**
+     * zooms so that the whole grid fits in the view
+     */
+    public void fitGrid() {
+        scale = fitScale();
+        clampView();
+        repaint();
+    }
+
+    /**
+     * zooms in or out keeping the cell under the given point in place
+     * @param factor the ratio of the new and the current scale
+     * @param x x coordinate of the point on the view
+     * @param y y coordinate of the point on the view
+     */
+    private void zoom(double factor, int x, int y) {
+        double cellX = viewX + x / scale, cellY = viewY + y / scale;
+        scale = Math.max(Math.min(scale * factor, maxScale), Math.min(fitScale(), 1));
+        viewX = cellX - x / scale;
+        viewY = cellY - y / scale;
+        clampView();
+        repaint();
+    }
+
+    /**
+     * computes the scale at which the whole grid fits in the view
+     * @return pixels per cell
+     */
+    private double fitScale() {
+        if (getWidth() == 0 || getHeight() == 0)
+            return scale;
+        return Math.min((double) getWidth() / Math.max(gridWidth, 1), (double) getHeight() / Math.max(gridHeight, 1));
+    }
+
+    /**
+     * keeps the grid in the view: a dimension larger than the view can't be scrolled past its
+     * edges, a smaller one is centered
+     */
+    private void clampView() {
+        double visibleWidth = getWidth() / scale, visibleHeight = getHeight() / scale;
+        viewX = visibleWidth < gridWidth ? Math.max(0, Math.min(viewX, gridWidth - visibleWidth)) : (gridWidth - visibleWidth) / 2;
+        viewY = visibleHeight < gridHeight ? Math.max(0, Math.min(viewY, gridHeight - visibleHeight)) : (gridHeight - visibleHeight) / 2;
+        if (getWidth() == 0 || getHeight() == 0)
+            viewX = viewY = 0;
+    }
+
+    /**
+     * marks the cells changed by the step, and copies their states into the snapshot if the render
+     * timer asked for a frame. Called on the simulation thread, so it only costs as much as the
+     * step itself.
+     * @param model the model after the step
+     */
+    @Override
+    public void stepped(SimulationModel model) {
+        int[] changed = model.getChangedCells();
+        for (int k = 0; k < model.getChangedCount() && !resyncNeeded; k++) {
+            markDirty(changed[k]);
+        }
+        if (frameRequested)
+            takeSnapshot(model);
+    }
+
+    /**
+     * marks every cell, as the changed cells of the model are incomplete after a jump
+     * @param model the model after the jump
+     */
+    @Override
+    public void jumped(SimulationModel model) {
+        resyncNeeded = true;
+        if (frameRequested)
+            takeSnapshot(model);
+    }
+
+    /**
+     * adds a cell to the cells changed since the last snapshot; if too many cells changed, the
+     * next snapshot copies the whole grid instead
+     * @param i index of the cell
+     */
+    private void markDirty(int i) {
+        if ((dirtyBits[i >>> 6] & (1L << i)) != 0)
+            return;
+        if (dirtyCount >= snapshot.length / 8) {
+            resyncNeeded = true;
+            return;
+        }
+        dirtyBits[i >>> 6] |= 1L << i;
+        if (dirtyCount == dirtyCells.length)
+            dirtyCells = Arrays.copyOf(dirtyCells, dirtyCount * 2);
+        dirtyCells[dirtyCount++] = i;
+    }
+
+    /**
+     * copies the changed cells into the snapshot for the next frame
+     * @param model the model to copy from
+     */
+    private void takeSnapshot(SimulationModel model) {
+        frameRequested = false;
+        synchronized (snapshot) {
+            snapshotFull = resyncNeeded;
+            if (snapshotFull) {
+                System.arraycopy(model.current(), 0, snapshot, 0, snapshot.length);
+            } else {
+                if (pendingCells.length < dirtyCount) {
+                    pendingCells = new int[dirtyCells.length];
+                    pendingStates = new byte[dirtyCells.length];
+                }
+                for (int k = 0; k < dirtyCount; k++) {
+                    pendingCells[k] = dirtyCells[k];
+                    pendingStates[k] = model.get(dirtyCells[k]);
+                }
+                pendingCount = dirtyCount;
+            }
+            snapshotReady = true;
+        }
+        for (int k = 0; k < dirtyCount; k++) {
+            dirtyBits[dirtyCells[k] >>> 6] = 0;
+        }
+        dirtyCount = 0;
+        resyncNeeded = false;
+    }
+
+    /**
+     * draws the latest snapshot if there is a new one, then requests the next frame
+     */
+    private void drawFrame() {
+        int minX = gridWidth, minY = gridHeight, maxX = -1, maxY = -1;
+        synchronized (snapshot) {
+            if (snapshotReady) {
+                snapshotReady = false;
+                int count = snapshotFull ? snapshot.length : pendingCount;
+                for (int k = 0; k < count; k++) {
+                    int i = snapshotFull ? k : pendingCells[k];
+                    if (!draw(i, snapshotFull ? snapshot[i] : pendingStates[k]))
+                        continue;
+                    int x = i % gridWidth, y = i / gridWidth;
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        frameRequested = true;
+        if (maxX >= 0)
+            repaintCells(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * updates the pixel and the summary tiles of a cell
+     * @param i index of the cell
+     * @param state the new state of the cell
+     * @return false if the cell was already drawn in that state
+     */
+    private boolean draw(int i, byte state) {
+        if (drawn[i] == state)
+            return false;
+        drawn[i] = state;
+        pixels[(i / gridWidth) * image.getWidth() + i % gridWidth] = stateColors[state];
+        tiles.cellChanged(i % gridWidth, i / gridWidth);
+        return true;
+    }
+
+    /**
+     * repaints the part of the view showing the given cells
+     * @param minX x coordinate of the leftmost cell
+     * @param minY y coordinate of the topmost cell
+     * @param maxX x coordinate of the rightmost cell
+     * @param maxY y coordinate of the bottommost cell
+     */
+    private void repaintCells(int minX, int minY, int maxX, int maxY) {
+        //a summary pixel may start up to a block before the cell
+        int block = 1 << detailLevel();
+        int fromX = screenX(minX / block * block), fromY = screenY(minY / block * block);
+        repaint(fromX - 1, fromY - 1, screenX(maxX + 1) - fromX + 2, screenY(maxY + 1) - fromY + 2);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        renderTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        renderTimer.stop();
+        super.removeNotify();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g2.setColor(outsideColor);
+        g2.fill(clip);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        //only the blocks inside the clip are drawn
+        int level = detailLevel(), block = 1 << level;
+        BufferedImage source = level == 0 ? image : tiles.getImage(level);
+        int fromX = Math.max(0, (int) Math.floor((viewX + clip.x / scale) / block));
+        int fromY = Math.max(0, (int) Math.floor((viewY + clip.y / scale) / block));
+        int toX = Math.min(source.getWidth(), (int) Math.ceil((viewX + (clip.x + clip.width) / scale) / block));
+        int toY = Math.min(source.getHeight(), (int) Math.ceil((viewY + (clip.y + clip.height) / scale) / block));
+        if (fromX < toX && fromY < toY && gridWidth > 0 && gridHeight > 0) {
+            g2.drawImage(source, screenX(fromX * block), screenY(fromY * block),
+                    screenX(Math.min(toX * block, gridWidth)), screenY(Math.min(toY * block, gridHeight)),
+                    fromX, fromY, toX, toY, null);
+        }
+        //grid lines in place of the button borders, only inside the clip
+        if (scale >= 4 && fromX < toX && fromY < toY) {
+            g2.setColor(gridLineColor);
+            for (int x = fromX; x <= toX; x++) {
+                g2.drawLine(screenX(x), screenY(fromY), screenX(x), screenY(toY));
+            }
+            for (int y = fromY; y <= toY; y++) {
+                g2.drawLine(screenX(fromX), screenY(y), screenX(toX), screenY(y));
+            }
+        }
+    }
+
+    /**
+     * chooses the level of the summary tiles to draw, the one whose blocks are at least a pixel
+     * @return 0 if a cell is at least a pixel
+     */
+    private int detailLevel() {
+        int level = 0;
+        while ((1 << level) * scale < 1 && level < tiles.getLevels()) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * converts a cell coordinate to a view coordinate
+     * @param x x coordinate of the left edge of a cell
+     * @return the x coordinate on the view
+     */
+    private int screenX(double x) {
+        return (int) Math.floor((x - viewX) * scale);
+    }
+
+    /**
+     * converts a cell coordinate to a view coordinate
+     * @param y y coordinate of the top edge of a cell
+     * @return the y coordinate on the view
+     */
+    private int screenY(double y) {
+        return (int) Math.floor((y - viewY) * scale);
+    }
+
+    /**
+     * converts a view coordinate to a cell coordinate
+     * @param x x coordinate on the view
+     * @return the x coordinate of the cell under it
+     */
+    private int cellX(int x) {
+        return (int) Math.floor(viewX + x / scale);
+    }
+
+    /**
+     * converts a view coordinate to a cell coordinate
+     * @param y y coordinate on the view
+     * @return the y coordinate of the cell under it
+     */
+    private int cellY(int y) {
+        return (int) Math.floor(viewY + y / scale);
+    }
+
+    /**
+     * redraws a single cell after it was edited
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     */
+    private void cellEdited(int x, int y) {
+        draw(y * gridWidth + x, (byte) cellGrid.getModel().getState(x, y).ordinal());
+        repaintCells(x, y, x, y);
+    }
+
+    /**
+     * tells whether the given cell is inside of the grid
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @return true if the cell is in the grid
+     */
+    private boolean inGrid(int x, int y) {
+        return x >= 0 && x < gridWidth && y >= 0 && y < gridHeight;
+    }
+}
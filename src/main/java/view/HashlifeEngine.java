@@ -0,0 +1,451 @@
+package view;
+
+import static view.SimulationModel.*;
+
+/**
+ * Hashlife engine: the grid is stored as a canonicalized quadtree, where equal squares are
+ * represented by the same node, and the future of every node is memoized. Repetitive
+ * circuits can be advanced by 2^k generations in time proportional to k.
+ * The cells outside of the model are empty, which never changes under any rule, so the
+ * pattern never grows beyond the bounds of the model. The memoized results depend on the rule,
+ * they are dropped when the rule of the model changes.
+ * The node cache is bounded: when it grows past maxNodes between two steps, every node that
+ * isn't reachable from the current root is dropped together with all memoized results.
+ */
+public class HashlifeEngine implements SimulationEngine {
+
+    //steps bigger than 2^maxStepExponent are split so that the coordinates fit into a long
+    private static final int maxStepExponent = 60;
+    private static final int defaultMaxNodes = 1 << 22;
+
+    private final int maxNodes;
+    private Node[] table = new Node[1 << 16];
+    private int nodeCount;
+    private final Node[] leaves = new Node[4];
+    private Node[] emptyNodes = new Node[64];
+
+    private SimulationModel loadedModel;
+    private int loadedModCount;
+    private Rule rule;
+    private byte[] ruleTable;
+    private int countedStates;
+    private long loadedGeneration;
+    private Node root;
+    //coordinates of the top left corner of the root in the model
+    private long originX, originY;
+
+    /**
+     * constructor of HashlifeEngine with the default node cache size
+     */
+    public HashlifeEngine() {
+        this(defaultMaxNodes);
+    }
+
+    /**
+     * constructor of HashlifeEngine
+     * @param maxNodes the number of nodes after which unreferenced nodes are collected
+     */
+    public HashlifeEngine(int maxNodes) {
+        this.maxNodes = maxNodes;
+        for (byte state = 0; state < 4; state++) {
+            leaves[state] = new Node(state);
+        }
+    }
+
+    /**
+     * getter for nodeCount
+     * @return the number of canonical nodes in the cache
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public void advance(SimulationModel model, long generations) {
+        if (model != loadedModel || model.getModCount() != loadedModCount || model.getGeneration() != loadedGeneration)
+            load(model);
+        long remaining = generations;
+        for (int j = 0; remaining != 0; j++, remaining >>>= 1) {
+            if ((remaining & 1) == 0)
+                continue;
+            if (j <= maxStepExponent) {
+                step(j);
+            } else {
+                for (long r = 0; r < 1L << (j - maxStepExponent); r++) {
+                    step(maxStepExponent);
+                }
+            }
+        }
+        store(model);
+        model.addGenerations(generations);
+        loadedGeneration = model.getGeneration();
+    }
+
+    /**
+     * advances the root by 2^j generations
+     * @param j the exponent of the step
+     */
+    private void step(int j) {
+        if (nodeCount > maxNodes)
+            collectGarbage();
+        //the pattern has to be in the center half of the root, which is what the result covers
+        expand();
+        while (root.level < j + 2) {
+            expand();
+        }
+        long quarter = 1L << (root.level - 2);
+        root = successor(root, j);
+        originX += quarter;
+        originY += quarter;
+    }
+
+    /**
+     * wraps the root into a twice as big node with the old root in its center
+     */
+    private void expand() {
+        Node e = empty(root.level - 1);
+        long quarter = 1L << (root.level - 1);
+        root = join(
+                join(e, e, e, root.nw),
+                join(e, e, root.ne, e),
+                join(e, root.sw, e, e),
+                join(root.se, e, e, e));
+        originX -= quarter;
+        originY -= quarter;
+    }
+
+    /**
+     * builds the quadtree from the state of the model
+     * @param model the model to load
+     */
+    private void load(SimulationModel model) {
+        if (!model.getRule().equals(rule)) {
+            //the futures of the nodes were computed by the old rule
+            table = new Node[1 << 16];
+            nodeCount = 0;
+            emptyNodes = new Node[64];
+            rule = model.getRule();
+            ruleTable = rule.table();
+            countedStates = rule.getCountedStates();
+        }
+        int width = model.getWidth(), height = model.getHeight();
+        int level = 2;
+        while ((1L << level) < Math.max(width, height)) {
+            level++;
+        }
+        root = build(model.current(), width, height, level, 0, 0);
+        originX = 0;
+        originY = 0;
+        loadedModel = model;
+        loadedModCount = model.getModCount();
+        loadedGeneration = model.getGeneration();
+    }
+
+    /**
+     * builds the node of the given square
+     * @param cells the cells of the model
+     * @param width width of the model
+     * @param height height of the model
+     * @param level level of the node
+     * @param x x coordinate of the top left corner of the square
+     * @param y y coordinate of the top left corner of the square
+     * @return the canonical node
+     */
+    private Node build(byte[] cells, int width, int height, int level, long x, long y) {
+        if (x >= width || y >= height)
+            return empty(level);
+        if (level == 0)
+            return leaves[cells[(int) y * width + (int) x]];
+        long half = 1L << (level - 1);
+        return join(
+                build(cells, width, height, level - 1, x, y),
+                build(cells, width, height, level - 1, x + half, y),
+                build(cells, width, height, level - 1, x, y + half),
+                build(cells, width, height, level - 1, x + half, y + half));
+    }
+
+    /**
+     * writes the quadtree back into the model and records the cells that changed
+     * @param model the model to write into
+     */
+    private void store(SimulationModel model) {
+        model.resetChanges();
+        write(model, root, originX, originY);
+    }
+
+    /**
+     * writes the given node into the model, clipped to the bounds of the model
+     * @param model the model to write into
+     * @param node the node to write
+     * @param x x coordinate of the top left corner of the node
+     * @param y y coordinate of the top left corner of the node
+     */
+    private void write(SimulationModel model, Node node, long x, long y) {
+        int width = model.getWidth(), height = model.getHeight();
+        long size = 1L << node.level;
+        if (x >= width || y >= height || x + size <= 0 || y + size <= 0)
+            return;
+        byte[] cells = model.current();
+        if (node.level == 0) {
+            int i = (int) y * width + (int) x;
+            if (cells[i] != node.state) {
+                cells[i] = node.state;
+                model.recordChange(i);
+            }
+            return;
+        }
+        long half = size >>> 1;
+        write(model, node.nw, x, y);
+        write(model, node.ne, x + half, y);
+        write(model, node.sw, x, y + half);
+        write(model, node.se, x + half, y + half);
+    }
+
+    /**
+     * calculates the center half of the given node, advanced by 2^min(j, level - 2) generations
+     * @param node the node to advance, level 2 or higher
+     * @param j the exponent of the step
+     * @return the advanced center, one level lower than node
+     */
+    private Node successor(Node node, int j) {
+        int k = node.level;
+        j = Math.min(j, k - 2);
+        if (node.result != null && node.resultStep == j)
+            return node.result;
+        Node result;
+        if (!node.active) {
+            //without heads and tails nothing ever changes
+            result = center(node);
+        } else if (k == 2) {
+            result = baseStep(node);
+        } else {
+            Node n00 = node.nw, n02 = node.ne, n20 = node.sw, n22 = node.se;
+            Node n01 = join(n00.ne, n02.nw, n00.se, n02.sw);
+            Node n10 = join(n00.sw, n00.se, n20.nw, n20.ne);
+            Node n11 = join(n00.se, n02.sw, n20.ne, n22.nw);
+            Node n12 = join(n02.sw, n02.se, n22.nw, n22.ne);
+            Node n21 = join(n20.ne, n22.nw, n20.se, n22.sw);
+            Node c00 = successor(n00, j), c01 = successor(n01, j), c02 = successor(n02, j);
+            Node c10 = successor(n10, j), c11 = successor(n11, j), c12 = successor(n12, j);
+            Node c20 = successor(n20, j), c21 = successor(n21, j), c22 = successor(n22, j);
+            if (j < k - 2) {
+                //the nine results are already advanced far enough, only their centers are needed
+                result = join(
+                        join(c00.se, c01.sw, c10.ne, c11.nw),
+                        join(c01.se, c02.sw, c11.ne, c12.nw),
+                        join(c10.se, c11.sw, c20.ne, c21.nw),
+                        join(c11.se, c12.sw, c21.ne, c22.nw));
+            } else {
+                result = join(
+                        successor(join(c00, c01, c10, c11), j),
+                        successor(join(c01, c02, c11, c12), j),
+                        successor(join(c10, c11, c20, c21), j),
+                        successor(join(c11, c12, c21, c22), j));
+            }
+        }
+        node.result = result;
+        node.resultStep = j;
+        return result;
+    }
+
+    /**
+     * returns the center half of the given node without advancing it
+     * @param node the node, level 2 or higher
+     * @return the center of the node
+     */
+    private Node center(Node node) {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    /**
+     * advances the center 2x2 cells of a 4x4 node by one generation
+     * @param node the level 2 node
+     * @return the level 1 node of the advanced center
+     */
+    private Node baseStep(Node node) {
+        byte[] cells = new byte[16];
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                Node quadrant = y < 2 ? (x < 2 ? node.nw : node.ne) : (x < 2 ? node.sw : node.se);
+                Node leaf = (y & 1) == 0 ? ((x & 1) == 0 ? quadrant.nw : quadrant.ne) : ((x & 1) == 0 ? quadrant.sw : quadrant.se);
+                cells[y * 4 + x] = leaf.state;
+            }
+        }
+        Node[] result = new Node[4];
+        for (int y = 1; y <= 2; y++) {
+            for (int x = 1; x <= 2; x++) {
+                byte state = cells[y * 4 + x];
+                int heads = (countedStates >>> state & 1) != 0 ? NaiveEngine.headsAround(cells, 4, 4, x, y) : 0;
+                result[(y - 1) * 2 + x - 1] = leaves[ruleTable[state << 4 | heads]];
+            }
+        }
+        return join(result[0], result[1], result[2], result[3]);
+    }
+
+    /**
+     * returns the canonical empty node of the given level
+     * @param level the level of the node
+     * @return the empty node
+     */
+    private Node empty(int level) {
+        if (level >= emptyNodes.length) {
+            Node[] bigger = new Node[level + 1];
+            System.arraycopy(emptyNodes, 0, bigger, 0, emptyNodes.length);
+            emptyNodes = bigger;
+        }
+        if (emptyNodes[level] == null) {
+            if (level == 0) {
+                emptyNodes[level] = leaves[EMPTY];
+            } else {
+                Node e = empty(level - 1);
+                emptyNodes[level] = join(e, e, e, e);
+            }
+        }
+        return emptyNodes[level];
+    }
+
+    /**
+     * returns the canonical node with the given quadrants
+     * @param nw north-west quadrant
+     * @param ne north-east quadrant
+     * @param sw south-west quadrant
+     * @param se south-east quadrant
+     * @return the canonical node
+     */
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        int hash = Node.hash(nw, ne, sw, se);
+        int bucket = hash & (table.length - 1);
+        for (Node n = table[bucket]; n != null; n = n.next) {
+            if (n.nw == nw && n.ne == ne && n.sw == sw && n.se == se)
+                return n;
+        }
+        Node node = new Node(nw, ne, sw, se, hash);
+        node.next = table[bucket];
+        table[bucket] = node;
+        if (++nodeCount > table.length - (table.length >>> 2))
+            resize(table.length << 1);
+        return node;
+    }
+
+    /**
+     * rehashes every node into a table of the given size
+     * @param size the new size of the table, a power of 2
+     */
+    private void resize(int size) {
+        Node[] old = table;
+        table = new Node[size];
+        for (Node head : old) {
+            for (Node n = head; n != null; ) {
+                Node following = n.next;
+                int bucket = n.hash & (size - 1);
+                n.next = table[bucket];
+                table[bucket] = n;
+                n = following;
+            }
+        }
+    }
+
+    /**
+     * drops every node that isn't reachable from the root, and forgets every memoized result
+     */
+    private void collectGarbage() {
+        Node[] old = table;
+        table = new Node[old.length];
+        nodeCount = 0;
+        for (Node head : old) {
+            for (Node n = head; n != null; n = n.next) {
+                n.result = null;
+                n.marked = false;
+            }
+        }
+        Node[] empties = emptyNodes;
+        emptyNodes = new Node[empties.length];
+        mark(root);
+        for (Node head : old) {
+            for (Node n = head; n != null; ) {
+                Node following = n.next;
+                if (n.marked) {
+                    int bucket = n.hash & (table.length - 1);
+                    n.next = table[bucket];
+                    table[bucket] = n;
+                    nodeCount++;
+                }
+                n = following;
+            }
+        }
+    }
+
+    /**
+     * marks the given node and every node below it as reachable
+     * @param node the node to mark
+     */
+    private void mark(Node node) {
+        if (node.level == 0 || node.marked)
+            return;
+        node.marked = true;
+        mark(node.nw);
+        mark(node.ne);
+        mark(node.sw);
+        mark(node.se);
+    }
+
+    /**
+     * a square of 2^level x 2^level cells, a single cell on level 0
+     */
+    private static final class Node {
+
+        final Node nw, ne, sw, se;
+        final int level;
+        final byte state;
+        //true if the square contains a head or a tail
+        final boolean active;
+        final int hash;
+        Node result;
+        int resultStep = -1;
+        Node next;
+        boolean marked;
+
+        /**
+         * constructor of a leaf
+         * @param state the state of the cell
+         */
+        Node(byte state) {
+            nw = ne = sw = se = null;
+            level = 0;
+            this.state = state;
+            active = state == HEAD || state == TAIL;
+            hash = state + 1;
+        }
+
+        /**
+         * constructor of an inner node
+         * @param nw north-west quadrant
+         * @param ne north-east quadrant
+         * @param sw south-west quadrant
+         * @param se south-east quadrant
+         * @param hash the hash of the quadrants
+         */
+        Node(Node nw, Node ne, Node sw, Node se, int hash) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            level = nw.level + 1;
+            state = EMPTY;
+            active = nw.active || ne.active || sw.active || se.active;
+            this.hash = hash;
+        }
+
+        /**
+         * calculates the hash of a node from its quadrants
+         * @return the hash
+         */
+        static int hash(Node nw, Node ne, Node sw, Node se) {
+            int h = nw.hash;
+            h = h * 1000003 + ne.hash;
+            h = h * 1000003 + sw.hash;
+            h = h * 1000003 + se.hash;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package view;
+
+import java.util.Arrays;
+
+import static view.SimulationModel.*;
+
+/**
+ * Engine that steps over a precomputed neighbour index instead of the grid. The non-empty cells
+ * get a compact index, and the non-empty neighbours of every cell are listed in compressed sparse
+ * rows, so a generation is a single pass over primitive arrays without coordinates or bounds
+ * checks. The index is patched when the model is edited: a state change only updates the state,
+ * a wire that is drawn or erased moves the rows of the cell and its neighbours. It's rebuilt from
+ * scratch only if the edits can't be replayed or the patched rows have wasted too much space.
+ */
+public class IndexedEngine implements SimulationEngine {
+
+    private SimulationModel loadedModel;
+    private int loadedModCount;
+    private long loadedGeneration;
+    private int width, height;
+    //the compact index of every cell, -1 for the empty ones
+    private int[] indexOf;
+    //the cell, the state and the neighbour row of every compact index; a free index is empty
+    private int[] cellOf;
+    private byte[] state, nextState, original;
+    private int[] rowStart, rowLength, rowCapacity;
+    private int[] neighbours;
+    private int size, neighbourEnd, usedNeighbours;
+    private int[] free = new int[16];
+    private int freeCount;
+
+    @Override
+    public void advance(SimulationModel model, long generations) {
+        if (model != loadedModel || model.getGeneration() != loadedGeneration || !model.hasEditsSince(loadedModCount)) {
+            load(model);
+        } else if (model.getModCount() != loadedModCount) {
+            applyEdits(model);
+        }
+        byte[] cells = model.current();
+        Rule rule = model.getRule();
+        model.resetChanges();
+        if (generations == 1) {
+            step(rule);
+            for (int k = 0; k < size; k++) {
+                if (state[k] != nextState[k]) {
+                    cells[cellOf[k]] = nextState[k];
+                    model.recordChange(cellOf[k]);
+                }
+            }
+            swapStates();
+        } else if (generations > 1) {
+            System.arraycopy(state, 0, original, 0, size);
+            for (long g = 0; g < generations; g++) {
+                step(rule);
+                swapStates();
+            }
+            for (int k = 0; k < size; k++) {
+                if (state[k] != original[k]) {
+                    cells[cellOf[k]] = state[k];
+                    model.recordChange(cellOf[k]);
+                }
+            }
+        }
+        model.addGenerations(generations);
+        loadedGeneration = model.getGeneration();
+    }
+
+    /**
+     * getter for the number of indexed cells
+     * @return the number of non-empty cells in the index
+     */
+    public int getCellCount() {
+        return size - freeCount;
+    }
+
+    /**
+     * getter for the number of neighbour entries
+     * @return the number of neighbour pairs in the rows, counted in both directions
+     */
+    public int getNeighbourCount() {
+        return usedNeighbours;
+    }
+
+    /**
+     * builds the index from the state of the model, the compact indexes follow the row-major order
+     * @param model the model to load
+     */
+    private void load(SimulationModel model) {
+        width = model.getWidth();
+        height = model.getHeight();
+        NeighbourIndex index = new NeighbourIndex(width, height, model.current(), 16);
+        indexOf = index.indexOf;
+        cellOf = index.cellOf;
+        state = index.state;
+        rowStart = index.rowStart;
+        rowLength = index.rowLength;
+        neighbours = index.neighbours;
+        size = index.size;
+        int capacity = cellOf.length;
+        nextState = new byte[capacity];
+        original = new byte[capacity];
+        rowCapacity = Arrays.copyOf(rowLength, capacity);
+        freeCount = 0;
+        neighbourEnd = neighbours.length;
+        usedNeighbours = neighbourEnd;
+        loadedModel = model;
+        loadedModCount = model.getModCount();
+        loadedGeneration = model.getGeneration();
+    }
+
+    /**
+     * patches the index with the cells edited since the last advance; rebuilds it instead if
+     * the moved rows left more unused space than there are neighbours
+     * @param model the edited model
+     */
+    private void applyEdits(SimulationModel model) {
+        byte[] cells = model.current();
+        for (int m = loadedModCount; m != model.getModCount(); m++) {
+            int i = model.getEditedCell(m);
+            int k = indexOf[i];
+            if (k >= 0 && cells[i] != EMPTY) {
+                state[k] = cells[i];
+            } else if (k >= 0) {
+                remove(k);
+            } else if (cells[i] != EMPTY) {
+                insert(i, cells[i]);
+            }
+        }
+        loadedModCount = model.getModCount();
+        if (neighbourEnd > 2 * usedNeighbours + 64 || freeCount > size / 2 + 16)
+            load(model);
+    }
+
+    /**
+     * adds a drawn cell to the index and to the rows of its neighbours
+     * @param i the cell
+     * @param cellState the state of the cell
+     */
+    private void insert(int i, byte cellState) {
+        int k;
+        if (freeCount > 0) {
+            k = free[--freeCount];
+        } else {
+            if (size == cellOf.length)
+                grow(size * 2);
+            k = size++;
+        }
+        indexOf[i] = k;
+        cellOf[k] = i;
+        state[k] = cellState;
+        rowLength[k] = 0;
+        rowCapacity[k] = 0;
+        int[] around = new int[8];
+        int count = neighboursOf(i, around);
+        for (int j = 0; j < count; j++) {
+            int neighbour = indexOf[around[j]];
+            if (neighbour >= 0) {
+                addNeighbour(k, neighbour);
+                addNeighbour(neighbour, k);
+            }
+        }
+    }
+
+    /**
+     * removes an erased cell from the index and from the rows of its neighbours
+     * @param k the compact index of the cell
+     */
+    private void remove(int k) {
+        for (int j = rowStart[k]; j < rowStart[k] + rowLength[k]; j++) {
+            removeNeighbour(neighbours[j], k);
+        }
+        usedNeighbours -= rowLength[k];
+        rowLength[k] = 0;
+        state[k] = EMPTY;
+        indexOf[cellOf[k]] = -1;
+        free = append(free, freeCount++, k);
+    }
+
+    /**
+     * appends a neighbour to a row, moving the row to the end with room for a full
+     * neighbourhood if it's full
+     * @param k the compact index of the row
+     * @param neighbour the compact index of the neighbour
+     */
+    private void addNeighbour(int k, int neighbour) {
+        if (rowLength[k] == rowCapacity[k]) {
+            ensureNeighbours(neighbourEnd + 8);
+            System.arraycopy(neighbours, rowStart[k], neighbours, neighbourEnd, rowLength[k]);
+            rowStart[k] = neighbourEnd;
+            rowCapacity[k] = 8;
+            neighbourEnd += 8;
+        }
+        neighbours[rowStart[k] + rowLength[k]++] = neighbour;
+        usedNeighbours++;
+    }
+
+    /**
+     * removes a neighbour from a row by moving the last one in its place
+     * @param k the compact index of the row
+     * @param neighbour the compact index of the neighbour
+     */
+    private void removeNeighbour(int k, int neighbour) {
+        int last = rowStart[k] + rowLength[k] - 1;
+        for (int j = rowStart[k]; j <= last; j++) {
+            if (neighbours[j] == neighbour) {
+                neighbours[j] = neighbours[last];
+                rowLength[k]--;
+                usedNeighbours--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * computes the next state of every indexed cell into nextState
+     * @param rule the rule of the model
+     */
+    private void step(Rule rule) {
+        step(rule, state, nextState, size, rowStart, rowLength, neighbours);
+    }
+
+    /**
+     * computes the next state of the cells of a neighbour index
+     * @param rule the rule to apply
+     * @param state the current states of the compact indexes
+     * @param nextState receives the next states
+     * @param size the number of compact indexes
+     * @param rowStart the start of the neighbour row of every compact index
+     * @param rowLength the length of the neighbour row of every compact index
+     * @param neighbours the rows of neighbours
+     */
+    static void step(Rule rule, byte[] state, byte[] nextState, int size, int[] rowStart, int[] rowLength, int[] neighbours) {
+        byte[] table = rule.table();
+        int counted = rule.getCountedStates();
+        for (int k = 0; k < size; k++) {
+            byte s = state[k];
+            int heads = 0;
+            if ((counted >>> s & 1) != 0) {
+                for (int j = rowStart[k], end = j + rowLength[k]; j < end; j++) {
+                    if (state[neighbours[j]] == HEAD)
+                        heads++;
+                }
+            }
+            nextState[k] = table[s << 4 | heads];
+        }
+    }
+
+    /**
+     * makes the computed next states current
+     */
+    private void swapStates() {
+        byte[] tmp = state;
+        state = nextState;
+        nextState = tmp;
+    }
+
+    /**
+     * grows the arrays of the compact indexes
+     * @param capacity the new capacity
+     */
+    private void grow(int capacity) {
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        state = Arrays.copyOf(state, capacity);
+        nextState = Arrays.copyOf(nextState, capacity);
+        original = Arrays.copyOf(original, capacity);
+        rowStart = Arrays.copyOf(rowStart, capacity);
+        rowLength = Arrays.copyOf(rowLength, capacity);
+        rowCapacity = Arrays.copyOf(rowCapacity, capacity);
+    }
+
+    /**
+     * grows the neighbour array so that it can hold the given number of entries
+     * @param needed the number of entries to hold
+     */
+    private void ensureNeighbours(int needed) {
+        if (needed > neighbours.length)
+            neighbours = Arrays.copyOf(neighbours, Math.max(needed, neighbours.length * 2));
+    }
+
+    /**
+     * collects the indexed neighbours of a cell from the grid
+     * @param i index of the cell
+     * @param around the array to collect the neighbours into
+     * @return the number of neighbours
+     */
+    private int neighboursOf(int i, int[] around) {
+        int x = i % width, y = i / width, count = 0;
+        for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                int n = ny * width + nx;
+                if (n != i && indexOf[n] >= 0)
+                    around[count++] = n;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * stores the value at the given position, growing the array if needed
+     * @param array the array to store into
+     * @param position the position to store at
+     * @param value the value to store
+     * @return the array, or a bigger copy of it
+     */
+    private static int[] append(int[] array, int position, int value) {
+        if (position == array.length)
+            array = Arrays.copyOf(array, position * 2);
+        array[position] = value;
+        return array;
+    }
+}
@@ -0,0 +1,71 @@
+package view;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads and writes patterns in the MCell format. The cells are in the #L lines, the pattern's
+ * top left corner is the top left corner of the model. The size comes from the #BOARD line
+ * if there is one, but as it can be missing or too small, the cells are collected in a
+ * ChunkedGrid while reading, so memory stays proportional to the cells of the pattern.
+ */
+public class MCellFormat {
+
+    private static final Pattern boardPattern = Pattern.compile("#BOARD\\s+(\\d+)x(\\d+).*");
+
+    /**
+     * reads a pattern
+     * @param reader the reader to read from
+     * @return the model of the pattern
+     * @throws IOException if the file isn't a valid MCell file
+     */
+    public SimulationModel read(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || !line.startsWith("#MCell"))
+            throw new IOException("Not an MCell file");
+        ChunkedGrid grid = new ChunkedGrid();
+        CellState[] states = CellState.values();
+        RunLengthCodec codec = new RunLengthCodec((x, y, state) -> grid.setState(x, y, states[state]));
+        int width = 0, height = 0;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#L")) {
+                codec.decode(line.substring(2));
+            } else if (line.startsWith("#GAME")) {
+                String game = line.substring(5).trim();
+                if (!game.equalsIgnoreCase("WireWorld"))
+                    throw new IOException("Unsupported game: " + game);
+            } else {
+                Matcher board = boardPattern.matcher(line);
+                if (board.matches()) {
+                    width = Integer.parseInt(board.group(1));
+                    height = Integer.parseInt(board.group(2));
+                }
+            }
+        }
+        int[] bounds = grid.getBounds();
+        if (bounds != null) {
+            width = Math.max(width, bounds[2] + 1);
+            height = Math.max(height, bounds[3] + 1);
+        }
+        if ((long) width * height > Integer.MAX_VALUE)
+            throw new IOException("Pattern too big: " + width + "x" + height);
+        return grid.toModel(0, 0, width, height);
+    }
+
+    /**
+     * writes the model as a pattern
+     * @param model the model to write
+     * @param writer the writer to write to
+     * @throws IOException
+     */
+    public void write(SimulationModel model, Writer writer) throws IOException {
+        writer.write("#MCell 4.20\n");
+        writer.write("#GAME WireWorld\n");
+        writer.write("#BOARD " + model.getWidth() + "x" + model.getHeight() + "\n");
+        writer.write("#CCOLORS 4\n");
+        RunLengthCodec.encode(model, writer, "#L ");
+    }
+}
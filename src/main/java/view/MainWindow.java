@@ -9,10 +9,15 @@ public class MainWindow {
 
     /**
      * main method
-     * @param args
+     * @param args optionally the width and the height of the grid
      */
     public static void main(String[] args) {
-        CellGrid cellGrid = new CellGrid(matrixWidth, matrixHeight, timeBetweenSteps);
+        int matrixWidth = MainWindow.matrixWidth, matrixHeight = MainWindow.matrixHeight;
+        if (args.length >= 2) {
+            matrixWidth = Integer.parseInt(args[0]);
+            matrixHeight = Integer.parseInt(args[1]);
+        }
+        CellGrid cellGrid = new CellGrid(new SimulationModel(matrixWidth, matrixHeight), timeBetweenSteps, false);
         GUI mainGUI = new GUI(matrixWidth, matrixHeight, cellSize, cellGrid, timeBetweenSteps);
         mainGUI.initializeLayout();
     }
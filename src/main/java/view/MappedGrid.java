@@ -0,0 +1,515 @@
+package view;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static view.WireFormat.*;
+
+/**
+ * Grid stored off-heap in a memory-mapped file, for layouts that don't fit on the heap. The file
+ * is a packed wire file (see WireFormat), so a saved simulation is opened by mapping it, and the
+ * result of a run is a valid save. The cells keep their 2-bit packed form in the file; a step
+ * reads the rows one by one into bitplanes, computes them like BitslicedEngine and writes back
+ * the words that changed in place. The heap only holds a few rows, whatever the size of the grid.
+ * Files larger than 1 GiB are mapped in several segments.
+ */
+public class MappedGrid implements Closeable {
+
+    private static final int segmentShift = 30;
+    private static final long segmentMask = (1L << segmentShift) - 1;
+    private static final int generationOffset = 4 + 1 + 1 + 4 + 4;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    //the cells, each segment overlaps the next one by a long so that reading a long never spans two
+    private final MappedByteBuffer[] segments;
+    private final int width, height, wordsPerRow;
+    private final long dataSize;
+    private long generation;
+    //the bitplanes of three consecutive rows and the horizontal head sums computed from them
+    private long[] headAbove, head, headBelow, tail, tailBelow, wire, wireBelow;
+    private long[] sumAbove0, sumAbove1, sum0, sum1, sumBelow0, sumBelow1;
+    private final long[] next0, next1;
+
+    /**
+     * maps an opened wire file
+     * @param channel the channel of the file, opened for reading and writing
+     * @param width width of the grid
+     * @param height height of the grid
+     * @param generation the generation stored in the file
+     * @throws IOException
+     */
+    private MappedGrid(FileChannel channel, int width, int height, long generation) throws IOException {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.generation = generation;
+        dataSize = ((long) width * height + 3) / 4;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+        segments = new MappedByteBuffer[(int) ((dataSize + segmentMask) >>> segmentShift)];
+        for (int s = 0; s < segments.length; s++) {
+            long start = (long) s << segmentShift;
+            segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, headerSize + start,
+                    Math.min(segmentMask + 1 + 8, dataSize - start));
+            segments[s].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        wordsPerRow = (width + 63) >>> 6;
+        headAbove = new long[wordsPerRow];
+        head = new long[wordsPerRow];
+        headBelow = new long[wordsPerRow];
+        tail = new long[wordsPerRow];
+        tailBelow = new long[wordsPerRow];
+        wire = new long[wordsPerRow];
+        wireBelow = new long[wordsPerRow];
+        sumAbove0 = new long[wordsPerRow];
+        sumAbove1 = new long[wordsPerRow];
+        sum0 = new long[wordsPerRow];
+        sum1 = new long[wordsPerRow];
+        sumBelow0 = new long[wordsPerRow];
+        sumBelow1 = new long[wordsPerRow];
+        next0 = new long[wordsPerRow];
+        next1 = new long[wordsPerRow];
+    }
+
+    /**
+     * creates a wire file with empty cells and maps it; the file is sparse where the file system
+     * supports it, so creating even a huge grid is quick
+     * @param file the file to create, an existing one is overwritten
+     * @param width width of the grid
+     * @param height height of the grid
+     * @return the mapped grid
+     * @throws IOException
+     */
+    public static MappedGrid create(Path file, int width, int height) throws IOException {
+        if (width < 0 || height < 0)
+            throw new IllegalArgumentException("Invalid grid size: " + width + "x" + height);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer start = ByteBuffer.allocate(headerSize);
+            start.put(magic).put(version).put(packedEncoding).putInt(width).putInt(height).putLong(0).putInt(0);
+            start.flip();
+            while (start.hasRemaining()) {
+                channel.write(start);
+            }
+            long size = headerSize + ((long) width * height + 3) / 4;
+            if (size > headerSize)
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            return new MappedGrid(channel, width, height, 0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * maps a packed wire file, e.g. one saved by SavedSims; the changes are written into the file
+     * @param file the file to open
+     * @return the mapped grid
+     * @throws IOException if the file isn't a packed wire file, run-length encoded files have to be
+     * loaded and saved into a grid made by create
+     */
+    public static MappedGrid open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer start = ByteBuffer.allocate(headerSize);
+            while (start.hasRemaining()) {
+                if (channel.read(start) < 0)
+                    throw new IOException("Not a wire file");
+            }
+            start.flip();
+            for (byte b : magic) {
+                if (start.get() != b)
+                    throw new IOException("Not a wire file");
+            }
+            byte fileVersion = start.get();
+            if (fileVersion != version)
+                throw new IOException("Unsupported wire file version: " + fileVersion);
+            if (start.get() != packedEncoding)
+                throw new IOException("Only packed wire files can be mapped");
+            int width = start.getInt(), height = start.getInt();
+            long generation = start.getLong();
+            if (width < 0 || height < 0 || channel.size() < headerSize + ((long) width * height + 3) / 4)
+                throw new IOException("Invalid grid size: " + width + "x" + height);
+            return new MappedGrid(channel, width, height, generation);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * getter for width
+     * @return width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * getter for height
+     * @return height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * getter for generation
+     * @return the generation of the grid, stored in the file as well
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * returns the state of the cell at the given coordinates
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @return the state of the cell
+     */
+    public CellState getState(int x, int y) {
+        long cell = cellIndex(x, y);
+        return CellState.values()[(readByte(cell >>> 2) >>> ((cell & 3) * 2)) & 3];
+    }
+
+    /**
+     * sets the state of the cell at the given coordinates
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @param state the new state of the cell
+     */
+    public void setState(int x, int y, CellState state) {
+        long cell = cellIndex(x, y);
+        writeCells(cell, state.ordinal(), 1);
+    }
+
+    /**
+     * counts the cells in the given state
+     * @param state the state to count
+     * @return the number of cells in the state
+     */
+    public long count(CellState state) {
+        long count = 0;
+        for (int y = 0; y < height; y++) {
+            readRow(y, head, tail, wire);
+            long[] plane = state == CellState.HEAD ? head : state == CellState.TAIL ? tail : wire;
+            for (int k = 0; k < wordsPerRow; k++) {
+                count += state == CellState.EMPTY
+                        ? Long.bitCount(~(head[k] | tail[k] | wire[k]) & rowMask(k))
+                        : Long.bitCount(plane[k]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * copies a region of the grid into a model on the heap, e.g. to show or edit a part of it
+     * @param fromX x coordinate of the left edge of the region
+     * @param fromY y coordinate of the top edge of the region
+     * @param width width of the region
+     * @param height height of the region
+     * @return a model with the cells of the region, in the generation of the grid
+     */
+    public SimulationModel toModel(int fromX, int fromY, int width, int height) {
+        SimulationModel model = new SimulationModel(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                model.setState(x, y, getState(fromX + x, fromY + y));
+            }
+        }
+        model.addGenerations(generation);
+        return model;
+    }
+
+    /**
+     * computes the next generation in place
+     */
+    public void step() {
+        if (height > 0 && width > 0) {
+            Arrays.fill(sumAbove0, 0);
+            Arrays.fill(sumAbove1, 0);
+            readRow(0, head, tail, wire);
+            horizontalSum(head, sum0, sum1);
+            for (int y = 0; y < height; y++) {
+                if (y + 1 < height) {
+                    readRow(y + 1, headBelow, tailBelow, wireBelow);
+                    horizontalSum(headBelow, sumBelow0, sumBelow1);
+                } else {
+                    Arrays.fill(sumBelow0, 0);
+                    Arrays.fill(sumBelow1, 0);
+                }
+                for (int k = 0; k < wordsPerRow; k++) {
+                    long a0 = sumAbove0[k], b0 = sum0[k], c0 = sumBelow0[k];
+                    //the same adder as in BitslicedEngine, the count is 1 or 2
+                    long ones = a0 ^ b0 ^ c0;
+                    long carry = (a0 & b0) | (a0 & c0) | (b0 & c0);
+                    long p = sumAbove1[k], q = sum1[k], r = sumBelow1[k], s = carry;
+                    long any = p | q | r | s;
+                    long atLeastTwo = (p & q) | (r & s) | ((p ^ q) & (r ^ s));
+                    long oneOrTwo = (ones & ~any) | (~ones & any & ~atLeastTwo);
+                    long w = wire[k];
+                    long h = w & oneOrTwo;
+                    long nextWire = tail[k] | (w & ~h);
+                    //bit 0 is set for heads and wires, bit 1 for tails and wires
+                    next0[k] = h | nextWire;
+                    next1[k] = head[k] | nextWire;
+                }
+                writeRow(y);
+                long[] tmp0 = sumAbove0, tmp1 = sumAbove1;
+                sumAbove0 = sum0;
+                sumAbove1 = sum1;
+                sum0 = sumBelow0;
+                sum1 = sumBelow1;
+                sumBelow0 = tmp0;
+                sumBelow1 = tmp1;
+                long[] tmp = headAbove;
+                headAbove = head;
+                head = headBelow;
+                headBelow = tmp;
+                tmp = tail;
+                tail = tailBelow;
+                tailBelow = tmp;
+                tmp = wire;
+                wire = wireBelow;
+                wireBelow = tmp;
+            }
+        }
+        generation++;
+        header.putLong(generationOffset, generation);
+    }
+
+    /**
+     * computes the given number of generations in place
+     * @param generations the number of generations
+     */
+    public void advance(long generations) {
+        for (long g = 0; g < generations; g++) {
+            step();
+        }
+    }
+
+    /**
+     * writes the changed pages to the disk
+     */
+    public void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * writes the changes to the disk and closes the file; the mapping is released by the garbage
+     * collector, the grid mustn't be used afterwards
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * reads a row into bitplanes
+     * @param y the row
+     * @param head the plane of the heads
+     * @param tail the plane of the tails
+     * @param wire the plane of the wires
+     */
+    private void readRow(int y, long[] head, long[] tail, long[] wire) {
+        long row = (long) y * width;
+        for (int k = 0; k < wordsPerRow; k++) {
+            long cell = row + ((long) k << 6);
+            long low = readCells(cell), high = width - (k << 6) > 32 ? readCells(cell + 32) : 0;
+            long mask = rowMask(k);
+            long bit0 = (compact(low) | compact(high) << 32) & mask;
+            long bit1 = (compact(low >>> 1) | compact(high >>> 1) << 32) & mask;
+            head[k] = bit0 & ~bit1;
+            tail[k] = ~bit0 & bit1;
+            wire[k] = bit0 & bit1;
+        }
+    }
+
+    /**
+     * writes the words of the next generation that differ from the current one into the row
+     * @param y the row
+     */
+    private void writeRow(int y) {
+        long row = (long) y * width;
+        for (int k = 0; k < wordsPerRow; k++) {
+            long bit0 = next0[k], bit1 = next1[k];
+            long changed = (bit0 ^ (head[k] | wire[k])) | (bit1 ^ (tail[k] | wire[k]));
+            if (changed == 0)
+                continue;
+            long cell = row + ((long) k << 6);
+            int count = Math.min(64, width - (k << 6));
+            if ((int) changed != 0)
+                writeCells(cell, spread(bit0) | spread(bit1) << 1, Math.min(count, 32));
+            if (changed >>> 32 != 0)
+                writeCells(cell + 32, spread(bit0 >>> 32) | spread(bit1 >>> 32) << 1, count - 32);
+        }
+    }
+
+    /**
+     * returns the mask of the cells of a row word that are inside the grid
+     * @param k the index of the word in the row
+     * @return the mask of the valid bits
+     */
+    private long rowMask(int k) {
+        int count = width - (k << 6);
+        return count >= 64 ? -1L : (1L << count) - 1;
+    }
+
+    /**
+     * adds up the heads of a row and its left and right neighbour for every cell, the center
+     * is included as well (a wire cell is never a head itself)
+     * @param head the head plane of the row
+     * @param out0 bit 0 of the sums
+     * @param out1 bit 1 of the sums
+     */
+    private void horizontalSum(long[] head, long[] out0, long[] out1) {
+        for (int k = 0; k < wordsPerRow; k++) {
+            long c = head[k];
+            long previous = k > 0 ? head[k - 1] : 0;
+            long following = k + 1 < wordsPerRow ? head[k + 1] : 0;
+            long left = (c << 1) | (previous >>> 63);
+            long right = (c >>> 1) | (following << 63);
+            out0[k] = left ^ c ^ right;
+            out1[k] = (left & c) | (left & right) | (c & right);
+        }
+    }
+
+    /**
+     * reads 32 packed cells starting at any cell
+     * @param cell the index of the first cell
+     * @return the cells, 2 bits each, the first one in the lowest bits
+     */
+    private long readCells(long cell) {
+        long offset = cell >>> 2;
+        int shift = (int) (cell & 3) * 2;
+        long cells = readLong(offset) >>> shift;
+        if (shift > 0)
+            cells |= (long) readByte(offset + 8) << (64 - shift);
+        return cells;
+    }
+
+    /**
+     * writes packed cells starting at any cell, keeping the cells around them
+     * @param cell the index of the first cell
+     * @param cells the cells, 2 bits each, the first one in the lowest bits
+     * @param count the number of cells to write, at most 32
+     */
+    private void writeCells(long cell, long cells, int count) {
+        long offset = cell >>> 2;
+        int shift = (int) (cell & 3) * 2;
+        long mask = count >= 32 ? -1L : (1L << (count * 2)) - 1;
+        cells &= mask;
+        long lowMask = mask << shift;
+        if (lowMask != 0)
+            writeLong(offset, (readLong(offset) & ~lowMask) | (cells << shift), lowMask);
+        if (shift > 0 && mask >>> (64 - shift) != 0) {
+            int highMask = (int) (mask >>> (64 - shift));
+            writeByte(offset + 8, (readByte(offset + 8) & ~highMask) | (int) (cells >>> (64 - shift)));
+        }
+    }
+
+    /**
+     * reads a little-endian long from the cells, the bytes after the end of the file read as 0
+     * @param offset the offset of the first byte from the start of the cells
+     * @return the long
+     */
+    private long readLong(long offset) {
+        if (offset + 8 <= dataSize)
+            return segments[(int) (offset >>> segmentShift)].getLong((int) (offset & segmentMask));
+        long value = 0;
+        for (int b = 0; b < 8; b++) {
+            value |= (long) readByte(offset + b) << (b * 8);
+        }
+        return value;
+    }
+
+    /**
+     * writes a little-endian long into the cells, only the bytes touched by the mask near the end of the file
+     * @param offset the offset of the first byte from the start of the cells
+     * @param value the long
+     * @param mask the bits that changed, the bytes outside of it are left alone
+     */
+    private void writeLong(long offset, long value, long mask) {
+        if (offset + 8 <= dataSize) {
+            segments[(int) (offset >>> segmentShift)].putLong((int) (offset & segmentMask), value);
+            return;
+        }
+        for (int b = 0; b < 8; b++) {
+            if ((mask >>> (b * 8) & 0xFF) != 0)
+                writeByte(offset + b, (int) (value >>> (b * 8)));
+        }
+    }
+
+    /**
+     * reads a byte of the cells
+     * @param offset the offset of the byte from the start of the cells
+     * @return the unsigned byte, 0 after the end of the file
+     */
+    private int readByte(long offset) {
+        if (offset >= dataSize)
+            return 0;
+        return segments[(int) (offset >>> segmentShift)].get((int) (offset & segmentMask)) & 0xFF;
+    }
+
+    /**
+     * writes a byte of the cells
+     * @param offset the offset of the byte from the start of the cells
+     * @param value the byte
+     */
+    private void writeByte(long offset, int value) {
+        segments[(int) (offset >>> segmentShift)].put((int) (offset & segmentMask), (byte) value);
+    }
+
+    /**
+     * returns the index of a cell in the row-major order
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @return the index of the cell
+     */
+    private long cellIndex(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") is outside of a " + width + "x" + height + " grid");
+        return (long) y * width + x;
+    }
+
+    /**
+     * gathers the even bits of a long into its lower half
+     * @param x the bits
+     * @return bit 2i of x in bit i, for i &lt; 32
+     */
+    private static long compact(long x) {
+        x &= 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        return (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+    }
+
+    /**
+     * spreads the lower half of a long over its even bits, the inverse of compact
+     * @param x the bits
+     * @return bit i of x in bit 2i, for i &lt; 32
+     */
+    private static long spread(long x) {
+        x &= 0x00000000FFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        return (x | (x << 1)) & 0x5555555555555555L;
+    }
+}
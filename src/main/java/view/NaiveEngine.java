@@ -0,0 +1,83 @@
+package view;
+
+import static view.SimulationModel.*;
+
+/**
+ * Evaluates the rule of the model cell by cell over the whole byte array of the model, looking
+ * the next state up in the compiled table of the rule.
+ */
+public class NaiveEngine implements SimulationEngine {
+
+    @Override
+    public void advance(SimulationModel model, long generations) {
+        if (generations == 0) {
+            model.resetChanges();
+            return;
+        }
+        if (generations == 1) {
+            step(model, true);
+        } else {
+            byte[] before = model.current().clone();
+            for (long g = 0; g < generations; g++) {
+                step(model, false);
+            }
+            model.resetChanges();
+            byte[] after = model.current();
+            for (int i = 0; i < after.length; i++) {
+                if (after[i] != before[i])
+                    model.recordChange(i);
+            }
+        }
+        model.addGenerations(generations);
+    }
+
+    /**
+     * calculates the next generation into the back buffer, then swaps the buffers
+     * @param model the model to step
+     * @param recordChanges whether to record the cells that changed
+     */
+    private void step(SimulationModel model, boolean recordChanges) {
+        int width = model.getWidth(), height = model.getHeight();
+        byte[] current = model.current(), next = model.next();
+        byte[] table = model.getRule().table();
+        int counted = model.getRule().getCountedStates();
+        if (recordChanges)
+            model.resetChanges();
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int i = row + x;
+                byte state = current[i];
+                int heads = (counted >>> state & 1) != 0 ? headsAround(current, width, height, x, y) : 0;
+                byte nextState = table[state << 4 | heads];
+                next[i] = nextState;
+                if (recordChanges && nextState != state)
+                    model.recordChange(i);
+            }
+        }
+        model.swapBuffers();
+    }
+
+    /**
+     * counts the electron heads in the Moore neighbourhood of the given cell, the cell itself isn't counted
+     * @param cells the cells of the grid
+     * @param width width of the grid
+     * @param height height of the grid
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     * @return the number of heads around the cell
+     */
+    static int headsAround(byte[] cells, int width, int height, int x, int y) {
+        int heads = 0;
+        int fromX = Math.max(x - 1, 0), toX = Math.min(x + 1, width - 1);
+        int fromY = Math.max(y - 1, 0), toY = Math.min(y + 1, height - 1);
+        for (int i = fromY; i <= toY; i++) {
+            int row = i * width;
+            for (int j = fromX; j <= toX; j++) {
+                if (cells[row + j] == HEAD)
+                    heads++;
+            }
+        }
+        return cells[y * width + x] == HEAD ? heads - 1 : heads;
+    }
+}
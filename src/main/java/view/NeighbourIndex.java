@@ -0,0 +1,65 @@
+package view;
+
+import java.util.Arrays;
+
+import static view.SimulationModel.EMPTY;
+
+/**
+ * Compact index of the non-empty cells of a grid, with the non-empty neighbours of every cell
+ * listed in compressed sparse rows: the neighbours of the cell with the compact index k are
+ * neighbours[rowStart[k]] until neighbours[rowStart[k] + rowLength[k]]. The compact indexes
+ * follow the row-major order. Built for the engines that step over the index instead of the grid.
+ */
+class NeighbourIndex {
+
+    //the compact index of every cell, -1 for the empty ones
+    final int[] indexOf;
+    //the cell, the state and the neighbour row of every compact index
+    final int[] cellOf;
+    final byte[] state;
+    final int[] rowStart, rowLength, neighbours;
+    final int size;
+
+    /**
+     * builds the index of the non-empty cells
+     * @param width width of the grid
+     * @param height height of the grid
+     * @param cells the cells of the grid
+     * @param capacity the minimum length of the arrays of the compact indexes, for an index that
+     * grows after it's built
+     */
+    NeighbourIndex(int width, int height, byte[] cells, int capacity) {
+        indexOf = new int[cells.length];
+        int count = 0;
+        for (int i = 0; i < cells.length; i++) {
+            indexOf[i] = cells[i] != EMPTY ? count++ : -1;
+        }
+        size = count;
+        int length = Math.max(size, capacity);
+        cellOf = new int[length];
+        state = new byte[length];
+        rowStart = new int[length];
+        rowLength = new int[length];
+        int[] rows = new int[size * 8];
+        int end = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int k = indexOf[y * width + x];
+                if (k < 0)
+                    continue;
+                cellOf[k] = y * width + x;
+                state[k] = cells[y * width + x];
+                rowStart[k] = end;
+                for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+                    for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                        int neighbour = indexOf[ny * width + nx];
+                        if (neighbour >= 0 && neighbour != k)
+                            rows[end++] = neighbour;
+                    }
+                }
+                rowLength[k] = end - rowStart[k];
+            }
+        }
+        neighbours = Arrays.copyOf(rows, end);
+    }
+}
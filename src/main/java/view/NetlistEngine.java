@@ -0,0 +1,927 @@
+package view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import static view.SimulationModel.*;
+
+/**
+ * Event-driven engine that compiles the circuit into a netlist. A wire cell with exactly two
+ * non-empty neighbours that don't touch each other can only pass a signal on, so the unbranched
+ * runs of such cells become delay lines; every other cell (junctions, diodes, gates, short runs)
+ * is a node simulated by the cellular rule. A delay line stores its electrons as the generation
+ * they entered it, so a signal costs nothing while it travels; the line is only simulated cell by
+ * cell while two signals collide in it. The nodes are evaluated only when a head arrives next to
+ * them, from a neighbouring node or from the end of a line (scheduled in an event queue).
+ * Writing back into the model touches only the cells whose electrons moved.
+ */
+public class NetlistEngine implements SimulationEngine {
+
+    static final int minRunLength = 3;
+
+    private SimulationModel loadedModel;
+    private int loadedModCount;
+    private int width, height;
+    private long time;
+    //the nodes are numbered in the order of their cells, so that their data is compact
+    private int[] nodeCell;
+    private byte[] state;
+    //the non-empty neighbours of every node: a node, or the end of a run as -(run * 2 + side) - 1
+    private int[] neighbourStart, neighbours;
+    private Run[] runs;
+    //the generation a head last arrived at each end of the runs (run * 2 + side)
+    private long[] arrived;
+    private int[] arrivedEnds = new int[16];
+    private int arrivedCount;
+    private int[] heads = new int[16], tails = new int[16], nextHeads = new int[16];
+    private int headCount, tailCount, nextHeadCount;
+    private int[] candidateStamp;
+    private int candidateRound;
+    //the nodes that may have changed during the current advance
+    private int[] touchedNodes = new int[16];
+    private int touchedNodeCount;
+    private int[] touchedNodeStamp;
+    //the run cells that aren't wire in the model, painted at the end of the current and the last advance
+    private int[] painted = new int[16], previouslyPainted = new int[16];
+    private int paintedCount, previouslyPaintedCount;
+    private int[] paintedStamp;
+    private int advanceRound;
+    private final ArrayList<Run> activeRuns = new ArrayList<>();
+    private final ArrayList<Run> explicitRuns = new ArrayList<>();
+    //arrival of a head at the end of a delay line: {generation, run, side}
+    private final PriorityQueue<long[]> arrivals = new PriorityQueue<>(Comparator.comparingLong(arrival -> arrival[0]));
+
+    /**
+     * the delay lines only pass the signals on under the Wireworld rule
+     */
+    @Override
+    public boolean supports(Rule rule) {
+        return rule.equals(Rule.WIREWORLD);
+    }
+
+    @Override
+    public void advance(SimulationModel model, long generations) {
+        if (model != loadedModel || model.getModCount() != loadedModCount)
+            load(model);
+        model.resetChanges();
+        if (++advanceRound == 0) {
+            Arrays.fill(touchedNodeStamp, 0);
+            Arrays.fill(paintedStamp, 0);
+            advanceRound = 1;
+        }
+        touchedNodeCount = 0;
+        for (long g = 0; g < generations; g++) {
+            step();
+        }
+        byte[] cells = model.current();
+        for (int k = 0; k < touchedNodeCount; k++) {
+            int node = touchedNodes[k];
+            write(model, cells, nodeCell[node], state[node]);
+        }
+        //the electrons are painted where they are now, the cells they have left are cleared
+        int[] tmp = previouslyPainted;
+        previouslyPainted = painted;
+        previouslyPaintedCount = paintedCount;
+        painted = tmp;
+        paintedCount = 0;
+        for (int k = activeRuns.size() - 1; k >= 0; k--) {
+            Run run = activeRuns.get(k);
+            paintRun(model, cells, run);
+            if (run.explicit == null && run.isEmpty(time)) {
+                run.active = false;
+                activeRuns.set(k, activeRuns.get(activeRuns.size() - 1));
+                activeRuns.remove(activeRuns.size() - 1);
+            }
+        }
+        for (int k = 0; k < previouslyPaintedCount; k++) {
+            int i = previouslyPainted[k];
+            if (paintedStamp[i] != advanceRound)
+                write(model, cells, i, WIRE);
+        }
+        model.addGenerations(generations);
+    }
+
+    /**
+     * writes a cell into the model and records it as changed if its state is different
+     * @param model the model
+     * @param cells the cells of the model
+     * @param i index of the cell
+     * @param newState the state to write
+     */
+    private static void write(SimulationModel model, byte[] cells, int i, byte newState) {
+        if (cells[i] != newState) {
+            cells[i] = newState;
+            model.recordChange(i);
+        }
+    }
+
+    /**
+     * getter for the number of nodes
+     * @return the number of cells simulated by the cellular rule
+     */
+    public int getNodeCount() {
+        return nodeCell.length;
+    }
+
+    /**
+     * getter for the number of delay lines
+     * @return the number of unbranched wire runs compiled into delay lines
+     */
+    public int getRunCount() {
+        return runs.length;
+    }
+
+    /**
+     * getter for the number of delay lines simulated cell by cell
+     * @return the number of delay lines with colliding signals in them
+     */
+    public int getExplicitRunCount() {
+        return explicitRuns.size();
+    }
+
+    /**
+     * compiles the model into nodes and delay lines
+     * @param model the model to load
+     */
+    private void load(SimulationModel model) {
+        width = model.getWidth();
+        height = model.getHeight();
+        byte[] cells = model.current();
+        int n = cells.length;
+        int[] runOf = new int[n], positionOf = new int[n];
+        Arrays.fill(runOf, -1);
+        paintedStamp = new int[n];
+        paintedCount = 0;
+        candidateRound = 0;
+        advanceRound = 0;
+        time = 0;
+        activeRuns.clear();
+        explicitRuns.clear();
+        arrivals.clear();
+        boolean[] chain = new boolean[n];
+        int[] around = new int[8];
+        for (int i = 0; i < n; i++) {
+            if (cells[i] != EMPTY && neighboursOf(cells, i, around) == 2 && !touching(around[0], around[1]))
+                chain[i] = true;
+        }
+        ArrayList<Run> found = new ArrayList<>();
+        boolean[] visited = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            if (chain[i] && !visited[i]) {
+                Run run = walk(cells, chain, visited, i);
+                if (run.length >= minRunLength)
+                    found.add(run);
+            }
+        }
+        runs = found.toArray(new Run[0]);
+        arrived = new long[runs.length * 2];
+        Arrays.fill(arrived, -1);
+        for (int r = 0; r < runs.length; r++) {
+            Run run = runs[r];
+            run.index = r;
+            for (int p = 0; p < run.length; p++) {
+                runOf[run.cells[p]] = r;
+                positionOf[run.cells[p]] = p;
+            }
+        }
+        buildNodeGraph(cells, runOf, positionOf);
+        headCount = 0;
+        tailCount = 0;
+        for (int node = 0; node < nodeCell.length; node++) {
+            if (state[node] == HEAD) {
+                heads = append(heads, headCount++, node);
+            } else if (state[node] == TAIL) {
+                tails = append(tails, tailCount++, node);
+            }
+        }
+        for (Run run : runs) {
+            byte[] runCells = new byte[run.length];
+            for (int p = 0; p < run.length; p++) {
+                runCells[p] = cells[run.cells[p]];
+                if (runCells[p] != WIRE)
+                    painted = append(painted, paintedCount++, run.cells[p]);
+            }
+            if (!run.decode(runCells, 0)) {
+                run.explicit = runCells;
+                run.explicitNext = new byte[run.length];
+                explicitRuns.add(run);
+            } else {
+                scheduleArrivals(run);
+            }
+            if (run.explicit != null || !run.isEmpty(0))
+                activate(run);
+        }
+        loadedModel = model;
+        loadedModCount = model.getModCount();
+    }
+
+    /**
+     * follows a run of chain cells in both directions from the given cell
+     * @param cells the cells of the model
+     * @param chain which cells are chain cells
+     * @param visited the chain cells already in a run, updated
+     * @param start the cell to start from
+     * @return the run, its cells ordered from one end to the other
+     */
+    private Run walk(byte[] cells, boolean[] chain, boolean[] visited, int start) {
+        int[] around = new int[8];
+        neighboursOf(cells, start, around);
+        visited[start] = true;
+        ArrayList<Integer> forward = new ArrayList<>(), backward = new ArrayList<>();
+        int forwardEnd = follow(cells, chain, visited, start, around[0], forward);
+        boolean ring = forwardEnd == start;
+        int backwardEnd = ring ? -1 : follow(cells, chain, visited, start, around[1], backward);
+        int[] path = new int[backward.size() + 1 + forward.size()];
+        int p = 0;
+        for (int k = backward.size() - 1; k >= 0; k--) {
+            path[p++] = backward.get(k);
+        }
+        path[p++] = start;
+        for (int cell : forward) {
+            path[p++] = cell;
+        }
+        Run run = new Run(path, ring);
+        if (!ring) {
+            run.endNode[0] = backwardEnd;
+            run.endNode[1] = forwardEnd;
+        }
+        return run;
+    }
+
+    /**
+     * follows the chain cells from a cell in one direction
+     * @param cells the cells of the model
+     * @param chain which cells are chain cells
+     * @param visited the chain cells already in a run, updated
+     * @param start the cell the run is started from
+     * @param first the neighbour of start in the direction to follow
+     * @param path the chain cells found, in order
+     * @return the first cell that isn't a chain cell, or start if the run is a ring
+     */
+    private int follow(byte[] cells, boolean[] chain, boolean[] visited, int start, int first, ArrayList<Integer> path) {
+        int[] around = new int[8];
+        int previous = start, current = first;
+        while (chain[current] && current != start) {
+            visited[current] = true;
+            path.add(current);
+            neighboursOf(cells, current, around);
+            int next = around[0] == previous ? around[1] : around[0];
+            previous = current;
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * numbers the nodes and builds their neighbour lists; a node can only be next to the end
+     * cells of a run, the other run cells have no neighbours outside of their run
+     * @param cells the cells of the model
+     * @param runOf the run of every run cell, -1 for the other cells
+     * @param positionOf the position of every run cell in its run
+     */
+    private void buildNodeGraph(byte[] cells, int[] runOf, int[] positionOf) {
+        int n = cells.length;
+        int[] nodeOf = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            nodeOf[i] = cells[i] != EMPTY && runOf[i] < 0 ? count++ : -1;
+        }
+        nodeCell = new int[count];
+        state = new byte[count];
+        candidateStamp = new int[count];
+        touchedNodeStamp = new int[count];
+        for (int i = 0; i < n; i++) {
+            if (nodeOf[i] >= 0) {
+                nodeCell[nodeOf[i]] = i;
+                state[nodeOf[i]] = cells[i];
+            }
+        }
+        int[] around = new int[8];
+        neighbourStart = new int[count + 1];
+        for (int node = 0; node < count; node++) {
+            neighbourStart[node + 1] = neighbourStart[node] + neighboursOf(cells, nodeCell[node], around);
+        }
+        neighbours = new int[neighbourStart[count]];
+        for (int node = 0; node < count; node++) {
+            int found = neighboursOf(cells, nodeCell[node], around);
+            for (int k = 0; k < found; k++) {
+                int neighbour = around[k];
+                neighbours[neighbourStart[node] + k] = nodeOf[neighbour] >= 0 ? nodeOf[neighbour]
+                        : -(runOf[neighbour] * 2 + (positionOf[neighbour] == 0 ? 0 : 1)) - 1;
+            }
+        }
+        for (Run run : runs) {
+            if (!run.ring) {
+                run.endNode[0] = nodeOf[run.endNode[0]];
+                run.endNode[1] = nodeOf[run.endNode[1]];
+            }
+        }
+    }
+
+    /**
+     * computes one generation
+     */
+    private void step() {
+        long t = time;
+        if (++candidateRound == 0) {
+            Arrays.fill(candidateStamp, 0);
+            candidateRound = 1;
+        }
+        nextHeadCount = 0;
+        //the arrivals are recorded before any node is evaluated, a node may be next to several ends
+        arrivedCount = 0;
+        while (!arrivals.isEmpty() && arrivals.peek()[0] <= t) {
+            long[] arrival = arrivals.poll();
+            Run run = runs[(int) arrival[1]];
+            int side = (int) arrival[2];
+            if (arrival[0] == t && run.explicit == null && run.endState(side, t) == HEAD) {
+                arrived[run.index * 2 + side] = t;
+                arrivedEnds = append(arrivedEnds, arrivedCount++, run.index * 2 + side);
+            }
+        }
+        //the wire nodes next to a head can become heads
+        for (int k = 0; k < headCount; k++) {
+            int node = heads[k];
+            for (int j = neighbourStart[node]; j < neighbourStart[node + 1]; j++) {
+                if (neighbours[j] >= 0)
+                    consider(neighbours[j], t);
+            }
+        }
+        for (int k = 0; k < arrivedCount; k++) {
+            consider(runs[arrivedEnds[k] >> 1].endNode[arrivedEnds[k] & 1], t);
+        }
+        for (Run run : explicitRuns) {
+            if (!run.ring) {
+                if (run.explicit[0] == HEAD)
+                    consider(run.endNode[0], t);
+                if (run.explicit[run.length - 1] == HEAD)
+                    consider(run.endNode[1], t);
+            }
+        }
+        //the heads of the nodes send electrons into the delay lines next to them
+        for (int k = 0; k < headCount; k++) {
+            int node = heads[k];
+            for (int j = neighbourStart[node]; j < neighbourStart[node + 1]; j++) {
+                if (neighbours[j] < 0) {
+                    int end = -neighbours[j] - 1;
+                    Run run = runs[end >> 1];
+                    if (run.explicit == null)
+                        enter(run, end & 1, t);
+                }
+            }
+        }
+        for (Run run : explicitRuns) {
+            run.stepExplicit(state);
+        }
+        for (int k = 0; k < tailCount; k++) {
+            touchNode(tails[k]);
+            state[tails[k]] = WIRE;
+        }
+        for (int k = 0; k < headCount; k++) {
+            touchNode(heads[k]);
+            state[heads[k]] = TAIL;
+        }
+        for (int k = 0; k < nextHeadCount; k++) {
+            touchNode(nextHeads[k]);
+            state[nextHeads[k]] = HEAD;
+        }
+        int[] tmp = tails;
+        tails = heads;
+        tailCount = headCount;
+        heads = nextHeads;
+        headCount = nextHeadCount;
+        nextHeads = tmp;
+        time = t + 1;
+        int kept = 0;
+        for (Run run : explicitRuns) {
+            run.swapExplicit();
+            if (run.decode(run.explicit, time)) {
+                run.explicit = null;
+                scheduleArrivals(run);
+            } else {
+                explicitRuns.set(kept++, run);
+            }
+        }
+        while (explicitRuns.size() > kept) {
+            explicitRuns.remove(explicitRuns.size() - 1);
+        }
+    }
+
+    /**
+     * evaluates a wire node next to a head, once per generation
+     * @param node the node
+     * @param t the current generation
+     */
+    private void consider(int node, long t) {
+        if (state[node] != WIRE || candidateStamp[node] == candidateRound)
+            return;
+        candidateStamp[node] = candidateRound;
+        int count = 0;
+        for (int j = neighbourStart[node]; j < neighbourStart[node + 1]; j++) {
+            int neighbour = neighbours[j];
+            if (neighbour >= 0 ? state[neighbour] == HEAD : isHeadAtEnd(-neighbour - 1, t))
+                count++;
+        }
+        if (count == 1 || count == 2)
+            nextHeads = append(nextHeads, nextHeadCount++, node);
+    }
+
+    /**
+     * tells whether there is a head at an end of a run next to a node; in a delay line it can only
+     * be one that arrived there, the heads entering the line are next to the tail that sent them
+     * @param end the end of the run, run * 2 + side
+     * @param t the current generation
+     * @return true if the end cell is a head
+     */
+    private boolean isHeadAtEnd(int end, long t) {
+        Run run = runs[end >> 1];
+        if (run.explicit != null)
+            return run.explicit[(end & 1) == 0 ? 0 : run.length - 1] == HEAD;
+        return arrived[end] == t;
+    }
+
+    /**
+     * lets a head of the node at the given end enter the delay line in the next generation, if the
+     * end cell is a wire that wouldn't become a head anyway; falls back to simulating the line cell
+     * by cell if the new electron would collide with another one
+     * @param run the delay line
+     * @param side 0 for the start of the line, 1 for its end
+     * @param t the current generation
+     */
+    private void enter(Run run, int side, long t) {
+        int end = side == 0 ? 0 : run.length - 1, inner = side == 0 ? 1 : run.length - 2;
+        if (run.stateAt(end, t) != WIRE || run.stateAt(inner, t) == HEAD)
+            return;
+        run.dropExited(t);
+        LongQueue same = side == 0 ? run.right : run.left, opposite = side == 0 ? run.left : run.right;
+        if (opposite.size > 0 || (same.size > 0 && same.last() > t - 2)) {
+            //the electrons would collide: simulate the line cell by cell until they're gone
+            run.toExplicit(t);
+            explicitRuns.add(run);
+            activate(run);
+            return;
+        }
+        same.add(t + 1);
+        arrivals.add(new long[]{t + run.length, run.index, 1 - side});
+        activate(run);
+    }
+
+    /**
+     * schedules the arrival of the heads of a delay line at its ends, including the heads that
+     * are at the end they are moving away from right now
+     * @param run the delay line
+     */
+    private void scheduleArrivals(Run run) {
+        if (run.ring)
+            return;
+        for (int k = 0; k < run.right.size; k++) {
+            long head = time - run.right.get(k);
+            if (head == 0)
+                arrivals.add(new long[]{time, run.index, 0});
+            if (head <= run.length - 1)
+                arrivals.add(new long[]{time + run.length - 1 - head, run.index, 1});
+        }
+        for (int k = 0; k < run.left.size; k++) {
+            long head = run.length - 1 - (time - run.left.get(k));
+            if (head == run.length - 1)
+                arrivals.add(new long[]{time, run.index, 1});
+            if (head >= 0)
+                arrivals.add(new long[]{time + head, run.index, 0});
+        }
+    }
+
+    /**
+     * adds the run to the runs with electrons in them, unless it's already there
+     * @param run the run
+     */
+    private void activate(Run run) {
+        if (!run.active) {
+            run.active = true;
+            activeRuns.add(run);
+        }
+    }
+
+    /**
+     * writes the electrons of a run into the model
+     * @param model the model
+     * @param cells the cells of the model
+     * @param run the run
+     */
+    private void paintRun(SimulationModel model, byte[] cells, Run run) {
+        if (run.explicit != null) {
+            for (int p = 0; p < run.length; p++) {
+                if (run.explicit[p] != WIRE)
+                    paint(model, cells, run, p, run.explicit[p]);
+            }
+            return;
+        }
+        run.dropExited(time);
+        for (int k = 0; k < run.right.size; k++) {
+            long head = time - run.right.get(k);
+            paint(model, cells, run, head, HEAD);
+            paint(model, cells, run, head - 1, TAIL);
+        }
+        for (int k = 0; k < run.left.size; k++) {
+            long head = run.length - 1 - (time - run.left.get(k));
+            paint(model, cells, run, head, HEAD);
+            paint(model, cells, run, head + 1, TAIL);
+        }
+    }
+
+    /**
+     * writes a head or a tail of a run into the model
+     * @param model the model
+     * @param cells the cells of the model
+     * @param run the run
+     * @param position the position, wrapped around for rings and ignored if outside of a line
+     * @param newState the state to write
+     */
+    private void paint(SimulationModel model, byte[] cells, Run run, long position, byte newState) {
+        if (run.ring)
+            position = Math.floorMod(position, run.length);
+        if (position < 0 || position >= run.length)
+            return;
+        int i = run.cells[(int) position];
+        if (paintedStamp[i] != advanceRound) {
+            paintedStamp[i] = advanceRound;
+            painted = append(painted, paintedCount++, i);
+            write(model, cells, i, newState);
+        }
+    }
+
+    /**
+     * remembers a node that may change during the current advance
+     * @param node the node
+     */
+    private void touchNode(int node) {
+        if (touchedNodeStamp[node] != advanceRound) {
+            touchedNodeStamp[node] = advanceRound;
+            touchedNodes = append(touchedNodes, touchedNodeCount++, node);
+        }
+    }
+
+    /**
+     * collects the non-empty neighbours of a cell
+     * @param cells the cells of the model
+     * @param i index of the cell
+     * @param around the array to collect the neighbours into
+     * @return the number of non-empty neighbours
+     */
+    private int neighboursOf(byte[] cells, int i, int[] around) {
+        int x = i % width, y = i / width, count = 0;
+        for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                int n = ny * width + nx;
+                if (n != i && cells[n] != EMPTY)
+                    around[count++] = n;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * tells whether two cells are in each other's Moore neighbourhood
+     * @param a index of the first cell
+     * @param b index of the second cell
+     * @return true if the cells touch
+     */
+    private boolean touching(int a, int b) {
+        return Math.abs(a % width - b % width) <= 1 && Math.abs(a / width - b / width) <= 1;
+    }
+
+    /**
+     * stores the value at the given position, growing the array if needed
+     * @param array the array to store into
+     * @param position the position to store at
+     * @param value the value to store
+     * @return the array, or a bigger copy of it
+     */
+    private static int[] append(int[] array, int position, int value) {
+        if (position == array.length)
+            array = Arrays.copyOf(array, position * 2);
+        array[position] = value;
+        return array;
+    }
+
+    /**
+     * an unbranched run of wire: a delay line between two nodes, or a ring without nodes.
+     * In a line an electron moving towards the end entered at generation e has its head at
+     * position t - e, one moving towards the start at position length - 1 - (t - e); in a ring
+     * the entry generations are kept modulo the length
+     */
+    private static class Run {
+
+        final int[] cells;
+        final int length;
+        final boolean ring;
+        final int[] endNode = {-1, -1};
+        int index;
+        boolean active;
+        final LongQueue right = new LongQueue(), left = new LongQueue();
+        //the cells of the run while it's simulated cell by cell, null otherwise
+        byte[] explicit, explicitNext;
+
+        /**
+         * constructor of Run
+         * @param cells the cells of the run in order
+         * @param ring whether the last cell is next to the first one
+         */
+        Run(int[] cells, boolean ring) {
+            this.cells = cells;
+            this.length = cells.length;
+            this.ring = ring;
+        }
+
+        /**
+         * calculates the state of a cell of the run
+         * @param p position of the cell in the run
+         * @param t the generation, the current one or the next one
+         * @return the state of the cell
+         */
+        byte stateAt(int p, long t) {
+            if (explicit != null)
+                return explicit[p];
+            if (contains(right, t - p) || contains(left, t - (length - 1 - p)))
+                return HEAD;
+            if (contains(right, t - p - 1) || contains(left, t - (length - 1 - p) - 1))
+                return TAIL;
+            return WIRE;
+        }
+
+        /**
+         * calculates the state of an end cell of the run
+         * @param side 0 for the start of the run, 1 for its end
+         * @param t the generation
+         * @return the state of the cell
+         */
+        byte endState(int side, long t) {
+            return stateAt(side == 0 ? 0 : length - 1, t);
+        }
+
+        /**
+         * tells whether an electron entered at the given generation
+         * @param queue the electrons moving in one direction
+         * @param entry the generation
+         * @return true if there is such an electron
+         */
+        private boolean contains(LongQueue queue, long entry) {
+            return queue.contains(ring ? Math.floorMod(entry, length) : entry);
+        }
+
+        /**
+         * tells whether the run is all wire
+         * @param t the current generation
+         * @return true if there are no electrons in the run
+         */
+        boolean isEmpty(long t) {
+            dropExited(t);
+            return right.size == 0 && left.size == 0;
+        }
+
+        /**
+         * forgets the electrons that have left the line
+         * @param t the current generation
+         */
+        void dropExited(long t) {
+            if (ring)
+                return;
+            //the tail is past the end when t - e - 1 >= length, in both directions
+            while (right.size > 0 && right.get(0) <= t - length - 1) {
+                right.removeFirst();
+            }
+            while (left.size > 0 && left.get(0) <= t - length - 1) {
+                left.removeFirst();
+            }
+        }
+
+        /**
+         * switches to cell by cell simulation
+         * @param t the current generation
+         */
+        void toExplicit(long t) {
+            byte[] current = new byte[length];
+            for (int p = 0; p < length; p++) {
+                current[p] = stateAt(p, t);
+            }
+            right.clear();
+            left.clear();
+            explicit = current;
+            explicitNext = new byte[length];
+        }
+
+        /**
+         * computes the next generation of a run simulated cell by cell into the back buffer
+         * @param state the states of the nodes, the neighbours of the ends
+         */
+        void stepExplicit(byte[] state) {
+            for (int p = 0; p < length; p++) {
+                byte s = explicit[p];
+                byte next = s;
+                if (s == HEAD) {
+                    next = TAIL;
+                } else if (s == TAIL) {
+                    next = WIRE;
+                } else if (s == WIRE) {
+                    byte before = p > 0 ? explicit[p - 1] : ring ? explicit[length - 1] : state[endNode[0]];
+                    byte after = p < length - 1 ? explicit[p + 1] : ring ? explicit[0] : state[endNode[1]];
+                    if (before == HEAD || after == HEAD)
+                        next = HEAD;
+                }
+                explicitNext[p] = next;
+            }
+        }
+
+        /**
+         * makes the computed next generation of a run simulated cell by cell current
+         */
+        void swapExplicit() {
+            byte[] tmp = explicit;
+            explicit = explicitNext;
+            explicitNext = tmp;
+        }
+
+        /**
+         * tries to describe the cells of the run as electrons that travel without colliding:
+         * every head has its tail behind it (or is just entering at an end), a lone tail at an
+         * end belongs to a head that has just left, electrons moving the same way are at least
+         * 3 cells apart and no two electrons move towards each other
+         * @param c the cells of the run
+         * @param t the current generation
+         * @return false if the run has to be simulated cell by cell, the electrons aren't changed then
+         */
+        boolean decode(byte[] c, long t) {
+            long[] rightHeads = new long[length + 1], leftHeads = new long[length + 1];
+            int rightCount = 0, leftCount = 0;
+            boolean[] claimed = new boolean[length];
+            for (int p = 0; p < length; p++) {
+                if (c[p] != HEAD)
+                    continue;
+                int before = p > 0 ? p - 1 : ring ? length - 1 : -1;
+                int after = p < length - 1 ? p + 1 : ring ? 0 : -1;
+                boolean tailBefore = before >= 0 && c[before] == TAIL, tailAfter = after >= 0 && c[after] == TAIL;
+                if (tailBefore && !tailAfter) {
+                    if (claimed[before]) return false;
+                    claimed[before] = true;
+                    rightHeads[rightCount++] = p;
+                } else if (tailAfter && !tailBefore) {
+                    if (claimed[after]) return false;
+                    claimed[after] = true;
+                    leftHeads[leftCount++] = p;
+                } else if (!tailBefore && !tailAfter && before < 0 && c[after] == WIRE) {
+                    rightHeads[rightCount++] = p;
+                } else if (!tailBefore && !tailAfter && after < 0 && c[before] == WIRE) {
+                    leftHeads[leftCount++] = p;
+                } else {
+                    return false;
+                }
+            }
+            for (int p = 0; p < length; p++) {
+                if (c[p] != TAIL || claimed[p])
+                    continue;
+                if (!ring && p == length - 1)
+                    rightHeads[rightCount++] = length;
+                else if (!ring && p == 0)
+                    leftHeads[leftCount++] = -1;
+                else
+                    return false;
+            }
+            Arrays.sort(rightHeads, 0, rightCount);
+            Arrays.sort(leftHeads, 0, leftCount);
+            if (ring ? rightCount > 0 && leftCount > 0
+                    : rightCount > 0 && leftCount > 0 && rightHeads[0] < leftHeads[leftCount - 1])
+                return false;
+            if (!spaced(rightHeads, rightCount) || !spaced(leftHeads, leftCount))
+                return false;
+            right.clear();
+            left.clear();
+            //the entry generations have to be ascending: the head furthest along entered first
+            for (int k = rightCount - 1; k >= 0; k--) {
+                right.add(entry(t - rightHeads[k]));
+            }
+            for (int k = 0; k < leftCount; k++) {
+                left.add(entry(t - (length - 1 - leftHeads[k])));
+            }
+            if (ring) {
+                right.sort();
+                left.sort();
+            }
+            return true;
+        }
+
+        /**
+         * tells whether electrons moving the same way are far enough apart not to interfere
+         * @param heads the sorted positions of the heads
+         * @param count the number of heads
+         * @return true if every two consecutive heads are at least 3 cells apart
+         */
+        private boolean spaced(long[] heads, int count) {
+            for (int k = 1; k < count; k++) {
+                if (heads[k] - heads[k - 1] < 3)
+                    return false;
+            }
+            return !ring || count < 2 || heads[0] + length - heads[count - 1] >= 3;
+        }
+
+        /**
+         * normalizes an entry generation, modulo the length for rings
+         * @param entry the generation
+         * @return the stored value
+         */
+        private long entry(long entry) {
+            return ring ? Math.floorMod(entry, length) : entry;
+        }
+    }
+
+    /**
+     * growable circular queue of ascending longs
+     */
+    private static class LongQueue {
+
+        long[] values = new long[4];
+        int first, size;
+
+        /**
+         * appends a value, it has to be greater than the others unless the queue is sorted afterwards
+         * @param value the value
+         */
+        void add(long value) {
+            if (size == values.length) {
+                long[] grown = new long[size * 2];
+                for (int k = 0; k < size; k++) {
+                    grown[k] = get(k);
+                }
+                values = grown;
+                first = 0;
+            }
+            values[(first + size++) & (values.length - 1)] = value;
+        }
+
+        /**
+         * returns a value of the queue
+         * @param k the position of the value from the front
+         * @return the value
+         */
+        long get(int k) {
+            return values[(first + k) & (values.length - 1)];
+        }
+
+        /**
+         * returns the greatest value
+         * @return the last value
+         */
+        long last() {
+            return get(size - 1);
+        }
+
+        /**
+         * removes the smallest value
+         */
+        void removeFirst() {
+            first = (first + 1) & (values.length - 1);
+            size--;
+        }
+
+        /**
+         * removes every value
+         */
+        void clear() {
+            first = 0;
+            size = 0;
+        }
+
+        /**
+         * sorts the values
+         */
+        void sort() {
+            long[] sorted = new long[values.length];
+            for (int k = 0; k < size; k++) {
+                sorted[k] = get(k);
+            }
+            Arrays.sort(sorted, 0, size);
+            values = sorted;
+            first = 0;
+        }
+
+        /**
+         * binary searches the queue
+         * @param value the value to look for
+         * @return true if the value is in the queue
+         */
+        boolean contains(long value) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long v = get(middle);
+                if (v < value)
+                    low = middle + 1;
+                else if (v > value)
+                    high = middle - 1;
+                else
+                    return true;
+            }
+            return false;
+        }
+    }
+}
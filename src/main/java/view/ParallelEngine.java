@@ -0,0 +1,148 @@
+package view;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static view.SimulationModel.*;
+
+/**
+ * Splits the grid into horizontal stripes and computes the next generation of the stripes
+ * on a fork-join pool. Every stripe reads the current buffer of the model and writes only
+ * its own rows of the back buffer, the buffers are swapped once all stripes are done.
+ */
+public class ParallelEngine implements SimulationEngine {
+
+    private static final int minRowsPerStripe = 16;
+    private final ForkJoinPool pool;
+
+    /**
+     * constructor of ParallelEngine, uses the common fork-join pool
+     */
+    public ParallelEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * constructor of ParallelEngine
+     * @param pool the pool to compute the stripes on
+     */
+    public ParallelEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void advance(SimulationModel model, long generations) {
+        if (generations == 0) {
+            model.resetChanges();
+            return;
+        }
+        Stripe[] stripes = createStripes(model);
+        if (generations == 1) {
+            step(model, stripes, true);
+            model.resetChanges();
+            for (Stripe stripe : stripes) {
+                for (int k = 0; k < stripe.changedCount; k++) {
+                    model.recordChange(stripe.changed[k]);
+                }
+            }
+        } else {
+            byte[] before = model.current().clone();
+            for (long g = 0; g < generations; g++) {
+                step(model, stripes, false);
+            }
+            model.resetChanges();
+            byte[] after = model.current();
+            for (int i = 0; i < after.length; i++) {
+                if (after[i] != before[i])
+                    model.recordChange(i);
+            }
+        }
+        model.addGenerations(generations);
+    }
+
+    /**
+     * divides the rows of the model into stripes, a few per worker thread
+     * @param model the model to divide
+     * @return the stripes
+     */
+    private Stripe[] createStripes(SimulationModel model) {
+        int height = model.getHeight();
+        int count = Math.max(1, Math.min(pool.getParallelism() * 4, height / minRowsPerStripe));
+        Stripe[] stripes = new Stripe[count];
+        for (int s = 0; s < count; s++) {
+            stripes[s] = new Stripe(model, height * s / count, height * (s + 1) / count);
+        }
+        return stripes;
+    }
+
+    /**
+     * computes one generation of every stripe in parallel, then swaps the buffers of the model
+     * @param model the model to step
+     * @param stripes the stripes of the model
+     * @param recordChanges whether the stripes should record the cells that changed
+     */
+    private void step(SimulationModel model, Stripe[] stripes, boolean recordChanges) {
+        for (Stripe stripe : stripes) {
+            stripe.reinitialize();
+            stripe.recordChanges = recordChanges;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(stripes);
+            }
+        });
+        model.swapBuffers();
+    }
+
+    /**
+     * the rows between fromRow (inclusive) and toRow (exclusive)
+     */
+    private static class Stripe extends RecursiveAction {
+
+        private static final long serialVersionUID = 8584400920797528220L;
+
+        private final SimulationModel model;
+        private final int fromRow, toRow;
+        private boolean recordChanges;
+        private int[] changed = new int[16];
+        private int changedCount;
+
+        /**
+         * constructor of Stripe
+         * @param model the model the stripe belongs to
+         * @param fromRow first row of the stripe
+         * @param toRow the row after the last row of the stripe
+         */
+        Stripe(SimulationModel model, int fromRow, int toRow) {
+            this.model = model;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            int width = model.getWidth(), height = model.getHeight();
+            byte[] current = model.current(), next = model.next();
+            byte[] table = model.getRule().table();
+            int counted = model.getRule().getCountedStates();
+            changedCount = 0;
+            for (int y = fromRow; y < toRow; y++) {
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int i = row + x;
+                    byte state = current[i];
+                    int heads = (counted >>> state & 1) != 0 ? NaiveEngine.headsAround(current, width, height, x, y) : 0;
+                    byte nextState = table[state << 4 | heads];
+                    next[i] = nextState;
+                    if (recordChanges && nextState != state) {
+                        if (changedCount == changed.length)
+                            changed = Arrays.copyOf(changed, changedCount * 2);
+                        changed[changedCount++] = i;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package view;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static view.SimulationModel.*;
+
+/**
+ * Generates synthetic circuits of any size for stress tests and benchmarks:
+ * <ul>
+ * <li>clocks: 6-cell clock loops tiled over the grid, every wire is busy</li>
+ * <li>delaylines: racetracks of two long wires joined at their ends, an electron on every
+ * 1 / headDensity cells of them</li>
+ * <li>diodes: the same racetracks with a diode every 16 cells in the direction of travel and an
+ * electron between every two diodes, long and mostly idle stretches of wire</li>
+ * <li>mesh: random wire with wireDensity, the wire cells are heads with headDensity</li>
+ * </ul>
+ * Every row is computed on its own, so a grid of billions of cells is written into a wire file
+ * row by row without being in the memory, and can be run by {@link MappedGrid}. The patterns
+ * are reproducible, the same parameters always give the same cells.
+ * <pre>
+ * java view.PatternGenerator &lt;pattern&gt; &lt;width&gt; &lt;height&gt; &lt;output.wire&gt; [--seed n] [--wires density] [--heads density]
+ * </pre>
+ */
+public class PatternGenerator implements WireFormat.RowSource {
+
+    private static final String usage = "usage: PatternGenerator clocks|delaylines|diodes|mesh <width> <height> <output.wire> [--seed n] [--wires density] [--heads density]";
+
+    private final String pattern;
+    private final int width, height;
+    private double wireDensity = 0.5;
+    private double headDensity = 0.05;
+    private long seed = 42;
+
+    /**
+     * constructor of PatternGenerator
+     * @param pattern clocks, delaylines, diodes or mesh
+     * @param width width of the grid
+     * @param height height of the grid
+     * @throws IllegalArgumentException if the pattern is unknown or the size is negative
+     */
+    public PatternGenerator(String pattern, int width, int height) {
+        switch (pattern) {
+            case "clocks", "delaylines", "diodes", "mesh" -> this.pattern = pattern;
+            default -> throw new IllegalArgumentException("Unknown pattern: " + pattern);
+        }
+        if (width < 0 || height < 0)
+            throw new IllegalArgumentException("Invalid grid size: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * getter for width
+     * @return width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * getter for height
+     * @return height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * setter for wireDensity
+     * @param wireDensity the probability that a cell of the mesh is wire
+     */
+    public void setWireDensity(double wireDensity) {
+        if (!(wireDensity >= 0 && wireDensity <= 1))
+            throw new IllegalArgumentException("Invalid wire density: " + wireDensity);
+        this.wireDensity = wireDensity;
+    }
+
+    /**
+     * setter for headDensity
+     * @param headDensity the probability that a wire cell of the mesh is a head, or the number of
+     * electrons per cell of the delay lines
+     */
+    public void setHeadDensity(double headDensity) {
+        if (!(headDensity >= 0 && headDensity <= 1))
+            throw new IllegalArgumentException("Invalid head density: " + headDensity);
+        this.headDensity = headDensity;
+    }
+
+    /**
+     * setter for seed
+     * @param seed seed of the random mesh
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void fillRow(int y, byte[] row) {
+        Arrays.fill(row, 0, width, EMPTY);
+        switch (pattern) {
+            case "clocks" -> clocks(y, row);
+            case "delaylines" -> racetrack(y, row, false);
+            case "diodes" -> racetrack(y, row, true);
+            case "mesh" -> mesh(y, row);
+        }
+    }
+
+    /**
+     * creates a model with the pattern
+     * @return the model
+     * @throws IllegalStateException if the grid is too big for a model, it has to be written into a file
+     */
+    public SimulationModel toModel() {
+        if ((long) width * height > Integer.MAX_VALUE)
+            throw new IllegalStateException("A " + width + "x" + height + " grid doesn't fit into a model");
+        SimulationModel model = new SimulationModel(width, height);
+        byte[] cells = model.current();
+        byte[] row = new byte[width];
+        for (int y = 0; y < height; y++) {
+            fillRow(y, row);
+            System.arraycopy(row, 0, cells, y * width, width);
+        }
+        return model;
+    }
+
+    /**
+     * writes the pattern into a packed wire file row by row
+     * @param file the file to write, an existing one is overwritten
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            new WireFormat().writePacked(width, height, this, 500, channel);
+        }
+    }
+
+    /**
+     * fills a row of the 5x4 tiles of clock loops, each with one electron in it
+     * @param y the row
+     * @param row the cells of the row
+     */
+    private void clocks(int y, byte[] row) {
+        int tileY = y % 4;
+        if (y - tileY + 3 > height)
+            return;
+        for (int x = 0; x + 4 <= width; x += 5) {
+            switch (tileY) {
+                case 0 -> {
+                    row[x + 1] = TAIL;
+                    row[x + 2] = HEAD;
+                }
+                case 1 -> {
+                    row[x] = WIRE;
+                    row[x + 3] = WIRE;
+                }
+                case 2 -> {
+                    row[x + 1] = WIRE;
+                    row[x + 2] = WIRE;
+                }
+            }
+        }
+    }
+
+    /**
+     * fills a row of the racetracks, 8 rows each: the top wire is the second row, the bottom one
+     * the sixth, they are joined at the first and the last column. The electrons travel right on the
+     * top wire and left on the bottom one. A diode is a gap in the wire with two wire cells above
+     * and below it; the gap is on the right side of it on the top wire and on the left side on the
+     * bottom one, so the electrons pass it.
+     * @param y the row
+     * @param row the cells of the row
+     * @param diodes whether to put diodes on the wires
+     */
+    private void racetrack(int y, byte[] row, boolean diodes) {
+        if (y / 8 * 8 + 7 > height || width < 2)
+            return;
+        //the row relative to the top wire
+        int r = y % 8 - 1;
+        if (r == 0 || r == 4) {
+            Arrays.fill(row, 0, width, WIRE);
+        } else if (r > 0 && r < 4) {
+            row[0] = WIRE;
+            row[width - 1] = WIRE;
+        }
+        if (diodes) {
+            for (int x = 8; x + 10 < width; x += 16) {
+                switch (r) {
+                    case -1, 1, 3, 5 -> {
+                        row[x] = WIRE;
+                        row[x + 1] = WIRE;
+                    }
+                    case 0 -> row[x + 1] = EMPTY;
+                    case 4 -> row[x] = EMPTY;
+                }
+            }
+        }
+        if (r != 0 && r != 4)
+            return;
+        //halfway between the diodes, an electron touching a diode would start it oscillating
+        int spacing = diodes ? 16 : headDensity > 0 ? (int) Math.max(3, Math.min(Math.round(1 / headDensity), width)) : 0;
+        if (spacing == 0)
+            return;
+        for (int x = spacing; x + (diodes ? 4 : 2) < width; x += spacing) {
+            row[x] = HEAD;
+            row[r == 0 ? x - 1 : x + 1] = TAIL;
+        }
+    }
+
+    /**
+     * fills a row of random wire and heads; every row has a random generator of its own, seeded by
+     * the seed and the row, so the rows can be generated in any order
+     * @param y the row
+     * @param row the cells of the row
+     */
+    private void mesh(int y, byte[] row) {
+        SplittableRandom random = new SplittableRandom(mix(seed + mix(y)));
+        for (int x = 0; x < width; x++) {
+            if (random.nextDouble() < wireDensity)
+                row[x] = random.nextDouble() < headDensity ? HEAD : WIRE;
+        }
+    }
+
+    /**
+     * scrambles the bits of a number, so that close seeds give unrelated generators
+     * @param z the number
+     * @return the scrambled number
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * main method
+     * @param args the pattern, the size, the output file and the options
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.err.println(usage);
+            System.exit(2);
+        }
+        PatternGenerator generator;
+        try {
+            generator = new PatternGenerator(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            for (int i = 4; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seed" -> generator.setSeed(Long.parseLong(args[++i]));
+                    case "--wires" -> generator.setWireDensity(Double.parseDouble(args[++i]));
+                    case "--heads" -> generator.setHeadDensity(Double.parseDouble(args[++i]));
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage);
+            System.exit(2);
+            return;
+        }
+        File output = new File(args[3]);
+        long start = System.nanoTime();
+        try {
+            generator.write(output);
+        } catch (IOException e) {
+            System.err.println("Failed to write " + output + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.printf(Locale.ROOT, "cells=%d%n", (long) generator.getWidth() * generator.getHeight());
+        System.out.printf(Locale.ROOT, "bytes=%d%n", output.length());
+        System.out.printf(Locale.ROOT, "seconds=%.3f%n", (System.nanoTime() - start) / 1e9);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,70 @@
+package view;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads and writes patterns in Golly's extended RLE format with the WireWorld rule.
+ * The header line (x = width, y = height) gives the size of the model, so the cells
+ * are decoded straight into it while the file is read line by line.
+ */
+public class RleFormat {
+
+    private static final Pattern headerPattern = Pattern.compile(
+            "x\\s*=\\s*(\\d+)\\s*,\\s*y\\s*=\\s*(\\d+)(?:\\s*,\\s*rule\\s*=\\s*(\\S+))?.*");
+
+    /**
+     * reads a pattern
+     * @param reader the reader to read from
+     * @return the model of the pattern
+     * @throws IOException if the file isn't a valid WireWorld RLE file
+     */
+    public SimulationModel read(BufferedReader reader) throws IOException {
+        String line;
+        Matcher header = null;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            header = headerPattern.matcher(line);
+            if (!header.matches())
+                throw new IOException("Missing RLE header");
+            break;
+        }
+        if (header == null)
+            throw new IOException("Empty RLE file");
+        String rule = header.group(3);
+        if (rule != null && !rule.toLowerCase(Locale.ROOT).startsWith("wireworld"))
+            throw new IOException("Unsupported rule: " + rule);
+        long width = Long.parseLong(header.group(1)), height = Long.parseLong(header.group(2));
+        if (width * height > Integer.MAX_VALUE)
+            throw new IOException("Pattern too big: " + width + "x" + height);
+        SimulationModel model = new SimulationModel((int) width, (int) height);
+        RunLengthCodec codec = new RunLengthCodec((x, y, state) -> {
+            if (x >= width || y >= height)
+                throw new IOException("Cell (" + x + ", " + y + ") is outside of the pattern");
+            model.set(y * (int) width + x, state);
+        });
+        codec.setBounds(width, height);
+        while (!codec.isFinished() && (line = reader.readLine()) != null) {
+            if (!line.startsWith("#"))
+                codec.decode(line);
+        }
+        return model;
+    }
+
+    /**
+     * writes the model as a pattern
+     * @param model the model to write
+     * @param writer the writer to write to
+     * @throws IOException
+     */
+    public void write(SimulationModel model, Writer writer) throws IOException {
+        writer.write("x = " + model.getWidth() + ", y = " + model.getHeight() + ", rule = WireWorld\n");
+        RunLengthCodec.encode(model, writer, "");
+    }
+}
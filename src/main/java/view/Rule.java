@@ -0,0 +1,171 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * The rule of the automaton: the next state of a cell as a function of its state and the number
+ * of heads among its 8 neighbours. A rule is described by a table of transitions and compiled
+ * into a lookup table indexed by (state &lt;&lt; 4 | heads), so that an engine computes a cell
+ * with a single load instead of branches.
+ * Every rule has to keep empty cells empty and a wire without a head around a wire, the engines
+ * rely on the first to know the wires in advance, and on the second to skip the idle parts.
+ * Rules where heads become tails, tails become wires and wires become heads for some head
+ * counts are electron rules, the specialized engines support them through their birth counts.
+ */
+public final class Rule {
+
+    //initialized before the rules below
+    private static final CellState[] states = CellState.values();
+
+    /**
+     * Wireworld: a wire becomes a head next to 1 or 2 heads
+     */
+    public static final Rule WIREWORLD = electrons("wireworld", 1, 2);
+
+    private final String name;
+    private final byte[] table = new byte[states.length << 4];
+    private final int countedStates;
+    private final int birthCounts;
+
+    /**
+     * constructor of Rule, compiles the transitions into the lookup table
+     * @param name the name of the rule
+     * @param transitions the next state for every state (by ordinal) and number of heads around (0 to 8)
+     * @throws IllegalArgumentException if the table is incomplete, or changes an empty cell or a wire without heads around
+     */
+    public Rule(String name, CellState[][] transitions) {
+        this.name = name;
+        if (transitions.length != states.length)
+            throw new IllegalArgumentException("Transitions are needed for " + states.length + " states");
+        int counted = 0;
+        for (int state = 0; state < states.length; state++) {
+            if (transitions[state].length != 9)
+                throw new IllegalArgumentException("Transitions are needed for 0 to 8 heads around a " + states[state]);
+            for (int heads = 0; heads <= 8; heads++) {
+                table[state << 4 | heads] = (byte) transitions[state][heads].ordinal();
+                if (transitions[state][heads] != transitions[state][0])
+                    counted |= 1 << state;
+            }
+        }
+        for (int heads = 0; heads <= 8; heads++) {
+            if (transitions[CellState.EMPTY.ordinal()][heads] != CellState.EMPTY)
+                throw new IllegalArgumentException("Empty cells have to stay empty");
+        }
+        if (transitions[CellState.WIRE.ordinal()][0] != CellState.WIRE)
+            throw new IllegalArgumentException("A wire without heads around has to stay a wire");
+        countedStates = counted;
+        int births = 0;
+        boolean electrons = true;
+        for (int heads = 0; heads <= 8; heads++) {
+            electrons &= transitions[CellState.HEAD.ordinal()][heads] == CellState.TAIL
+                    && transitions[CellState.TAIL.ordinal()][heads] == CellState.WIRE;
+            CellState wire = transitions[CellState.WIRE.ordinal()][heads];
+            if (wire == CellState.HEAD)
+                births |= 1 << heads;
+            else
+                electrons &= wire == CellState.WIRE;
+        }
+        birthCounts = electrons ? births : -1;
+    }
+
+    /**
+     * creates an electron rule: heads become tails, tails become wires, and wires become heads
+     * next to the given numbers of heads
+     * @param name the name of the rule
+     * @param birthCounts the numbers of heads, from 1 to 8, that turn a wire into a head
+     * @return the rule
+     */
+    public static Rule electrons(String name, int... birthCounts) {
+        CellState[][] transitions = new CellState[states.length][9];
+        Arrays.fill(transitions[CellState.EMPTY.ordinal()], CellState.EMPTY);
+        Arrays.fill(transitions[CellState.HEAD.ordinal()], CellState.TAIL);
+        Arrays.fill(transitions[CellState.TAIL.ordinal()], CellState.WIRE);
+        Arrays.fill(transitions[CellState.WIRE.ordinal()], CellState.WIRE);
+        for (int heads : birthCounts) {
+            if (heads < 1 || heads > 8)
+                throw new IllegalArgumentException("Invalid number of heads: " + heads);
+            transitions[CellState.WIRE.ordinal()][heads] = CellState.HEAD;
+        }
+        return new Rule(name, transitions);
+    }
+
+    /**
+     * creates a rule by its name, used by the command line tools
+     * @param name wireworld, or the digits of the numbers of heads that turn a wire into a head, e.g. 12
+     * @return the rule
+     * @throws IllegalArgumentException if the name isn't a rule
+     */
+    public static Rule byName(String name) {
+        if (name.equalsIgnoreCase(WIREWORLD.name))
+            return WIREWORLD;
+        if (!name.matches("[1-8]+"))
+            throw new IllegalArgumentException("Unknown rule: " + name);
+        return electrons(name, name.chars().map(c -> c - '0').toArray());
+    }
+
+    /**
+     * getter for name
+     * @return the name of the rule
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * returns the next state of a cell
+     * @param state the state of the cell
+     * @param heads the number of heads around the cell
+     * @return the next state
+     */
+    public CellState next(CellState state, int heads) {
+        return states[table[state.ordinal() << 4 | heads]];
+    }
+
+    /**
+     * getter for the lookup table, it mustn't be modified
+     * @return the next state at (state &lt;&lt; 4 | heads)
+     */
+    byte[] table() {
+        return table;
+    }
+
+    /**
+     * getter for countedStates
+     * @return the mask of the states (by ordinal) whose next state depends on the heads around them,
+     * the heads don't have to be counted for the others
+     */
+    int getCountedStates() {
+        return countedStates;
+    }
+
+    /**
+     * getter for birthCounts
+     * @return the mask of the numbers of heads that turn a wire into a head, or -1 if it's not an electron rule
+     */
+    public int getBirthCounts() {
+        return birthCounts;
+    }
+
+    /**
+     * tells whether this is an electron rule
+     * @return true if only the birth counts of the wires differ from Wireworld
+     */
+    public boolean isElectronRule() {
+        return birthCounts >= 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Rule && Arrays.equals(table, ((Rule) o).table);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(table);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
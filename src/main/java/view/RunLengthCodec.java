@@ -0,0 +1,200 @@
+package view;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Reads and writes the run-length encoded cell data shared by the Golly RLE and the MCell
+ * formats: '.' is an empty cell, 'A' a head, 'B' a tail and 'C' a wire (the CellState
+ * ordinals), an optional count in front of a cell repeats it, '$' ends a row and '!' ends
+ * the pattern. The data is processed line by line, so the whole file is never in memory.
+ */
+class RunLengthCodec {
+
+    //the longest line written
+    static final int lineLength = 70;
+    //the extent of a pattern without a declared size
+    static final int defaultMaxExtent = 1 << 20;
+
+    /**
+     * receives the decoded cells
+     */
+    interface CellSink {
+        /**
+         * sets a non-empty cell
+         * @param x x coordinate of the cell
+         * @param y y coordinate of the cell
+         * @param state state ordinal of the cell
+         * @throws IOException if the cell is out of bounds
+         */
+        void set(int x, int y, byte state) throws IOException;
+    }
+
+    private final CellSink sink;
+    private long maxWidth = defaultMaxExtent, maxHeight = defaultMaxExtent;
+    private int x, y;
+    private long count;
+    private boolean finished;
+
+    /**
+     * constructor of RunLengthCodec for decoding
+     * @param sink the receiver of the decoded cells
+     */
+    RunLengthCodec(CellSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * setter for the declared size of the pattern, the runs beyond it are rejected
+     * @param width width of the pattern
+     * @param height height of the pattern
+     */
+    void setBounds(long width, long height) {
+        maxWidth = width;
+        maxHeight = height;
+    }
+
+    /**
+     * tells whether the end of the pattern ('!') was reached
+     * @return true if the pattern is finished
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * decodes a line of cell data, a count can continue on the next line
+     * @param line the line to decode
+     * @throws IOException if the line contains an invalid character or a run beyond the bounds
+     */
+    void decode(CharSequence line) throws IOException {
+        for (int i = 0; i < line.length() && !finished; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                count = count * 10 + (c - '0');
+                if (count > Integer.MAX_VALUE)
+                    throw new IOException("Run count too big");
+                continue;
+            }
+            if (Character.isWhitespace(c))
+                continue;
+            int run = count == 0 ? 1 : (int) count;
+            count = 0;
+            switch (c) {
+                case '.', 'b' -> {
+                    checkRow(run);
+                    x += run;
+                }
+                case 'A', 'B', 'C' -> {
+                    checkRow(run);
+                    if (y >= maxHeight)
+                        throw new IOException("Row " + y + " is outside of the pattern");
+                    byte state = (byte) (c - 'A' + 1);
+                    for (int k = 0; k < run; k++) {
+                        sink.set(x++, y, state);
+                    }
+                }
+                case '$' -> {
+                    if ((long) y + run > maxHeight)
+                        throw new IOException("Row " + ((long) y + run) + " is outside of the pattern");
+                    y += run;
+                    x = 0;
+                }
+                case '!' -> finished = true;
+                default -> throw new IOException("Invalid character in pattern: " + c);
+            }
+        }
+    }
+
+    /**
+     * checks that a run fits in the current row
+     * @param run the length of the run
+     * @throws IOException if the run goes beyond the width of the pattern
+     */
+    private void checkRow(int run) throws IOException {
+        if ((long) x + run > maxWidth)
+            throw new IOException("Run of " + run + " cells at (" + x + ", " + y + ") is outside of the pattern");
+    }
+
+    /**
+     * encodes the model row by row, empty cells at the end of a row and empty rows
+     * at the end of the pattern are left out
+     * @param model the model to encode
+     * @param writer the writer to write to
+     * @param linePrefix written at the start of every line
+     * @throws IOException
+     */
+    static void encode(SimulationModel model, Writer writer, String linePrefix) throws IOException {
+        int width = model.getWidth(), height = model.getHeight();
+        LineWriter out = new LineWriter(writer, linePrefix);
+        int pendingRows = 0;
+        for (int row = 0; row < height; row++) {
+            int start = row * width;
+            int end = start + width;
+            while (end > start && model.get(end - 1) == SimulationModel.EMPTY) {
+                end--;
+            }
+            if (end > start && pendingRows > 0) {
+                out.token(pendingRows, '$');
+                pendingRows = 0;
+            }
+            int i = start;
+            while (i < end) {
+                byte state = model.get(i);
+                int runStart = i;
+                while (i < end && model.get(i) == state) {
+                    i++;
+                }
+                out.token(i - runStart, state == SimulationModel.EMPTY ? '.' : (char) ('A' + state - 1));
+            }
+            pendingRows++;
+        }
+        out.token(1, '!');
+        out.finish();
+    }
+
+    /**
+     * writes tokens wrapped into lines of at most lineLength characters
+     */
+    private static class LineWriter {
+
+        private final Writer writer;
+        private final String prefix;
+        private int length;
+
+        LineWriter(Writer writer, String prefix) {
+            this.writer = writer;
+            this.prefix = prefix;
+        }
+
+        /**
+         * writes a run, wrapping the line if it would get too long
+         * @param run the length of the run
+         * @param c the character of the run
+         * @throws IOException
+         */
+        void token(int run, char c) throws IOException {
+            String token = run == 1 ? String.valueOf(c) : run + String.valueOf(c);
+            if (length > 0 && length + token.length() > lineLength) {
+                writer.write('\n');
+                length = 0;
+            }
+            if (length == 0) {
+                writer.write(prefix);
+                length = prefix.length();
+            }
+            writer.write(token);
+            length += token.length();
+        }
+
+        /**
+         * ends the last line
+         * @throws IOException
+         */
+        void finish() throws IOException {
+            if (length > 0)
+                writer.write('\n');
+            writer.flush();
+        }
+    }
+}
@@ -3,11 +3,27 @@ package view;
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 
 public class SavedSims {
 
-    private final JFileChooser fileChooser = new JFileChooser();
+    //created on first use, so that loading and saving works without initializing Swing
+    private JFileChooser fileChooser;
     private final String extension;
+    private final HashMap<FileFilter, String> filterExtensions = new HashMap<>();
+    private final WireFormat wireFormat = new WireFormat();
+    private final RleFormat rleFormat = new RleFormat();
+    private final MCellFormat mCellFormat = new MCellFormat();
+    static final String rleExtension = ".rle", mCellExtension = ".mcl";
+    private static final int defaultTimeBetweenSteps = 500;
+    //the first two bytes of a file written by ObjectOutputStream
+    private static final short serializationMagic = (short) 0xACED;
+    private int loadedTimeBetweenSteps = defaultTimeBetweenSteps;
 
     /**
      * constructor of SavedSims
@@ -15,8 +31,14 @@ public class SavedSims {
      */
     public SavedSims(String extension) {
         this.extension = extension;
-        fileChooser.setAcceptAllFileFilterUsed(false);
-        fileChooser.addChoosableFileFilter(new FileFilter() {
+    }
+
+    /**
+     * adds a filter for the given extension to the fileChooser
+     * @param extension the file extension to filter for (must start with a dot)
+     */
+    private void addFileFilter(String extension) {
+        FileFilter filter = new FileFilter() {
             @Override
             public boolean accept(File f) {
                 if (f.isDirectory()) {
@@ -31,24 +53,142 @@ public class SavedSims {
             public String getDescription() {
                 return String.format("%s files (*%s)", extension.toUpperCase().substring(1), extension);
             }
-        });
+        };
+        filterExtensions.put(filter, extension);
+        fileChooser.addChoosableFileFilter(filter);
     }
+
     /**
      * getter of fileChooser
      * @return fileChooser
      */
     public JFileChooser getFileChooser() {
+        if (fileChooser == null) {
+            fileChooser = new JFileChooser();
+            fileChooser.setAcceptAllFileFilterUsed(false);
+            addFileFilter(extension);
+            addFileFilter(rleExtension);
+            addFileFilter(mCellExtension);
+            fileChooser.setFileFilter(fileChooser.getChoosableFileFilters()[0]);
+        }
         return fileChooser;
     }
 
     /**
-     * loads from the given file
+     * loads from the given file, both the binary format and the legacy serialized CellGrid are supported
      * @param file the file to load from
-     * @return a CellGrid with the deserialized content of the file
+     * @return a CellGrid with the content of the file
      * @throws IOException
      * @throws ClassNotFoundException
      */
     public CellGrid loadFromFile(File file) throws IOException, ClassNotFoundException {
+        return loadFromFile(file, true);
+    }
+
+    /**
+     * loads from the given file, both the binary format and the legacy serialized CellGrid are supported
+     * @param file the file to load from
+     * @param withView whether the returned grid should have Cell buttons
+     * @return a CellGrid with the content of the file
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public CellGrid loadFromFile(File file, boolean withView) throws IOException, ClassNotFoundException {
+        if (isPatternFile(file))
+            return new CellGrid(loadPattern(file), defaultTimeBetweenSteps, withView);
+        if (isLegacyFile(file)) {
+            CellGrid legacy = loadLegacyFile(file);
+            return withView ? legacy : new CellGrid(legacy.getModel(), legacy.getTimeBetweenSteps(), false);
+        }
+        SimulationModel model;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            model = wireFormat.read(channel);
+        }
+        return new CellGrid(model, wireFormat.getTimeBetweenSteps(), withView);
+    }
+
+    /**
+     * loads only the model from the given file, without creating any Swing components
+     * for files in the binary format
+     * @param file the file to load from
+     * @return the model of the simulation
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public SimulationModel loadModel(File file) throws IOException, ClassNotFoundException {
+        if (isPatternFile(file)) {
+            loadedTimeBetweenSteps = defaultTimeBetweenSteps;
+            return loadPattern(file);
+        }
+        if (isLegacyFile(file)) {
+            CellGrid legacy = loadLegacyFile(file);
+            loadedTimeBetweenSteps = legacy.getTimeBetweenSteps();
+            return legacy.getModel();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            SimulationModel model = wireFormat.read(channel);
+            loadedTimeBetweenSteps = wireFormat.getTimeBetweenSteps();
+            return model;
+        }
+    }
+
+    /**
+     * getter for loadedTimeBetweenSteps
+     * @return the time between two steps stored in the file last loaded by loadModel
+     */
+    public int getLoadedTimeBetweenSteps() {
+        return loadedTimeBetweenSteps;
+    }
+
+    /**
+     * tells whether the file is a Golly RLE or an MCell pattern, based on its extension
+     * @param file the file to check
+     * @return true if the file is a pattern file
+     */
+    private boolean isPatternFile(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(rleExtension) || name.endsWith(mCellExtension);
+    }
+
+    /**
+     * reads a Golly RLE or an MCell pattern line by line
+     * @param file the file to read
+     * @return the model of the pattern
+     * @throws IOException
+     */
+    private SimulationModel loadPattern(File file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.ISO_8859_1)) {
+            if (file.getName().toLowerCase().endsWith(rleExtension))
+                return rleFormat.read(reader);
+            return mCellFormat.read(reader);
+        }
+    }
+
+    /**
+     * tells whether the file contains a serialized CellGrid
+     * @param file the file to check
+     * @return true if the file starts with the magic of Java serialization
+     * @throws IOException
+     */
+    private boolean isLegacyFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(2);
+            while (start.hasRemaining()) {
+                if (channel.read(start) < 0)
+                    return false;
+            }
+            return start.getShort(0) == serializationMagic;
+        }
+    }
+
+    /**
+     * loads a CellGrid serialized with ObjectOutputStream
+     * @param file the file to load from
+     * @return a CellGrid with the deserialized content of the file
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private CellGrid loadLegacyFile(File file) throws IOException, ClassNotFoundException {
         FileInputStream fis = new FileInputStream(file);
         ObjectInputStream ois = new ObjectInputStream(fis);
         CellGrid cellGrid = (CellGrid) ois.readObject();
@@ -60,21 +200,44 @@ public class SavedSims {
     }
 
     /**
-     * saves the given cellgrid to the given file
+     * saves the given cellgrid to the given file. Files ending in .rle or .mcl are written
+     * as Golly RLE or MCell patterns, everything else in the binary format
      * @param cellGrid the cellgrid to save
      * @param file the file to save to
      * @throws IOException
      */
     public void saveToFile(CellGrid cellGrid, File file) throws IOException {
+        saveModel(cellGrid.getModel(), cellGrid.getTimeBetweenSteps(), file);
+    }
 
-        //if the selected file doesn't end properly, attach the extension
-        if (!file.getName().endsWith(extension))
-            file = new File(file.getAbsolutePath() + extension);
+    /**
+     * saves the given model to the given file. Files ending in .rle or .mcl are written
+     * as Golly RLE or MCell patterns, everything else in the binary format
+     * @param model the model to save
+     * @param timeBetweenSteps the time elapsed between each two steps in the simulation
+     * @param file the file to save to
+     * @throws IOException
+     */
+    public void saveModel(SimulationModel model, int timeBetweenSteps, File file) throws IOException {
+
+        //if the selected file doesn't end properly, attach the extension of the selected filter
+        String selectedExtension = fileChooser == null ? extension : filterExtensions.getOrDefault(fileChooser.getFileFilter(), extension);
+        if (!isPatternFile(file) && !file.getName().endsWith(extension))
+            file = new File(file.getAbsolutePath() + selectedExtension);
+
+        if (isPatternFile(file)) {
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.ISO_8859_1)) {
+                if (file.getName().toLowerCase().endsWith(rleExtension))
+                    rleFormat.write(model, writer);
+                else
+                    mCellFormat.write(model, writer);
+            }
+            return;
+        }
 
-        FileOutputStream fos = new FileOutputStream(file);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(cellGrid);
-        oos.close();
-        fos.close();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            wireFormat.write(model, timeBetweenSteps, channel);
+        }
     }
 }
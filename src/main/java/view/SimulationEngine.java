@@ -0,0 +1,44 @@
+package view;
+
+/**
+ * Computes the generations of a SimulationModel.
+ */
+public interface SimulationEngine {
+
+    /**
+     * advances the model by the given number of generations. The engine has to write the
+     * resulting state into the model, record the cells that changed compared to the state
+     * before the call and increment the model's generation counter.
+     * @param model the model to advance
+     * @param generations the number of generations to compute
+     */
+    void advance(SimulationModel model, long generations);
+
+    /**
+     * tells whether the engine can compute the given rule
+     * @param rule the rule of the model
+     * @return true if the engine supports the rule, every engine supports Wireworld
+     */
+    default boolean supports(Rule rule) {
+        return true;
+    }
+
+    /**
+     * creates an engine by its name, used by the command line tools
+     * @param name naive, bitsliced, frontier, parallel, hashlife, netlist or indexed
+     * @return a new engine
+     * @throws IllegalArgumentException if there is no engine with the given name
+     */
+    static SimulationEngine byName(String name) {
+        return switch (name.toLowerCase()) {
+            case "naive" -> new NaiveEngine();
+            case "bitsliced" -> new BitslicedEngine();
+            case "frontier" -> new FrontierEngine();
+            case "parallel" -> new ParallelEngine();
+            case "hashlife" -> new HashlifeEngine();
+            case "netlist" -> new NetlistEngine();
+            case "indexed" -> new IndexedEngine();
+            default -> throw new IllegalArgumentException("Unknown engine: " + name);
+        };
+    }
+}
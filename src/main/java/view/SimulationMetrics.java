@@ -0,0 +1,315 @@
+package view;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * Instrumentation of a running simulation: step latency of the engine, time spent on the views,
+ * activity of the circuit, throughput and missed ticks. The counters are written by the thread
+ * that steps the simulation and can be read from any thread, through JMX or a periodic log line.
+ * The heads and the tails are counted on the stepping thread as well: a plain step of an electron
+ * rule updates them from the changed cells, only an edit, a jump or another rule recounts the grid.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+    static final String objectName = "view:type=SimulationMetrics";
+    static final int bucketCount = 32;
+    private static final long rateWindowNanos = TimeUnit.SECONDS.toNanos(1);
+    private static final Logger logger = Logger.getLogger(SimulationMetrics.class.getName());
+
+    private volatile SimulationModel model;
+    private final AtomicLongArray histogram = new AtomicLongArray(bucketCount);
+    private volatile long stepCount, maxStepNanos, totalNotifyNanos, missedTicks;
+    private volatile int changedCells, headCount, tailCount;
+    private volatile double generationsPerSecond;
+    private long rateWindowStart, rateWindowGeneration;
+    //the model, modCount and generation the head and tail counts belong to
+    private SimulationModel countedModel;
+    private int countedModCount;
+    private long countedGeneration;
+    private ScheduledExecutorService logExecutor;
+    private ScheduledFuture<?> logging;
+
+    /**
+     * constructor of SimulationMetrics
+     * @param model the model whose steps are recorded
+     */
+    public SimulationMetrics(SimulationModel model) {
+        reset(model);
+    }
+
+    /**
+     * clears every counter and starts recording the steps of the given model
+     * @param model the model whose steps are recorded
+     */
+    public synchronized void reset(SimulationModel model) {
+        this.model = model;
+        for (int i = 0; i < bucketCount; i++) {
+            histogram.set(i, 0);
+        }
+        stepCount = 0;
+        maxStepNanos = 0;
+        totalNotifyNanos = 0;
+        missedTicks = 0;
+        changedCells = 0;
+        generationsPerSecond = 0;
+        rateWindowStart = System.nanoTime();
+        rateWindowGeneration = model.getGeneration();
+        if (model != countedModel)
+            recount(model);
+    }
+
+    @Override
+    public void reset() {
+        reset(model);
+    }
+
+    /**
+     * records a step of the simulation
+     * @param stepNanos the time the engine spent computing the step
+     * @param notifyNanos the time spent updating the views and notifying the listeners
+     */
+    void recordStep(long stepNanos, long notifyNanos) {
+        SimulationModel model = this.model;
+        histogram.incrementAndGet(bucketOf(stepNanos));
+        if (stepNanos > maxStepNanos)
+            maxStepNanos = stepNanos;
+        totalNotifyNanos += notifyNanos;
+        changedCells = model.getChangedCount();
+        countElectrons(model);
+        stepCount++;
+        long now = System.nanoTime();
+        if (now - rateWindowStart >= rateWindowNanos) {
+            generationsPerSecond = (model.getGeneration() - rateWindowGeneration) * 1e9 / (now - rateWindowStart);
+            rateWindowStart = now;
+            rateWindowGeneration = model.getGeneration();
+        }
+    }
+
+    /**
+     * updates the head and tail counts after a step. In a generation of an electron rule every changed
+     * wire became a head, every changed head a tail and every changed tail a wire, so the cells
+     * the step changed are enough; after anything else the whole grid is counted.
+     * @param model the stepped model
+     */
+    private void countElectrons(SimulationModel model) {
+        if (model != countedModel || model.getModCount() != countedModCount
+                || model.getGeneration() != countedGeneration + 1 || !model.getRule().isElectronRule()) {
+            recount(model);
+            return;
+        }
+        int[] changed = model.getChangedCells();
+        int heads = headCount, tails = tailCount;
+        for (int k = 0, n = model.getChangedCount(); k < n; k++) {
+            switch (model.get(changed[k])) {
+                case SimulationModel.HEAD -> heads++;
+                case SimulationModel.TAIL -> {
+                    heads--;
+                    tails++;
+                }
+                case SimulationModel.WIRE -> tails--;
+                default -> {
+                }
+            }
+        }
+        headCount = heads;
+        tailCount = tails;
+        countedGeneration = model.getGeneration();
+    }
+
+    /**
+     * counts the heads and the tails of the whole grid
+     * @param model the model to count
+     */
+    private void recount(SimulationModel model) {
+        int heads = 0, tails = 0;
+        for (byte b : model.current()) {
+            if (b == SimulationModel.HEAD)
+                heads++;
+            else if (b == SimulationModel.TAIL)
+                tails++;
+        }
+        headCount = heads;
+        tailCount = tails;
+        countedModel = model;
+        countedModCount = model.getModCount();
+        countedGeneration = model.getGeneration();
+    }
+
+    /**
+     * records scheduled steps that couldn't start on time
+     * @param ticks the number of missed ticks
+     */
+    void recordMissedTicks(long ticks) {
+        missedTicks += ticks;
+    }
+
+    @Override
+    public long getGeneration() {
+        return model.getGeneration();
+    }
+
+    @Override
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    @Override
+    public double getGenerationsPerSecond() {
+        return generationsPerSecond;
+    }
+
+    @Override
+    public int getChangedCells() {
+        return changedCells;
+    }
+
+    @Override
+    public int getHeadCount() {
+        return headCount;
+    }
+
+    @Override
+    public int getTailCount() {
+        return tailCount;
+    }
+
+    @Override
+    public long getStepLatencyP50() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getStepLatencyP99() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long getStepLatencyMax() {
+        return TimeUnit.NANOSECONDS.toMicros(maxStepNanos);
+    }
+
+    @Override
+    public long[] getStepLatencyHistogram() {
+        long[] counts = new long[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public long getNotifyLatencyMean() {
+        long steps = stepCount;
+        return steps == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNotifyNanos / steps);
+    }
+
+    @Override
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(collector.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    /**
+     * calculates a percentile of the step latency from the histogram
+     * @param fraction the fraction of the steps that are at most as long as the result
+     * @return the upper bound of the bucket the percentile falls into, in microseconds
+     */
+    long percentile(double fraction) {
+        long[] counts = getStepLatencyHistogram();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return 1L << i;
+        }
+        return 1L << (bucketCount - 1);
+    }
+
+    /**
+     * finds the histogram bucket of a step latency
+     * @param nanos the latency
+     * @return the index of the bucket
+     */
+    static int bucketOf(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), bucketCount - 1);
+    }
+
+    /**
+     * formats the current values as a single line
+     * @return the line
+     */
+    public String summary() {
+        return String.format(Locale.ROOT,
+                "generation=%d gen/s=%.1f step p50=%dus p99=%dus max=%dus notify=%dus changed=%d heads=%d tails=%d missed=%d gc=%dms",
+                getGeneration(), getGenerationsPerSecond(), getStepLatencyP50(), getStepLatencyP99(), getStepLatencyMax(),
+                getNotifyLatencyMean(), getChangedCells(), getHeadCount(), getTailCount(), getMissedTicks(), getGcTimeMillis());
+    }
+
+    /**
+     * registers the metrics in the platform MBean server, replacing the previously registered ones
+     * @throws JMException if the registration fails
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(objectName);
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            //nothing was registered yet
+        }
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * logs the summary periodically on a daemon thread until stopLogging is called
+     * @param periodSeconds the time between two log lines
+     */
+    public synchronized void startLogging(long periodSeconds) {
+        stopLogging();
+        if (logExecutor == null) {
+            logExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "simulation-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        logging = logExecutor.scheduleAtFixedRate(() -> logger.info(summary()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * stops the periodic log line
+     */
+    public synchronized void stopLogging() {
+        if (logging != null)
+            logging.cancel(false);
+        logging = null;
+    }
+}
@@ -0,0 +1,92 @@
+package view;
+
+/**
+ * Management interface of SimulationMetrics, the attributes shown in JConsole or VisualVM.
+ * Times are in microseconds unless the name says otherwise.
+ */
+public interface SimulationMetricsMBean {
+
+    /**
+     * getter for the generation
+     * @return the generation of the simulation after the last step
+     */
+    long getGeneration();
+
+    /**
+     * getter for the number of steps
+     * @return the number of steps recorded since the last reset
+     */
+    long getStepCount();
+
+    /**
+     * getter for the generations per second
+     * @return the number of generations computed per second, measured over the last second
+     */
+    double getGenerationsPerSecond();
+
+    /**
+     * getter for the number of changed cells
+     * @return the number of cells the last step changed, i.e. the active part of the circuit
+     */
+    int getChangedCells();
+
+    /**
+     * getter for the number of heads
+     * @return the number of electron heads after the last step
+     */
+    int getHeadCount();
+
+    /**
+     * getter for the number of tails
+     * @return the number of electron tails after the last step
+     */
+    int getTailCount();
+
+    /**
+     * getter for the median step latency
+     * @return the upper bound of the median time the engine spent on a step
+     */
+    long getStepLatencyP50();
+
+    /**
+     * getter for the 99th percentile step latency
+     * @return the upper bound of the 99th percentile of the time the engine spent on a step
+     */
+    long getStepLatencyP99();
+
+    /**
+     * getter for the maximum step latency
+     * @return the longest time the engine spent on a step
+     */
+    long getStepLatencyMax();
+
+    /**
+     * getter for the step latency histogram
+     * @return the number of steps in each bucket, bucket i counts the steps shorter than 2^i
+     * microseconds that don't fit in bucket i-1
+     */
+    long[] getStepLatencyHistogram();
+
+    /**
+     * getter for the mean notification time
+     * @return the mean time spent updating the views and notifying the step listeners after a step
+     */
+    long getNotifyLatencyMean();
+
+    /**
+     * getter for the number of missed ticks
+     * @return the number of scheduled steps that couldn't start on time
+     */
+    long getMissedTicks();
+
+    /**
+     * getter for the garbage collection time
+     * @return the total time the garbage collectors of the JVM spent collecting, in milliseconds
+     */
+    long getGcTimeMillis();
+
+    /**
+     * clears every counter
+     */
+    void reset();
+}
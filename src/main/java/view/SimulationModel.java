@@ -0,0 +1,333 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * Swing-free state of a simulation. The cells of a width*height grid are stored row-major
+ * in a flat byte array (one CellState ordinal per cell), with a second buffer that
+ * receives the next generation before the two are swapped. Generations are computed by a
+ * pluggable SimulationEngine.
+ */
+public class SimulationModel {
+
+    //the ordinals of CellState
+    static final byte EMPTY = 0, HEAD = 1, TAIL = 2, WIRE = 3;
+    private static final CellState[] states = CellState.values();
+    static final int editLogSize = 1024;
+
+    private final int width, height;
+    private byte[] current, next;
+    private int[] changed = new int[64];
+    private int changedCount;
+    private long generation;
+    private int modCount;
+    //the cells of the last edits, the edit that made modCount m is at edits[m % editLogSize]
+    private final int[] edits = new int[editLogSize];
+    //the modCount after the last edit that changed every cell
+    private int clearedModCount;
+    //swapped by the GUI while the simulation thread steps: a new engine is published safely and
+    //loads the model on its first advance, which reads the field only once
+    private volatile SimulationEngine engine = new NaiveEngine();
+    private Rule rule = Rule.WIREWORLD;
+    private EditListener editListener;
+
+    /**
+     * constructor of SimulationModel, all cells start out empty
+     * @param width width of the grid
+     * @param height height of the grid
+     */
+    public SimulationModel(int width, int height) {
+        if (width < 0 || height < 0)
+            throw new IllegalArgumentException("Invalid grid size: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        current = new byte[width * height];
+        next = new byte[width * height];
+    }
+
+    /**
+     * getter for width
+     * @return width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * getter for height
+     * @return height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * getter for generation
+     * @return the number of generations computed since the model was created
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * getter for engine
+     * @return the engine that computes the generations
+     */
+    public SimulationEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * setter for engine, takes effect from the next generation even if the simulation is running
+     * @param engine the engine that computes the generations from now on
+     * @throws IllegalArgumentException if the engine doesn't support the rule of the model
+     */
+    public void setEngine(SimulationEngine engine) {
+        if (!engine.supports(rule))
+            throw new IllegalArgumentException(engine.getClass().getSimpleName() + " doesn't support the rule " + rule);
+        this.engine = engine;
+    }
+
+    /**
+     * getter for rule
+     * @return the rule the generations are computed by
+     */
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * setter for rule, it invalidates every cached generation like clearing the model does
+     * @param rule the rule the generations are computed by from now on
+     * @throws IllegalArgumentException if the engine of the model doesn't support the rule
+     */
+    public void setRule(Rule rule) {
+        if (!engine.supports(rule))
+            throw new IllegalArgumentException(engine.getClass().getSimpleName() + " doesn't support the rule " + rule);
+        this.rule = rule;
+        modCount++;
+        clearedModCount = modCount;
+    }
+
+    /**
+     * setter for editListener
+     * @param editListener the listener notified of every edit made outside of an engine, or null
+     */
+    public void setEditListener(EditListener editListener) {
+        this.editListener = editListener;
+    }
+
+    /**
+     * getter for modCount
+     * @return a counter that is incremented on every modification made outside of an engine,
+     * engines use it to find out whether their cached data is stale
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * tells whether the cells edited since the given modCount are still in the edit log
+     * @param since the modCount the edits are listed from
+     * @return false if there were too many edits since or every cell was cleared
+     */
+    boolean hasEditsSince(int since) {
+        return since - clearedModCount >= 0 && modCount - since >= 0 && modCount - since <= editLogSize;
+    }
+
+    /**
+     * returns the cell of an edit in the edit log, the state to use is the current one
+     * @param modCount the modCount before the edit
+     * @return the index of the edited cell
+     */
+    int getEditedCell(int modCount) {
+        return edits[modCount & (editLogSize - 1)];
+    }
+
+    /**
+     * returns the state of the cell at the given coordinates
+     * @param x x coordinate (0-based)
+     * @param y y coordinate (0-based)
+     * @return the state of the cell
+     */
+    public CellState getState(int x, int y) {
+        return states[current[index(x, y)]];
+    }
+
+    /**
+     * sets the state of the cell at the given coordinates
+     * @param x x coordinate (0-based)
+     * @param y y coordinate (0-based)
+     * @param state the new state of the cell
+     */
+    public void setState(int x, int y, CellState state) {
+        set(index(x, y), (byte) state.ordinal());
+    }
+
+    /**
+     * returns the raw state (CellState ordinal) of the cell at the given row-major index
+     * @param index index of the cell
+     * @return the state ordinal of the cell
+     */
+    public byte get(int index) {
+        return current[index];
+    }
+
+    /**
+     * sets the raw state (CellState ordinal) of the cell at the given row-major index
+     * @param index index of the cell
+     * @param state the state ordinal of the cell
+     */
+    public void set(int index, byte state) {
+        current[index] = state;
+        edits[modCount & (editLogSize - 1)] = index;
+        modCount++;
+        if (editListener != null)
+            editListener.edited(this, index, state);
+    }
+
+    /**
+     * calculates the row-major index of the given coordinates
+     * @param x x coordinate (0-based)
+     * @param y y coordinate (0-based)
+     * @return the index of the cell in the flat array
+     */
+    public int index(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") is outside of a " + width + "x" + height + " grid");
+        return y * width + x;
+    }
+
+    /**
+     * sets every cell to empty
+     */
+    public void clear() {
+        Arrays.fill(current, EMPTY);
+        changedCount = 0;
+        modCount++;
+        clearedModCount = modCount;
+        if (editListener != null)
+            editListener.cleared(this);
+    }
+
+    /**
+     * counts the cells that are in the given state
+     * @param state the state to count
+     * @return the number of cells in that state
+     */
+    public int count(CellState state) {
+        byte s = (byte) state.ordinal();
+        int count = 0;
+        for (byte b : current) {
+            if (b == s)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * calculates the next generation using the engine.
+     * The indices of the cells that changed are available through getChangedCells afterwards.
+     */
+    public void step() {
+        advance(1);
+    }
+
+    /**
+     * advances the simulation by the given number of generations using the engine.
+     * Afterwards getChangedCells lists the cells that differ from the state before the call.
+     * @param generations the number of generations to compute
+     */
+    public void advance(long generations) {
+        if (generations < 0)
+            throw new IllegalArgumentException("Cannot advance by " + generations + " generations");
+        engine.advance(this, generations);
+    }
+
+    /**
+     * returns the buffer holding the current generation, engines write into it directly
+     * @return the current generation
+     */
+    byte[] current() {
+        return current;
+    }
+
+    /**
+     * returns the buffer the next generation should be written into
+     * @return the back buffer
+     */
+    byte[] next() {
+        return next;
+    }
+
+    /**
+     * swaps the current and the back buffer, i.e. makes the next generation current
+     */
+    void swapBuffers() {
+        byte[] tmp = current;
+        current = next;
+        next = tmp;
+    }
+
+    /**
+     * increments the generation counter after an engine computed some generations
+     * @param generations the number of generations computed
+     */
+    void addGenerations(long generations) {
+        generation += generations;
+    }
+
+    /**
+     * empties the list of changed cells
+     */
+    void resetChanges() {
+        changedCount = 0;
+    }
+
+    /**
+     * appends the given index to the list of cells changed in the current generation
+     * @param index index of the changed cell
+     */
+    void recordChange(int index) {
+        if (changedCount == changed.length)
+            changed = Arrays.copyOf(changed, changedCount * 2);
+        changed[changedCount++] = index;
+    }
+
+    /**
+     * returns the indices of the cells that changed in the last generation;
+     * only the first getChangedCount elements are valid
+     * @return the changed cell indices
+     */
+    public int[] getChangedCells() {
+        return changed;
+    }
+
+    /**
+     * getter for changedCount
+     * @return the number of cells that changed in the last generation
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * gets notified of the edits of the model, the changes made by the engines aren't edits
+     */
+    public interface EditListener {
+
+        /**
+         * called after a cell was set
+         * @param model the edited model
+         * @param index index of the cell
+         * @param state the new state ordinal of the cell
+         */
+        void edited(SimulationModel model, int index, byte state);
+
+        /**
+         * called after every cell was set to empty
+         * @param model the edited model
+         */
+        void cleared(SimulationModel model);
+    }
+}
@@ -0,0 +1,306 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * Bounded history of the generations of a model, for stepping backwards. Every generation is
+ * stored as the list of cells it changed (the index and the xor of the old and new state, in
+ * circular primitive buffers), with a full keyframe of 2 bits per cell every keyframeInterval
+ * generations. Moving between retained generations costs the number of changes in between, or
+ * a keyframe and the changes after it, whichever is less. The oldest generations are dropped
+ * when either limit is reached, and an edit of the model clears the history.
+ */
+public class StepHistory {
+
+    static final int defaultMaxGenerations = 1024;
+    static final int defaultMaxChanges = 1 << 22;
+    static final int defaultKeyframeInterval = 256;
+    private static final int initialChanges = 1 << 10;
+
+    private final int maxGenerations, maxChanges, keyframeInterval;
+    private SimulationModel model;
+    private int modCount;
+    //the state of the model at the cursor, to compute the xors without a full copy per generation
+    private byte[] shadow;
+    private int[] indexes = new int[initialChanges];
+    private byte[] xors = new byte[initialChanges];
+    //the changes of generation g are at positions deltaStart[g % maxGenerations] until deltaEnd[...]
+    private final long[] deltaStart, deltaEnd;
+    private long releasedPosition, writePosition;
+    private long firstGeneration, lastGeneration, cursor;
+    private final byte[][] keyframes;
+    private final long[] keyframeGeneration;
+    //stamps used to report every restored cell only once, without clearing an array
+    private int[] restoredStamp;
+    private int restoreRound;
+
+    /**
+     * constructor of StepHistory with the default limits
+     */
+    public StepHistory() {
+        this(defaultMaxGenerations, defaultMaxChanges, defaultKeyframeInterval);
+    }
+
+    /**
+     * constructor of StepHistory
+     * @param maxGenerations the maximum number of generations to step back
+     * @param maxChanges the maximum number of cell changes to retain
+     * @param keyframeInterval the number of generations between two keyframes
+     */
+    public StepHistory(int maxGenerations, int maxChanges, int keyframeInterval) {
+        if (maxGenerations < 2 || maxChanges < 1 || keyframeInterval < 1)
+            throw new IllegalArgumentException("The history has to retain at least two generations and one change");
+        this.maxGenerations = maxGenerations;
+        this.maxChanges = maxChanges;
+        this.keyframeInterval = keyframeInterval;
+        deltaStart = new long[maxGenerations];
+        deltaEnd = new long[maxGenerations];
+        int keyframeCount = maxGenerations / keyframeInterval + 1;
+        keyframes = new byte[keyframeCount][];
+        keyframeGeneration = new long[keyframeCount];
+    }
+
+    /**
+     * getter for the oldest generation
+     * @return the oldest generation that can be restored
+     */
+    public long getFirstGeneration() {
+        return firstGeneration;
+    }
+
+    /**
+     * getter for the newest generation
+     * @return the newest generation that can be restored
+     */
+    public long getLastGeneration() {
+        return lastGeneration;
+    }
+
+    /**
+     * tells whether the given generation of the model is retained
+     * @param model the model
+     * @param generation the generation
+     * @return true if goTo can restore the generation
+     */
+    public boolean contains(SimulationModel model, long generation) {
+        return isValidFor(model) && generation >= firstGeneration && generation <= lastGeneration;
+    }
+
+    /**
+     * drops every generation and starts recording from the current state of the model
+     * @param model the model to record
+     */
+    public void reset(SimulationModel model) {
+        this.model = model;
+        modCount = model.getModCount();
+        byte[] cells = model.current();
+        //every edit resets the history, the arrays are only allocated when the size changes
+        if (shadow == null || shadow.length != cells.length) {
+            shadow = new byte[cells.length];
+            restoredStamp = new int[cells.length];
+            restoreRound = 0;
+        }
+        System.arraycopy(cells, 0, shadow, 0, cells.length);
+        releasedPosition = 0;
+        writePosition = 0;
+        firstGeneration = lastGeneration = cursor = model.getGeneration();
+        //the keyframes are kept for their arrays, but none of them is valid any more
+        Arrays.fill(keyframeGeneration, Long.MIN_VALUE);
+        storeKeyframe();
+    }
+
+    /**
+     * records the generation the model has just stepped into, from its changed cells;
+     * starts over if the model was edited or didn't advance by exactly one generation
+     * since the last recorded one
+     * @param model the model after the step
+     */
+    public void record(SimulationModel model) {
+        long generation = model.getGeneration();
+        int count = model.getChangedCount();
+        if (model != this.model || model.getModCount() != modCount || generation != cursor + 1 || count > maxChanges) {
+            reset(model);
+            return;
+        }
+        //stepping after going back overwrites the generations that were ahead
+        lastGeneration = cursor;
+        writePosition = deltaEnd(cursor);
+        while (lastGeneration - firstGeneration + 1 > maxGenerations - 1
+                || writePosition - releasedPosition + count > maxChanges) {
+            dropFirst();
+        }
+        ensureCapacity(writePosition - releasedPosition + count);
+        byte[] cells = model.current();
+        int[] changed = model.getChangedCells();
+        int slot = (int) (generation % maxGenerations);
+        deltaStart[slot] = writePosition;
+        for (int k = 0; k < count; k++) {
+            int i = changed[k];
+            byte xor = (byte) (shadow[i] ^ cells[i]);
+            if (xor == 0)
+                continue;
+            int position = (int) (writePosition++ % indexes.length);
+            indexes[position] = i;
+            xors[position] = xor;
+            shadow[i] = cells[i];
+        }
+        deltaEnd[slot] = writePosition;
+        lastGeneration = cursor = generation;
+        if (generation % keyframeInterval == 0)
+            storeKeyframe();
+    }
+
+    /**
+     * restores a retained generation of the model; the restored cells become its changed cells
+     * @param model the model to restore
+     * @param generation the generation to restore
+     * @return false if the generation isn't retained
+     */
+    public boolean goTo(SimulationModel model, long generation) {
+        if (!contains(model, generation))
+            return false;
+        model.resetChanges();
+        if (++restoreRound == 0) {
+            Arrays.fill(restoredStamp, 0);
+            restoreRound = 1;
+        }
+        long deltaCost = Math.abs(deltaEnd(generation) - deltaEnd(cursor));
+        int keyframe = nearestKeyframe(generation);
+        if (keyframe >= 0 && shadow.length / 4 + deltaEnd(generation) - deltaEnd(keyframeGeneration[keyframe]) < deltaCost) {
+            restoreKeyframe(keyframe);
+        }
+        while (cursor > generation) {
+            applyDelta(cursor);
+            cursor--;
+        }
+        while (cursor < generation) {
+            cursor++;
+            applyDelta(cursor);
+        }
+        model.addGenerations(generation - model.getGeneration());
+        modCount = model.getModCount();
+        return true;
+    }
+
+    /**
+     * tells whether the history belongs to the model in its current state
+     * @param model the model
+     * @return false if the history was recorded for another model or the model was edited since
+     */
+    private boolean isValidFor(SimulationModel model) {
+        return model == this.model && model.getModCount() == modCount && model.getGeneration() == cursor;
+    }
+
+    /**
+     * calculates the end position of the changes of a retained generation
+     * @param generation the generation
+     * @return the position after its last change, or the released position for the oldest generation
+     */
+    private long deltaEnd(long generation) {
+        return generation == firstGeneration ? releasedPosition : deltaEnd[(int) (generation % maxGenerations)];
+    }
+
+    /**
+     * applies the changes of a generation to the model and the shadow, the xors work in both directions
+     * @param generation the generation whose changes to apply
+     */
+    private void applyDelta(long generation) {
+        int slot = (int) (generation % maxGenerations);
+        for (long p = deltaStart[slot]; p < deltaEnd[slot]; p++) {
+            int position = (int) (p % indexes.length);
+            int i = indexes[position];
+            shadow[i] ^= xors[position];
+            restore(i, shadow[i]);
+        }
+    }
+
+    /**
+     * writes a restored cell into the model and reports it as changed, unless it already was
+     * @param i index of the cell
+     * @param state the restored state
+     */
+    private void restore(int i, byte state) {
+        model.set(i, state);
+        if (restoredStamp[i] != restoreRound) {
+            restoredStamp[i] = restoreRound;
+            model.recordChange(i);
+        }
+    }
+
+    /**
+     * drops the oldest retained generation
+     */
+    private void dropFirst() {
+        firstGeneration++;
+        releasedPosition = deltaEnd[(int) (firstGeneration % maxGenerations)];
+    }
+
+    /**
+     * grows the change buffers so that they can hold the given number of changes
+     * @param needed the number of changes to hold
+     */
+    private void ensureCapacity(long needed) {
+        if (needed <= indexes.length)
+            return;
+        int length = indexes.length;
+        while (length < needed) {
+            length = (int) Math.min((long) length * 2, maxChanges);
+        }
+        int[] newIndexes = new int[length];
+        byte[] newXors = new byte[length];
+        for (long p = releasedPosition; p < writePosition; p++) {
+            newIndexes[(int) (p % length)] = indexes[(int) (p % indexes.length)];
+            newXors[(int) (p % length)] = xors[(int) (p % indexes.length)];
+        }
+        indexes = newIndexes;
+        xors = newXors;
+    }
+
+    /**
+     * stores the shadow as the keyframe of the cursor, packed 2 bits per cell
+     */
+    private void storeKeyframe() {
+        int slot = (int) ((cursor / keyframeInterval) % keyframes.length);
+        byte[] packed = keyframes[slot];
+        if (packed == null || packed.length != (shadow.length + 3) / 4)
+            packed = keyframes[slot] = new byte[(shadow.length + 3) / 4];
+        else
+            Arrays.fill(packed, (byte) 0);
+        for (int i = 0; i < shadow.length; i++) {
+            packed[i >> 2] |= shadow[i] << ((i & 3) * 2);
+        }
+        keyframeGeneration[slot] = cursor;
+    }
+
+    /**
+     * finds the newest keyframe that isn't newer than the given generation
+     * @param generation the generation
+     * @return the slot of the keyframe, or -1 if there is none
+     */
+    private int nearestKeyframe(long generation) {
+        int best = -1;
+        for (int slot = 0; slot < keyframes.length; slot++) {
+            long keyGeneration = keyframeGeneration[slot];
+            if (keyframes[slot] != null && keyGeneration >= firstGeneration && keyGeneration <= generation
+                    && (best < 0 || keyGeneration > keyframeGeneration[best]))
+                best = slot;
+        }
+        return best;
+    }
+
+    /**
+     * restores the model and the shadow from a keyframe and moves the cursor to it
+     * @param slot the slot of the keyframe
+     */
+    private void restoreKeyframe(int slot) {
+        byte[] packed = keyframes[slot];
+        for (int i = 0; i < shadow.length; i++) {
+            byte state = (byte) ((packed[i >> 2] >>> ((i & 3) * 2)) & 3);
+            if (shadow[i] != state) {
+                shadow[i] = state;
+                restore(i, state);
+            }
+        }
+        cursor = keyframeGeneration[slot];
+    }
+}
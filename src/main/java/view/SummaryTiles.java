@@ -0,0 +1,136 @@
+package view;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Downsampled images of a grid for drawing it zoomed out. Level L has one pixel per 2^L x 2^L
+ * block of cells, showing the most visible state in the block: a head if there is one, else a
+ * tail, else a wire. Each level is computed from the 2x2 blocks of the level below it, so an
+ * edited cell only recomputes its own block on each level, and stops as soon as a block keeps
+ * its state.
+ */
+class SummaryTiles {
+
+    //the order of the states by visibility, indexed by the state
+    private static final int[] rank = new int[CellState.values().length];
+
+    static {
+        rank[CellState.EMPTY.ordinal()] = 0;
+        rank[CellState.WIRE.ordinal()] = 1;
+        rank[CellState.TAIL.ordinal()] = 2;
+        rank[CellState.HEAD.ordinal()] = 3;
+    }
+
+    private final byte[] cells;
+    private final int[] colors;
+    //index 0 is unused, level 0 are the cells themselves
+    private final byte[][] blocks;
+    private final int[] levelWidths, levelHeights;
+    private final BufferedImage[] images;
+    private final int[][] pixels;
+
+    /**
+     * constructor of SummaryTiles, computes every level from the cells
+     * @param cells the cells in row-major order, read when a cell is updated
+     * @param width width of the grid
+     * @param height height of the grid
+     * @param colors the colors of the states, indexed by the state
+     */
+    SummaryTiles(byte[] cells, int width, int height, int[] colors) {
+        this.cells = cells;
+        this.colors = colors;
+        int levels = 0;
+        while ((1 << levels) < Math.max(width, height)) {
+            levels++;
+        }
+        blocks = new byte[levels + 1][];
+        levelWidths = new int[levels + 1];
+        levelHeights = new int[levels + 1];
+        images = new BufferedImage[levels + 1];
+        pixels = new int[levels + 1][];
+        levelWidths[0] = width;
+        levelHeights[0] = height;
+        for (int level = 1; level <= levels; level++) {
+            levelWidths[level] = (levelWidths[level - 1] + 1) / 2;
+            levelHeights[level] = (levelHeights[level - 1] + 1) / 2;
+            blocks[level] = new byte[levelWidths[level] * levelHeights[level]];
+            images[level] = new BufferedImage(levelWidths[level], levelHeights[level], BufferedImage.TYPE_INT_RGB);
+            pixels[level] = ((DataBufferInt) images[level].getRaster().getDataBuffer()).getData();
+            for (int y = 0; y < levelHeights[level]; y++) {
+                for (int x = 0; x < levelWidths[level]; x++) {
+                    byte state = summarize(level, x, y);
+                    blocks[level][y * levelWidths[level] + x] = state;
+                    pixels[level][y * levelWidths[level] + x] = colors[state];
+                }
+            }
+        }
+    }
+
+    /**
+     * getter for the number of levels
+     * @return the highest level, its single block covers the whole grid
+     */
+    int getLevels() {
+        return blocks.length - 1;
+    }
+
+    /**
+     * returns the image of a level
+     * @param level the level, at least 1
+     * @return the image with a pixel per block
+     */
+    BufferedImage getImage(int level) {
+        return images[level];
+    }
+
+    /**
+     * returns the state shown for a block
+     * @param level the level, at least 1
+     * @param x x coordinate of the block
+     * @param y y coordinate of the block
+     * @return the most visible state in the block
+     */
+    CellState getState(int level, int x, int y) {
+        return CellState.values()[blocks[level][y * levelWidths[level] + x]];
+    }
+
+    /**
+     * updates the blocks containing a cell after the cell changed
+     * @param x x coordinate of the cell
+     * @param y y coordinate of the cell
+     */
+    void cellChanged(int x, int y) {
+        for (int level = 1; level < blocks.length; level++) {
+            x >>= 1;
+            y >>= 1;
+            int i = y * levelWidths[level] + x;
+            byte state = summarize(level, x, y);
+            if (blocks[level][i] == state)
+                return;
+            blocks[level][i] = state;
+            pixels[level][i] = colors[state];
+        }
+    }
+
+    /**
+     * computes the state of a block from the level below it
+     * @param level the level of the block
+     * @param x x coordinate of the block
+     * @param y y coordinate of the block
+     * @return the most visible state of the (at most) 4 blocks or cells below it
+     */
+    private byte summarize(int level, int x, int y) {
+        byte[] below = level == 1 ? cells : blocks[level - 1];
+        int belowWidth = levelWidths[level - 1], belowHeight = levelHeights[level - 1];
+        byte state = 0;
+        for (int by = 2 * y; by < Math.min(2 * y + 2, belowHeight); by++) {
+            for (int bx = 2 * x; bx < Math.min(2 * x + 2, belowWidth); bx++) {
+                byte s = below[by * belowWidth + bx];
+                if (rank[s] > rank[state])
+                    state = s;
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,287 @@
+package view;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Compact binary format of a saved simulation:
+ * <pre>
+ * magic              4 bytes  "WIRE"
+ * version            1 byte   1
+ * encoding           1 byte   0: packed, 1: run-length
+ * width, height      2 ints
+ * generation         1 long
+ * timeBetweenSteps   1 int
+ * cells
+ * </pre>
+ * Packed cells are 2 bits each (the CellState ordinal), four in a byte, row-major, the first
+ * cell in the lowest bits. Run-length cells are unsigned LEB128 varints of (length &lt;&lt; 2 | state).
+ * The writer picks whichever encoding is smaller. All numbers are big-endian.
+ */
+public class WireFormat {
+
+    static final byte[] magic = {'W', 'I', 'R', 'E'};
+    static final byte version = 1;
+    static final byte packedEncoding = 0, runLengthEncoding = 1;
+    static final int headerSize = 4 + 1 + 1 + 4 + 4 + 8 + 4;
+    private static final int bufferSize = 1 << 16;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+    private int timeBetweenSteps;
+
+    /**
+     * getter for timeBetweenSteps
+     * @return the time between steps read from the last loaded file
+     */
+    public int getTimeBetweenSteps() {
+        return timeBetweenSteps;
+    }
+
+    /**
+     * writes the model into the channel
+     * @param model the model to write
+     * @param timeBetweenSteps the time elapsed between each two steps in the simulation
+     * @param channel the channel to write to
+     * @throws IOException
+     */
+    public void write(SimulationModel model, int timeBetweenSteps, WritableByteChannel channel) throws IOException {
+        byte[] cells = model.current();
+        long packedSize = (cells.length + 3) / 4;
+        boolean runLength = runLengthSize(cells) < packedSize;
+        buffer.clear();
+        buffer.put(magic);
+        buffer.put(version);
+        buffer.put(runLength ? runLengthEncoding : packedEncoding);
+        buffer.putInt(model.getWidth());
+        buffer.putInt(model.getHeight());
+        buffer.putLong(model.getGeneration());
+        buffer.putInt(timeBetweenSteps);
+        if (runLength) {
+            int i = 0;
+            while (i < cells.length) {
+                byte state = cells[i];
+                int start = i;
+                while (i < cells.length && cells[i] == state) {
+                    i++;
+                }
+                writeVarint(channel, ((long) (i - start) << 2) | state);
+            }
+        } else {
+            for (int i = 0; i < cells.length; i += 4) {
+                int packed = 0;
+                for (int k = 0; k < 4 && i + k < cells.length; k++) {
+                    packed |= cells[i + k] << (k * 2);
+                }
+                ensureRemaining(channel, 1);
+                buffer.put((byte) packed);
+            }
+        }
+        flush(channel);
+    }
+
+    /**
+     * fills the cells of a row, used for writing grids that don't fit into a model
+     */
+    public interface RowSource {
+        /**
+         * @param y the row
+         * @param row receives the state ordinals of the cells of the row
+         */
+        void fillRow(int y, byte[] row);
+    }
+
+    /**
+     * writes a grid row by row in the packed encoding, so only a row is in the memory at a time
+     * and the file can be opened by {@link MappedGrid}, whatever the size of the grid
+     * @param width width of the grid
+     * @param height height of the grid
+     * @param rows fills the rows in order
+     * @param timeBetweenSteps the time elapsed between each two steps in the simulation
+     * @param channel the channel to write to
+     * @throws IOException
+     */
+    public void writePacked(int width, int height, RowSource rows, int timeBetweenSteps, WritableByteChannel channel) throws IOException {
+        if (width < 0 || height < 0)
+            throw new IllegalArgumentException("Invalid grid size: " + width + "x" + height);
+        buffer.clear();
+        buffer.put(magic);
+        buffer.put(version);
+        buffer.put(packedEncoding);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.putLong(0);
+        buffer.putInt(timeBetweenSteps);
+        byte[] row = new byte[width];
+        //the cells of a byte can come from two rows
+        int packed = 0, count = 0;
+        for (int y = 0; y < height; y++) {
+            rows.fillRow(y, row);
+            for (int x = 0; x < width; x++) {
+                packed |= row[x] << (count * 2);
+                if (++count == 4) {
+                    ensureRemaining(channel, 1);
+                    buffer.put((byte) packed);
+                    packed = 0;
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0) {
+            ensureRemaining(channel, 1);
+            buffer.put((byte) packed);
+        }
+        flush(channel);
+    }
+
+    /**
+     * reads a model from the channel, the magic has to be the first thing in the channel
+     * @param channel the channel to read from
+     * @return the model
+     * @throws IOException if the channel doesn't contain a valid simulation
+     */
+    public SimulationModel read(ReadableByteChannel channel) throws IOException {
+        buffer.clear();
+        buffer.flip();
+        fill(channel, headerSize);
+        for (byte b : magic) {
+            if (buffer.get() != b)
+                throw new IOException("Not a wire file");
+        }
+        byte fileVersion = buffer.get();
+        if (fileVersion != version)
+            throw new IOException("Unsupported wire file version: " + fileVersion);
+        byte encoding = buffer.get();
+        int width = buffer.getInt(), height = buffer.getInt();
+        long generation = buffer.getLong();
+        timeBetweenSteps = buffer.getInt();
+        if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE)
+            throw new IOException("Invalid grid size: " + width + "x" + height);
+        SimulationModel model = new SimulationModel(width, height);
+        byte[] cells = model.current();
+        if (encoding == runLengthEncoding) {
+            int i = 0;
+            while (i < cells.length) {
+                long run = readVarint(channel);
+                long length = run >>> 2;
+                if (length == 0 || length > cells.length - i)
+                    throw new IOException("Invalid run length: " + length);
+                byte state = (byte) (run & 3);
+                for (int end = i + (int) length; i < end; i++) {
+                    cells[i] = state;
+                }
+            }
+        } else if (encoding == packedEncoding) {
+            for (int i = 0; i < cells.length; i += 4) {
+                fill(channel, 1);
+                int packed = buffer.get();
+                for (int k = 0; k < 4 && i + k < cells.length; k++) {
+                    cells[i + k] = (byte) ((packed >>> (k * 2)) & 3);
+                }
+            }
+        } else {
+            throw new IOException("Unknown cell encoding: " + encoding);
+        }
+        model.addGenerations(generation);
+        return model;
+    }
+
+    /**
+     * calculates the size of the run-length encoded cells
+     * @param cells the cells to encode
+     * @return the size in bytes
+     */
+    private static long runLengthSize(byte[] cells) {
+        long size = 0;
+        int i = 0;
+        while (i < cells.length) {
+            byte state = cells[i];
+            int start = i;
+            while (i < cells.length && cells[i] == state) {
+                i++;
+            }
+            long run = ((long) (i - start) << 2) | state;
+            do {
+                size++;
+                run >>>= 7;
+            } while (run != 0);
+        }
+        return size;
+    }
+
+    /**
+     * writes an unsigned LEB128 varint into the buffer
+     * @param channel the channel to flush to when the buffer is full
+     * @param value the value to write
+     * @throws IOException
+     */
+    private void writeVarint(WritableByteChannel channel, long value) throws IOException {
+        ensureRemaining(channel, 10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * reads an unsigned LEB128 varint from the buffer
+     * @param channel the channel to refill the buffer from
+     * @return the value
+     * @throws IOException
+     */
+    private long readVarint(ReadableByteChannel channel) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            fill(channel, 1);
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * flushes the buffer if there is less space left in it than needed
+     * @param channel the channel to flush to
+     * @param needed the number of bytes needed
+     * @throws IOException
+     */
+    private void ensureRemaining(WritableByteChannel channel, int needed) throws IOException {
+        if (buffer.remaining() < needed)
+            flush(channel);
+    }
+
+    /**
+     * writes the content of the buffer into the channel and clears the buffer
+     * @param channel the channel to write to
+     * @throws IOException
+     */
+    private void flush(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * reads from the channel until the buffer has at least the given number of bytes to read
+     * @param channel the channel to read from
+     * @param needed the number of bytes needed
+     * @throws IOException
+     */
+    private void fill(ReadableByteChannel channel, int needed) throws IOException {
+        if (buffer.remaining() >= needed)
+            return;
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of wire file");
+        }
+        buffer.flip();
+    }
+}
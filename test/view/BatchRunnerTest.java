@@ -0,0 +1,148 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+
+    BatchRunner runner;
+    File input, output;
+
+    /**
+     * saves a long wire with a single electron into a temporary file
+     * @throws IOException
+     */
+    @Before
+    public void setUp() throws IOException {
+        runner = new BatchRunner();
+        SimulationModel model = new SimulationModel(100, 3);
+        for (int x = 0; x < 100; x++) {
+            model.setState(x, 1, CellState.WIRE);
+        }
+        model.setState(1, 1, CellState.HEAD);
+        model.setState(0, 1, CellState.TAIL);
+        input = File.createTempFile("batch", ".wire");
+        output = File.createTempFile("batchResult", ".wire");
+        input.deleteOnExit();
+        output.deleteOnExit();
+        new SavedSims(".wire").saveModel(model, 500, input);
+    }
+
+    /**
+     * tests the run method. After 50 generations the electron should be 50 cells further,
+     * and the saved result should contain the same state and the speed of the input.
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void run() throws IOException, ClassNotFoundException {
+        SimulationModel model = runner.run(input, 50, new FrontierEngine(), output);
+        assertEquals(CellState.HEAD, model.getState(51, 1));
+        SimulationModel saved = new SavedSims(".wire").loadModel(output);
+        assertEquals(CellState.HEAD, saved.getState(51, 1));
+        assertEquals(50, saved.getGeneration());
+        assertEquals("nem orizte meg a sebesseget", 500, new SavedSims(".wire").loadFromFile(output, false).getTimeBetweenSteps());
+    }
+
+    /**
+     * tests the printStatistics method, it should print the final counts
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void printStatistics() throws IOException, ClassNotFoundException {
+        SimulationModel model = runner.run(input, 10, SimulationEngine.byName("bitsliced"), null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        runner.printStatistics(model, 10, new PrintStream(out));
+        String statistics = out.toString();
+        assertTrue(statistics.contains("heads=1"));
+        assertTrue(statistics.contains("generations=10"));
+        assertTrue(statistics.contains("engine=BitslicedEngine"));
+    }
+
+    /**
+     * tests a run with another rule: on a simple wire the electron has a single head next to it,
+     * which doesn't start a new head when 2 heads are needed, and the netlist engine refuses the rule
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void runWithRule() throws IOException, ClassNotFoundException {
+        runner.setRule(Rule.byName("2"));
+        SimulationModel model = runner.run(input, 5, new FrontierEngine(), null);
+        assertEquals(0, model.count(CellState.HEAD));
+        assertEquals(Rule.byName("2"), model.getRule());
+        assertThrows(IllegalArgumentException.class, () -> runner.run(input, 5, new NetlistEngine(), null));
+    }
+
+    /**
+     * tests a run exporting every 10th generation of the wire into a GIF
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void runWithExport() throws IOException, ClassNotFoundException {
+        File gif = File.createTempFile("batch", ".gif");
+        gif.deleteOnExit();
+        FrameExporter exporter = new FrameExporter(2);
+        exporter.setStride(10);
+        exporter.setScale(2);
+        runner.setExport(exporter, gif);
+        SimulationModel model = runner.run(input, 50, new FrontierEngine(), null);
+        assertEquals(CellState.HEAD, model.getState(51, 1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        runner.printStatistics(model, 50, new PrintStream(out));
+        assertTrue(out.toString().contains("frames=6"));
+        assertEquals(200, ImageIO.read(gif).getWidth());
+    }
+
+    /**
+     * tests the run with cycle detection: the electron dies at the end of the wire, after that
+     * the grid is static (period 1) and the rest of the generations are skipped
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void runWithCycles() throws IOException, ClassNotFoundException {
+        runner.setDetectCycles(true);
+        SimulationModel model = runner.run(input, 1_000_000_000_000L, new FrontierEngine(), null);
+        assertEquals(1_000_000_000_000L, model.getGeneration());
+        assertEquals(0, model.count(CellState.HEAD));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        runner.printStatistics(model, 1_000_000_000_000L, new PrintStream(out));
+        assertTrue(out.toString().contains("period=1"));
+    }
+
+    /**
+     * tests the mapped run: the input is advanced in place and the statistics are printed
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void runMapped() throws IOException, ClassNotFoundException {
+        try (MappedGrid grid = MappedGrid.create(input.toPath(), 100, 3)) {
+            for (int x = 0; x < 100; x++) {
+                grid.setState(x, 1, CellState.WIRE);
+            }
+            grid.setState(1, 1, CellState.HEAD);
+            grid.setState(0, 1, CellState.TAIL);
+        }
+        try (MappedGrid grid = runner.runMapped(input, 50)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            runner.printStatistics(grid, 50, new PrintStream(out));
+            assertTrue(out.toString().contains("heads=1"));
+            assertTrue(out.toString().contains("finalGeneration=50"));
+        }
+        SimulationModel saved = new SavedSims(".wire").loadModel(input);
+        assertEquals(CellState.HEAD, saved.getState(51, 1));
+        assertEquals(50, saved.getGeneration());
+    }
+}
@@ -0,0 +1,114 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BatchSimulationTest {
+
+    SimulationModel base;
+    final int width = 40, height = 30;
+    final Random random = new Random(7);
+
+    /**
+     * sets up a model with random wires and some electrons
+     */
+    @Before
+    public void setUp() {
+        base = new SimulationModel(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = random.nextInt(10);
+                base.setState(x, y, r < 4 ? CellState.EMPTY : r == 4 ? CellState.HEAD : r == 5 ? CellState.TAIL : CellState.WIRE);
+            }
+        }
+    }
+
+    /**
+     * tests that every run reports the same probes as the variation simulated alone, including
+     * variations that draw or erase wire
+     */
+    @Test
+    public void variations() throws Exception {
+        BatchSimulation batch = new BatchSimulation(base, 3);
+        int[][] probes = new int[10][];
+        for (int p = 0; p < probes.length; p++) {
+            probes[p] = new int[]{random.nextInt(width), random.nextInt(height)};
+            assertEquals(p, batch.addProbe(probes[p][0], probes[p][1]));
+        }
+        CellState[] states = CellState.values();
+        List<BatchSimulation.Variation> variations = new ArrayList<>();
+        List<int[]> edits = new ArrayList<>();
+        for (int v = 0; v < 12; v++) {
+            BatchSimulation.Variation variation = new BatchSimulation.Variation(width, height);
+            int[] edit = new int[v * 3];
+            for (int e = 0; e < edit.length; e += 3) {
+                edit[e] = random.nextInt(width);
+                edit[e + 1] = random.nextInt(height);
+                edit[e + 2] = v % 2 == 0 && base.getState(edit[e], edit[e + 1]) == CellState.EMPTY ? 0 : 1 + random.nextInt(states.length - 1);
+                variation.set(edit[e], edit[e + 1], states[edit[e + 2]]);
+            }
+            variations.add(variation);
+            edits.add(edit);
+        }
+        List<BatchSimulation.Result> results = batch.run(variations, 25);
+        assertEquals(variations.size(), results.size());
+        for (int v = 0; v < variations.size(); v++) {
+            SimulationModel model = new SimulationModel(width, height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    model.setState(x, y, base.getState(x, y));
+                }
+            }
+            int[] edit = edits.get(v);
+            for (int e = 0; e < edit.length; e += 3) {
+                model.setState(edit[e], edit[e + 1], states[edit[e + 2]]);
+            }
+            int[] headCounts = new int[probes.length];
+            long[] firstHeads = new long[probes.length];
+            for (int p = 0; p < probes.length; p++) {
+                firstHeads[p] = -1;
+            }
+            for (int g = 1; g <= 25; g++) {
+                model.step();
+                for (int p = 0; p < probes.length; p++) {
+                    if (model.getState(probes[p][0], probes[p][1]) == CellState.HEAD && headCounts[p]++ == 0)
+                        firstHeads[p] = g;
+                }
+            }
+            BatchSimulation.Result result = results.get(v);
+            for (int p = 0; p < probes.length; p++) {
+                String message = String.format("rossz a(z) %s. futas %s. szondaja", v, p);
+                assertEquals(message, model.getState(probes[p][0], probes[p][1]), result.getFinalState(p));
+                assertEquals(message, headCounts[p], result.getHeadCount(p));
+                assertEquals(message, firstHeads[p], result.getFirstHead(p));
+            }
+        }
+    }
+
+    /**
+     * tests that the base pattern is copied, so editing it doesn't change the runs
+     */
+    @Test
+    public void baseCopied() throws Exception {
+        SimulationModel model = new SimulationModel(5, 1);
+        model.setState(0, 0, CellState.HEAD);
+        for (int x = 1; x < 5; x++) {
+            model.setState(x, 0, CellState.WIRE);
+        }
+        BatchSimulation batch = new BatchSimulation(model, 2);
+        batch.addProbe(4, 0);
+        model.clear();
+        List<BatchSimulation.Result> results = batch.run(List.of(
+                new BatchSimulation.Variation(5, 1),
+                new BatchSimulation.Variation(5, 1).set(0, 0, CellState.WIRE)), 6);
+        assertEquals(4, results.get(0).getFirstHead(0));
+        assertEquals(CellState.WIRE, results.get(0).getFinalState(0));
+        assertEquals(0, results.get(1).getHeadCount(0));
+    }
+}
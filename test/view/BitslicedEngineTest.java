@@ -0,0 +1,75 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BitslicedEngineTest {
+
+    SimulationModel expected, actual;
+    final int width = 150, height = 37;
+
+    /**
+     * sets up two identical models with random cells, the width spans several words
+     * and isn't a multiple of 64 on purpose
+     */
+    @Before
+    public void setUp() {
+        expected = new SimulationModel(width, height);
+        actual = new SimulationModel(width, height);
+        Random random = new Random(42);
+        CellState[] states = CellState.values();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                CellState state = random.nextInt(3) == 0 ? CellState.EMPTY : states[random.nextInt(states.length)];
+                expected.setState(x, y, state);
+                actual.setState(x, y, state);
+            }
+        }
+        actual.setEngine(new BitslicedEngine());
+    }
+
+    /**
+     * tests that the bitsliced engine computes the same generations as the naive one,
+     * both stepping one by one and advancing many generations at once
+     */
+    @Test
+    public void advance() {
+        for (int i = 0; i < 20; i++) {
+            expected.step();
+            actual.step();
+            assertEquals(expected.getChangedCount(), actual.getChangedCount());
+            assertSameCells();
+        }
+        expected.advance(33);
+        actual.advance(33);
+        assertSameCells();
+        assertEquals(53, actual.getGeneration());
+    }
+
+    /**
+     * tests that edits made between two steps are picked up by the engine
+     */
+    @Test
+    public void editBetweenSteps() {
+        actual.step();
+        expected.step();
+        actual.setState(5, 5, CellState.HEAD);
+        expected.setState(5, 5, CellState.HEAD);
+        actual.step();
+        expected.step();
+        assertSameCells();
+    }
+
+    private void assertSameCells() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, y),
+                        expected.getState(x, y), actual.getState(x, y));
+            }
+        }
+    }
+}
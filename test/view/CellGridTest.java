@@ -2,6 +2,9 @@ package view;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
 
 public class CellGridTest {
@@ -70,4 +73,121 @@ public class CellGridTest {
         cellGrid.fillEvaluableCells();
         assertEquals("nem megfelelo az evaluableCells merete", 4, cellGrid.evaluableCells.size());
     }
-}
\ No newline at end of file
+
+    /**
+     * tests the turbo mode of runSimulation. With 0 ms between the steps the simulation
+     * should compute far more than one generation per tick in 200 ms, and be stopped as soon as
+     * stopSimulation returns.
+     * @throws InterruptedException
+     * @throws WrongCellTypeException
+     */
+    @Test
+    public void runSimulationTurbo() throws InterruptedException, WrongCellTypeException {
+        cellGrid.setTimeBetweenSteps(0);
+        cellGrid.runSimulation();
+        Thread.sleep(200);
+        cellGrid.stopSimulation();
+        assertFalse("meg fut a szimulacio", cellGrid.isRunning());
+        long generation = cellGrid.getModel().getGeneration();
+        assertTrue("tul keves generacio: " + generation, generation > 1000);
+        cellGrid.nextStep();
+        assertEquals(generation + 1, cellGrid.getModel().getGeneration());
+    }
+
+    /**
+     * tests editing a running simulation from several threads. The edits are queued and made
+     * between the generations, so none of them is lost and the wires drawn far from the
+     * electron stay wires.
+     * @throws InterruptedException
+     */
+    @Test
+    public void editWhileRunning() throws Exception {
+        cellGrid.setTimeBetweenSteps(0);
+        cellGrid.runSimulation();
+        Thread[] editors = new Thread[3];
+        for (int t = 0; t < editors.length; t++) {
+            int row = 6 + 2 * t;
+            editors[t] = new Thread(() -> {
+                for (int k = 0; k < 200; k++) {
+                    cellGrid.editCell(k % width, row, k % 2 == 0 ? CellState.WIRE : CellState.EMPTY);
+                }
+                for (int x = 0; x < width; x++) {
+                    cellGrid.editCell(x, row, CellState.WIRE);
+                }
+            });
+            editors[t].start();
+        }
+        for (Thread editor : editors) {
+            editor.join();
+        }
+        cellGrid.stopSimulation();
+        cellGrid.nextStep();
+        for (int t = 0; t < editors.length; t++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, 6 + 2 * t),
+                        CellState.WIRE, cellGrid.cells[x][6 + 2 * t].getCellstate());
+            }
+        }
+        cellGrid.fillEvaluableCells();
+        assertEquals("nem megfelelo az evaluableCells merete", 4 + editors.length * width, cellGrid.evaluableCells.size());
+    }
+
+    /**
+     * tests clearing a running simulation. The step after the queued clearing should be reported
+     * as a jump, because its changed cells don't list the cleared ones, and every cell should be empty.
+     * @throws InterruptedException
+     */
+    @Test
+    public void clearWhileRunning() throws InterruptedException {
+        CountDownLatch jumped = new CountDownLatch(1);
+        cellGrid.addStepListener(new CellGrid.StepListener() {
+            @Override
+            public void stepped(SimulationModel model) {
+            }
+
+            @Override
+            public void jumped(SimulationModel model) {
+                jumped.countDown();
+            }
+        });
+        cellGrid.setTimeBetweenSteps(0);
+        cellGrid.runSimulation();
+        cellGrid.clearAllCells();
+        assertTrue("nem ugrott a szimulacio", jumped.await(5, TimeUnit.SECONDS));
+        cellGrid.stopSimulation();
+        assertEquals("nem ures a racs", width * height, cellGrid.getModel().count(CellState.EMPTY));
+    }
+
+    /**
+     * tests that an edit outside of the grid is rejected on the calling thread while the
+     * simulation is running, instead of being queued
+     * @throws InterruptedException
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void editOutsideWhileRunning() throws InterruptedException {
+        cellGrid.runSimulation();
+        try {
+            cellGrid.editCell(width, 0, CellState.WIRE);
+        } finally {
+            cellGrid.stopSimulation();
+        }
+    }
+
+    /**
+     * tests that a single step asked for while the simulation is running is ignored, only the
+     * simulation thread steps the model
+     * @throws InterruptedException
+     * @throws WrongCellTypeException
+     */
+    @Test
+    public void nextStepWhileRunning() throws InterruptedException, WrongCellTypeException {
+        CountDownLatch stepped = new CountDownLatch(1);
+        cellGrid.addStepListener(model -> stepped.countDown());
+        cellGrid.setTimeBetweenSteps(1000);
+        cellGrid.runSimulation();
+        assertTrue("nem lepett a szimulacio", stepped.await(5, TimeUnit.SECONDS));
+        cellGrid.nextStep();
+        assertEquals("rossz a generacio", 1, cellGrid.getModel().getGeneration());
+        cellGrid.stopSimulation();
+    }
+}
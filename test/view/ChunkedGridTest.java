@@ -0,0 +1,60 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChunkedGridTest {
+
+    SimulationModel expected;
+    ChunkedGrid grid;
+    final int width = 150, height = 90, offsetX = -100, offsetY = -70;
+
+    /**
+     * sets up a model with random cells and a chunked grid with the same cells,
+     * placed so that the model spans several chunks on both sides of the origin
+     */
+    @Before
+    public void setUp() {
+        expected = new SimulationModel(width, height);
+        Random random = new Random(42);
+        CellState[] states = CellState.values();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                CellState state = random.nextInt(3) == 0 ? CellState.EMPTY : states[random.nextInt(states.length)];
+                expected.setState(x, y, state);
+            }
+        }
+        grid = new ChunkedGrid();
+        grid.load(expected, offsetX, offsetY);
+    }
+
+    /**
+     * tests that chunks are allocated on the first write and freed once they are empty again
+     */
+    @Test
+    public void setState() {
+        ChunkedGrid empty = new ChunkedGrid();
+        empty.setState(1_000_000, -1_000_000, CellState.WIRE);
+        empty.setState(1_000_001, -1_000_000, CellState.HEAD);
+        assertEquals(1, empty.getChunkCount());
+        assertArrayEquals(new int[]{1_000_000, -1_000_000, 1_000_001, -1_000_000}, empty.getBounds());
+        empty.setState(1_000_000, -1_000_000, CellState.EMPTY);
+        empty.setState(1_000_001, -1_000_000, CellState.EMPTY);
+        assertEquals(0, empty.getChunkCount());
+    }
+
+    /**
+     * tests the toModel method, copying the grid back should give the original model
+     */
+    @Test
+    public void toModel() {
+        SimulationModel copy = grid.toModel(offsetX, offsetY, width, height);
+        for (int i = 0; i < width * height; i++) {
+            assertEquals(expected.get(i), copy.get(i));
+        }
+    }
+}
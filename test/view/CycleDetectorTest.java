@@ -0,0 +1,94 @@
+package view;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CycleDetectorTest {
+
+    SimulationModel model;
+    CycleDetector detector;
+
+    /**
+     * sets up the test class - a 6-cell clock loop with one electron (period 6) and a
+     * wire leading away from it, so it takes a few generations to become periodic
+     */
+    @Before
+    public void setUp() {
+        model = new SimulationModel(20, 5);
+        int[][] loop = {{2, 1}, {3, 1}, {4, 2}, {3, 3}, {2, 3}, {1, 2}};
+        for (int[] cell : loop) {
+            model.setState(cell[0], cell[1], CellState.WIRE);
+        }
+        model.setState(3, 1, CellState.HEAD);
+        model.setState(2, 1, CellState.TAIL);
+        //a lone electron running down a wire that ends
+        for (int x = 8; x < 20; x++) {
+            model.setState(x, 2, CellState.WIRE);
+        }
+        model.setState(9, 2, CellState.HEAD);
+        model.setState(8, 2, CellState.TAIL);
+        detector = new CycleDetector();
+        detector.reset(model);
+    }
+
+    /**
+     * tests that the hash is updated incrementally to the same value as a full recalculation
+     */
+    @Test
+    public void incrementalHash() {
+        for (int g = 0; g < 10; g++) {
+            model.step();
+            detector.record(model);
+            CycleDetector fresh = new CycleDetector();
+            fresh.reset(model);
+            assertEquals(String.format("rossz a hash a(z) %s. generacioban", g + 1), fresh.getHash(), detector.getHash());
+        }
+    }
+
+    /**
+     * tests that the period is found after the transient electron dies out
+     */
+    @Test
+    public void period() {
+        for (int g = 0; g < 100 && detector.getPeriod() == 0; g++) {
+            model.step();
+            detector.record(model);
+        }
+        assertEquals("rossz a periodus", 6, detector.getPeriod());
+        assertTrue("rossz a ciklus kezdete", detector.getCycleStart() >= 10);
+    }
+
+    /**
+     * tests that jumping ahead gives the same state as simulating
+     */
+    @Test
+    public void advanceTo() {
+        SimulationModel simulated = new SimulationModel(20, 5);
+        for (int i = 0; i < 100; i++) {
+            simulated.set(i, model.get(i));
+        }
+        simulated.advance(1003);
+        detector.advanceTo(model, 1_000_000_000_003L);
+        assertEquals("rossz a generacio", 1_000_000_000_003L, model.getGeneration());
+        assertEquals("rossz a periodus", 6, detector.getPeriod());
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, y), simulated.getState(x, y), model.getState(x, y));
+            }
+        }
+    }
+
+    /**
+     * tests that an edit makes the detector start over
+     */
+    @Test
+    public void edit() {
+        detector.advanceTo(model, 100);
+        assertEquals("rossz a periodus", 6, detector.getPeriod());
+        model.setState(0, 0, CellState.WIRE);
+        model.step();
+        detector.record(model);
+        assertEquals("szerkesztes utan is megmaradt a periodus", 0, detector.getPeriod());
+    }
+}
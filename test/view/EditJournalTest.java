@@ -0,0 +1,193 @@
+package view;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class EditJournalTest {
+
+    Path directory;
+    CellGrid cellGrid;
+    EditJournal journal;
+
+    /**
+     * sets up the test class - a headless grid with a 6-cell clock loop, journaled into
+     * a temporary directory and compacted only when asked to
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        cellGrid = new CellGrid(new SimulationModel(20, 5), 0, false);
+        int[][] loop = {{2, 1}, {3, 1}, {4, 2}, {3, 3}, {2, 3}, {1, 2}};
+        for (int[] cell : loop) {
+            cellGrid.editCell(cell[0], cell[1], CellState.WIRE);
+        }
+        cellGrid.editCell(3, 1, CellState.HEAD);
+        cellGrid.editCell(2, 1, CellState.TAIL);
+        journal = new EditJournal(directory, 0, EditJournal.defaultMaxRecords);
+        cellGrid.setJournal(journal);
+    }
+
+    /**
+     * deletes the temporary directory
+     */
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * tests that the edits made between the steps are replayed on the first snapshot
+     */
+    @Test
+    public void recover() throws Exception {
+        cellGrid.editCell(8, 2, CellState.WIRE);
+        cellGrid.nextStep();
+        cellGrid.nextStep();
+        cellGrid.editCell(9, 2, CellState.WIRE);
+        cellGrid.editCell(9, 2, CellState.HEAD);
+        cellGrid.nextStep();
+        cellGrid.cycleCell(12, 4);
+        assertRecovered();
+    }
+
+    /**
+     * tests that the recovered work survives a crash right after the next start: the first
+     * snapshot of the restarted journal is durable before the older files are deleted
+     */
+    @Test
+    public void restart() throws Exception {
+        cellGrid.editCell(8, 2, CellState.WIRE);
+        cellGrid.nextStep();
+        cellGrid.editCell(9, 2, CellState.HEAD);
+        journal.close();
+        EditJournal restarted = new EditJournal(directory, 0, EditJournal.defaultMaxRecords);
+        journal = restarted;
+        cellGrid = new CellGrid(restarted.recover(), 0, false);
+        cellGrid.setJournal(restarted);
+        SimulationModel expected = cellGrid.getModel();
+        SimulationModel actual = new EditJournal(directory, 0, EditJournal.defaultMaxRecords).recover();
+        assertNotNull(actual);
+        assertEquals("rossz a generacio", expected.getGeneration(), actual.getGeneration());
+        for (int i = 0; i < expected.getWidth() * expected.getHeight(); i++) {
+            assertEquals(String.format("rossz allapotban van a(z) %s. cella", i), expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * tests that compaction replaces the older files with a snapshot and a new journal
+     */
+    @Test
+    public void compact() throws Exception {
+        cellGrid.editCell(8, 2, CellState.WIRE);
+        cellGrid.nextStep();
+        journal.compact();
+        cellGrid.nextStep();
+        cellGrid.editCell(9, 2, CellState.HEAD);
+        assertRecovered();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals("rossz a fajlok szama", 2, files.count());
+        }
+    }
+
+    /**
+     * tests that going back in the history is recorded, so that the steps after it are replayed
+     * from the restored generation
+     */
+    @Test
+    public void stepBack() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            cellGrid.nextStep();
+        }
+        assertTrue(cellGrid.stepBack());
+        assertTrue(cellGrid.stepBack());
+        cellGrid.nextStep();
+        cellGrid.editCell(8, 2, CellState.WIRE);
+        assertEquals(4, cellGrid.getModel().getGeneration());
+        assertRecovered();
+    }
+
+    /**
+     * tests that clearing the grid is journaled
+     */
+    @Test
+    public void clear() throws Exception {
+        cellGrid.nextStep();
+        cellGrid.clearAllCells();
+        cellGrid.editCell(5, 2, CellState.WIRE);
+        assertRecovered();
+        assertEquals(1, cellGrid.getModel().count(CellState.WIRE));
+    }
+
+    /**
+     * tests that closing the journal while the simulation is stepping doesn't stop the
+     * simulation: the journal stops taking records instead of failing the step
+     */
+    @Test
+    public void closeWhileRunning() throws Exception {
+        CountDownLatch stepped = new CountDownLatch(100);
+        cellGrid.addStepListener(model -> stepped.countDown());
+        cellGrid.runSimulation();
+        assertTrue("nem lepett a szimulacio", stepped.await(5, TimeUnit.SECONDS));
+        journal.close();
+        long generation = cellGrid.getModel().getGeneration();
+        while (cellGrid.getModel().getGeneration() < generation + 100 && cellGrid.isRunning()) {
+            Thread.onSpinWait();
+        }
+        assertTrue("leallt a szimulacio", cellGrid.isRunning());
+        cellGrid.stopSimulation();
+    }
+
+    /**
+     * tests that a record torn by a crash at the end of the journal is ignored
+     */
+    @Test
+    public void tornRecord() throws Exception {
+        cellGrid.nextStep();
+        cellGrid.editCell(8, 2, CellState.WIRE);
+        journal.close();
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.filter(file -> file.getFileName().toString().startsWith("journal")).max(Path::compareTo).orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 5, 0, 0, 0}));
+        }
+        assertRecovered();
+    }
+
+    /**
+     * closes the journal and compares the simulation recovered from it with the grid
+     */
+    private void assertRecovered() throws IOException {
+        journal.close();
+        SimulationModel expected = cellGrid.getModel();
+        SimulationModel actual = new EditJournal(directory, 0, EditJournal.defaultMaxRecords).recover();
+        assertNotNull(actual);
+        assertEquals("rossz a generacio", expected.getGeneration(), actual.getGeneration());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, y),
+                        expected.getState(x, y), actual.getState(x, y));
+            }
+        }
+    }
+}
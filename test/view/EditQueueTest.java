@@ -0,0 +1,63 @@
+package view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EditQueueTest {
+
+    /**
+     * tests that the edits of several producers all arrive, each producer's in its own order
+     */
+    @Test
+    public void producers() throws InterruptedException {
+        EditQueue queue = new EditQueue();
+        int producers = 4, editsPerProducer = 20000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int k = 0; k < editsPerProducer; k++) {
+                    queue.offer(producer, k, CellState.WIRE);
+                }
+            });
+            threads[p].start();
+        }
+        int[] received = new int[producers];
+        int total = 0;
+        while (total < producers * editsPerProducer) {
+            EditQueue.Edit edit = queue.poll();
+            if (edit == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals("rossz sorrendben jott a szerkesztes", received[edit.x], edit.y);
+            received[edit.x]++;
+            total++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(queue.poll());
+    }
+
+    /**
+     * tests that clearing is queued between the edits
+     */
+    @Test
+    public void clear() {
+        EditQueue queue = new EditQueue();
+        assertNull(queue.poll());
+        queue.offer(1, 2, CellState.HEAD);
+        queue.offerClear();
+        queue.offer(3, 4, CellState.TAIL);
+        EditQueue.Edit edit = queue.poll();
+        assertFalse(edit.isClear());
+        assertEquals(CellState.HEAD, edit.state);
+        assertTrue(queue.poll().isClear());
+        edit = queue.poll();
+        assertEquals(3, edit.x);
+        assertEquals(CellState.TAIL, edit.state);
+        assertNull(queue.poll());
+    }
+}
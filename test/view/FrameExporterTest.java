@@ -0,0 +1,132 @@
+package view;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameExporterTest {
+
+    File directory;
+    SimulationModel model;
+    final int width = 150, height = 120;
+
+    /**
+     * creates a temporary directory and a model with random cells
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("frames").toFile();
+        model = randomModel();
+    }
+
+    /**
+     * deletes the exported files
+     */
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * tests the GIF export: every frame should show the generation it was taken of, decoded by
+     * the GIF reader of the JDK. The random frames are big enough to fill the LZW dictionary.
+     */
+    @Test
+    public void gif() throws IOException, InterruptedException {
+        FrameExporter exporter = new FrameExporter(3);
+        exporter.setStride(3);
+        File gif = new File(directory, "run.gif");
+        assertEquals(5, exporter.export(model, gif, 13));
+        assertEquals(13, model.getGeneration());
+        SimulationModel reference = randomModel();
+        try (ImageInputStream in = ImageIO.createImageInputStream(gif)) {
+            ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+            reader.setInput(in);
+            assertEquals(5, reader.getNumImages(true));
+            for (int f = 0; f < 5; f++) {
+                assertFrame(reference, reader.read(f), 0, 0, 1);
+                reference.advance(3);
+            }
+        }
+    }
+
+    /**
+     * tests the PNG export of a scaled region
+     */
+    @Test
+    public void pngs() throws IOException, InterruptedException {
+        FrameExporter exporter = new FrameExporter(2);
+        exporter.setRegion(10, 20, 33, 17);
+        exporter.setScale(3);
+        assertEquals(4, exporter.export(model, directory, 3));
+        SimulationModel reference = randomModel();
+        for (int f = 0; f < 4; f++) {
+            BufferedImage image = ImageIO.read(new File(directory, String.format("frame%06d.png", f)));
+            assertEquals(99, image.getWidth());
+            assertEquals(51, image.getHeight());
+            assertFrame(reference, image, 10, 20, 3);
+            reference.step();
+        }
+    }
+
+    /**
+     * tests that a region outside of the grid is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void regionOutside() throws IOException, InterruptedException {
+        FrameExporter exporter = new FrameExporter(1);
+        exporter.setRegion(100, 100, 51, 10);
+        exporter.export(model, new File(directory, "run.gif"), 1);
+    }
+
+    /**
+     * asserts that an exported image shows the cells of a model
+     * @param reference the model in the generation of the frame
+     * @param image the exported image
+     * @param fromX x coordinate of the region
+     * @param fromY y coordinate of the region
+     * @param scale the size of a cell in pixels
+     */
+    private void assertFrame(SimulationModel reference, BufferedImage image, int fromX, int fromY, int scale) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int cellX = fromX + x / scale, cellY = fromY + y / scale;
+                assertEquals(String.format("rossz szinu a(z) %s, %s cella", cellX, cellY),
+                        Cell.colorOf(reference.getState(cellX, cellY)).getRGB(), image.getRGB(x, y));
+            }
+        }
+    }
+
+    /**
+     * creates a model with random cells, the same every time
+     * @return the model
+     */
+    private SimulationModel randomModel() {
+        SimulationModel model = new SimulationModel(width, height);
+        Random random = new Random(5);
+        CellState[] states = CellState.values();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                model.setState(x, y, states[random.nextInt(states.length)]);
+            }
+        }
+        return model;
+    }
+}
@@ -24,13 +24,15 @@ public class GUITest {
     }
 
     /**
-     * tests the drawGrid method. After calling the drawGrid method,
-     * the JPanel should have height*width components.
+     * tests the drawGrid method. After calling the drawGrid method, the JPanel should
+     * have a single canvas with the size of height*width cells, also after redrawing it.
      */
     @Test
     public void drawGrid() {
-        JPanel buttonPanel = new JPanel(new GridLayout(height, width));
-        gui.drawGrid(buttonPanel);
-        assertEquals(height * width, buttonPanel.getComponentCount());
+        JPanel gridPanel = new JPanel(new BorderLayout());
+        gui.drawGrid(gridPanel);
+        gui.drawGrid(gridPanel);
+        assertEquals(1, gridPanel.getComponentCount());
+        assertEquals(new Dimension(width * cellSize, height * cellSize), gridPanel.getComponent(0).getPreferredSize());
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashlifeEngineTest {
+
+    SimulationModel expected, actual;
+    final int width = 45, height = 30;
+
+    /**
+     * sets up two identical models with random cells
+     */
+    @Before
+    public void setUp() {
+        expected = new SimulationModel(width, height);
+        actual = new SimulationModel(width, height);
+        Random random = new Random(42);
+        CellState[] states = CellState.values();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                CellState state = random.nextInt(3) == 0 ? CellState.EMPTY : states[random.nextInt(states.length)];
+                expected.setState(x, y, state);
+                actual.setState(x, y, state);
+            }
+        }
+        actual.setEngine(new HashlifeEngine());
+    }
+
+    /**
+     * tests that the hashlife engine computes the same generations as the naive one,
+     * both stepping one by one and advancing many generations at once
+     */
+    @Test
+    public void advance() {
+        for (int i = 0; i < 10; i++) {
+            expected.step();
+            actual.step();
+            assertEquals(expected.getChangedCount(), actual.getChangedCount());
+            assertSameCells();
+        }
+        expected.advance(77);
+        actual.advance(77);
+        assertSameCells();
+        assertEquals(87, actual.getGeneration());
+    }
+
+    /**
+     * tests a jump of 2^40 generations on a clock loop of 6 cells: as 2^40 % 6 == 4,
+     * the loop should be in the same state as after 4 generations
+     */
+    @Test
+    public void fastForward() {
+        SimulationModel model = clockLoop();
+        SimulationModel reference = clockLoop();
+        model.setEngine(new HashlifeEngine(1000));
+        model.advance(1L << 40);
+        reference.advance(4);
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 6; x++) {
+                assertEquals(reference.getState(x, y), model.getState(x, y));
+            }
+        }
+        assertEquals(1L << 40, model.getGeneration());
+    }
+
+    /**
+     * creates a loop of 6 cells with one electron in it, its period is 6
+     * @return the model of the loop
+     */
+    private SimulationModel clockLoop() {
+        SimulationModel model = new SimulationModel(6, 5);
+        int[][] loop = {{2, 1}, {3, 1}, {4, 2}, {3, 3}, {2, 3}, {1, 2}};
+        for (int[] cell : loop) {
+            model.setState(cell[0], cell[1], CellState.WIRE);
+        }
+        model.setState(3, 1, CellState.HEAD);
+        model.setState(2, 1, CellState.TAIL);
+        return model;
+    }
+
+    private void assertSameCells() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, y),
+                        expected.getState(x, y), actual.getState(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedEngineTest {
+
+    SimulationModel expected, actual;
+    IndexedEngine engine;
+    final int width = 71, height = 45;
+    final Random random = new Random(42);
+
+    /**
+     * sets up two identical models with random cells
+     */
+    @Before
+    public void setUp() {
+        expected = new SimulationModel(width, height);
+        actual = new SimulationModel(width, height);
+        CellState[] states = CellState.values();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                set(x, y, random.nextInt(3) == 0 ? CellState.EMPTY : states[random.nextInt(states.length)]);
+            }
+        }
+        engine = new IndexedEngine();
+        actual.setEngine(engine);
+    }
+
+    /**
+     * tests that the indexed engine computes the same generations as the naive one,
+     * both stepping one by one and advancing many generations at once
+     */
+    @Test
+    public void advance() {
+        for (int i = 0; i < 20; i++) {
+            expected.step();
+            actual.step();
+            assertEquals(expected.getChangedCount(), actual.getChangedCount());
+            assertSameCells();
+        }
+        expected.advance(33);
+        actual.advance(33);
+        assertSameCells();
+        assertEquals(53, actual.getGeneration());
+    }
+
+    /**
+     * tests that the index only holds the non-empty cells, and every neighbour pair twice
+     */
+    @Test
+    public void index() {
+        SimulationModel model = new SimulationModel(5, 5);
+        model.setEngine(engine);
+        model.setState(1, 1, CellState.WIRE);
+        model.setState(2, 2, CellState.WIRE);
+        model.setState(3, 2, CellState.HEAD);
+        model.setState(0, 4, CellState.WIRE);
+        model.step();
+        assertEquals(4, engine.getCellCount());
+        assertEquals(4, engine.getNeighbourCount());
+    }
+
+    /**
+     * tests that drawing, erasing and sparking cells between the steps patches the index
+     * so that it computes the same generations as a fresh one
+     */
+    @Test
+    public void editBetweenSteps() {
+        CellState[] states = CellState.values();
+        for (int i = 0; i < 50; i++) {
+            actual.step();
+            expected.step();
+            for (int edit = 0; edit < 20; edit++) {
+                set(random.nextInt(width), random.nextInt(height), states[random.nextInt(states.length)]);
+            }
+            actual.step();
+            expected.step();
+            assertEquals(expected.getChangedCount(), actual.getChangedCount());
+            assertSameCells();
+        }
+        int cells = engine.getCellCount(), neighbours = engine.getNeighbourCount();
+        IndexedEngine fresh = new IndexedEngine();
+        actual.setEngine(fresh);
+        actual.step();
+        expected.step();
+        assertSameCells();
+        assertEquals(cells, fresh.getCellCount());
+        assertEquals(neighbours, fresh.getNeighbourCount());
+    }
+
+    /**
+     * tests that more edits than the edit log holds and clearing the model are picked up
+     */
+    @Test
+    public void manyEdits() {
+        actual.step();
+        expected.step();
+        for (int edit = 0; edit < 3 * SimulationModel.editLogSize; edit++) {
+            set(random.nextInt(width), random.nextInt(height), CellState.WIRE);
+        }
+        actual.advance(10);
+        expected.advance(10);
+        assertSameCells();
+        actual.clear();
+        expected.clear();
+        set(3, 3, CellState.HEAD);
+        set(4, 3, CellState.WIRE);
+        actual.step();
+        expected.step();
+        assertSameCells();
+        assertEquals(2, engine.getCellCount());
+    }
+
+    private void set(int x, int y, CellState state) {
+        expected.setState(x, y, state);
+        actual.setState(x, y, state);
+    }
+
+    private void assertSameCells() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, y),
+                        expected.getState(x, y), actual.getState(x, y));
+            }
+        }
+    }
+}
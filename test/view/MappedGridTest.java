@@ -0,0 +1,130 @@
+package view;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MappedGridTest {
+
+    Path file;
+    final Random random = new Random(11);
+
+    /**
+     * creates a temporary file for the grid
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("mapped", ".wire");
+    }
+
+    /**
+     * deletes the temporary file
+     */
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    /**
+     * tests that stepping in place computes the same generations as the naive engine, for widths
+     * that don't fill the packed bytes or the words of the rows
+     */
+    @Test
+    public void step() throws IOException {
+        for (int[] size : new int[][]{{71, 45}, {130, 7}, {3, 20}, {64, 9}, {33, 1}}) {
+            SimulationModel expected = randomModel(size[0], size[1]);
+            try (MappedGrid grid = MappedGrid.create(file, size[0], size[1])) {
+                for (int y = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++) {
+                        grid.setState(x, y, expected.getState(x, y));
+                    }
+                }
+                for (int g = 0; g < 30; g++) {
+                    expected.step();
+                    grid.step();
+                    assertSameCells(expected, grid);
+                }
+                assertEquals(30, grid.getGeneration());
+                assertEquals(expected.count(CellState.HEAD), grid.count(CellState.HEAD));
+                assertEquals(expected.count(CellState.EMPTY), grid.count(CellState.EMPTY));
+            }
+        }
+    }
+
+    /**
+     * tests that a saved simulation is opened by mapping it, and the file stays loadable
+     * with the generation and the cells of the mapped grid after advancing it
+     */
+    @Test
+    public void openSaved() throws Exception {
+        SimulationModel expected = randomModel(57, 31);
+        expected.advance(5);
+        SavedSims savedSims = new SavedSims(".wire");
+        savedSims.saveModel(expected, 500, file.toFile());
+        try (MappedGrid grid = MappedGrid.open(file)) {
+            assertEquals(5, grid.getGeneration());
+            assertSameCells(expected, grid);
+            grid.advance(12);
+        }
+        expected.advance(12);
+        SimulationModel saved = savedSims.loadModel(file.toFile());
+        assertEquals(17, saved.getGeneration());
+        for (int i = 0; i < expected.getWidth() * expected.getHeight(); i++) {
+            assertEquals(expected.get(i), saved.get(i));
+        }
+    }
+
+    /**
+     * tests that run-length encoded files are refused, as their cells can't be addressed in place
+     */
+    @Test(expected = IOException.class)
+    public void runLengthRefused() throws Exception {
+        SimulationModel sparse = new SimulationModel(100, 100);
+        sparse.setState(50, 50, CellState.WIRE);
+        new SavedSims(".wire").saveModel(sparse, 500, file.toFile());
+        MappedGrid.open(file).close();
+    }
+
+    /**
+     * tests the toModel method, the region should hold the cells of the grid
+     */
+    @Test
+    public void toModel() throws IOException {
+        try (MappedGrid grid = MappedGrid.create(file, 40, 40)) {
+            grid.setState(10, 12, CellState.HEAD);
+            grid.setState(11, 12, CellState.WIRE);
+            grid.step();
+            SimulationModel region = grid.toModel(10, 10, 5, 5);
+            assertEquals(CellState.TAIL, region.getState(0, 2));
+            assertEquals(CellState.HEAD, region.getState(1, 2));
+            assertEquals(1, region.getGeneration());
+        }
+    }
+
+    private SimulationModel randomModel(int width, int height) {
+        SimulationModel model = new SimulationModel(width, height);
+        CellState[] states = CellState.values();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                model.setState(x, y, random.nextInt(3) == 0 ? CellState.EMPTY : states[random.nextInt(states.length)]);
+            }
+        }
+        return model;
+    }
+
+    private void assertSameCells(SimulationModel expected, MappedGrid actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, y),
+                        expected.getState(x, y), actual.getState(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NetlistEngineTest {
+
+    SimulationModel expected, actual;
+    final int width = 71, height = 45;
+
+    /**
+     * sets up two identical models with random wires, branching and crossing each other,
+     * and electrons on them
+     */
+    @Before
+    public void setUp() {
+        expected = new SimulationModel(width, height);
+        actual = new SimulationModel(width, height);
+        Random random = new Random(42);
+        int[] dx = {1, 1, 0, -1, -1, -1, 0, 1}, dy = {0, 1, 1, 1, 0, -1, -1, -1};
+        for (int wire = 0; wire < 12; wire++) {
+            int x = random.nextInt(width), y = random.nextInt(height), direction = random.nextInt(8);
+            for (int length = 0; length < 60; length++) {
+                if (random.nextInt(6) == 0)
+                    direction = (direction + (random.nextBoolean() ? 1 : 7)) % 8;
+                x = Math.max(0, Math.min(width - 1, x + dx[direction]));
+                y = Math.max(0, Math.min(height - 1, y + dy[direction]));
+                set(x, y, CellState.WIRE);
+            }
+        }
+        for (int spark = 0; spark < 40; spark++) {
+            int x = random.nextInt(width), y = random.nextInt(height);
+            if (expected.getState(x, y) == CellState.WIRE)
+                set(x, y, CellState.HEAD);
+        }
+        actual.setEngine(new NetlistEngine());
+    }
+
+    /**
+     * tests that the netlist engine computes the same generations as the naive one,
+     * both stepping one by one and advancing many generations at once
+     */
+    @Test
+    public void advance() {
+        for (int i = 0; i < 20; i++) {
+            expected.step();
+            actual.step();
+            assertEquals(expected.getChangedCount(), actual.getChangedCount());
+            assertSameCells();
+        }
+        expected.advance(33);
+        actual.advance(33);
+        assertSameCells();
+        expected.advance(500);
+        actual.advance(500);
+        assertSameCells();
+        assertEquals(553, actual.getGeneration());
+    }
+
+    /**
+     * tests that edits made between two steps are picked up by the engine
+     */
+    @Test
+    public void editBetweenSteps() {
+        actual.step();
+        expected.step();
+        for (int x = 0; x < width; x++) {
+            set(x, 20, CellState.WIRE);
+        }
+        set(0, 20, CellState.HEAD);
+        actual.advance(100);
+        expected.advance(100);
+        assertSameCells();
+    }
+
+    /**
+     * tests a long idle wire with a single electron, it's a delay line between the two end
+     * cells and only the cells the electron left or reached should change
+     */
+    @Test
+    public void singleElectron() {
+        SimulationModel model = new SimulationModel(width, 1);
+        NetlistEngine engine = new NetlistEngine();
+        model.setEngine(engine);
+        for (int x = 0; x < width; x++) {
+            model.setState(x, 0, CellState.WIRE);
+        }
+        model.setState(1, 0, CellState.HEAD);
+        model.setState(0, 0, CellState.TAIL);
+        model.advance(10);
+        assertEquals(2, engine.getNodeCount());
+        assertEquals(1, engine.getRunCount());
+        assertEquals(0, engine.getExplicitRunCount());
+        assertEquals(CellState.HEAD, model.getState(11, 0));
+        assertEquals(CellState.TAIL, model.getState(10, 0));
+        assertEquals(4, model.getChangedCount());
+        model.step();
+        assertEquals(3, model.getChangedCount());
+        model.advance(200);
+        assertEquals(0, model.count(CellState.HEAD) + model.count(CellState.TAIL));
+    }
+
+    /**
+     * tests two electrons meeting in the middle of a wire: the line is simulated cell by cell
+     * while they collide, and becomes a delay line again once they're gone
+     */
+    @Test
+    public void collision() {
+        expected = new SimulationModel(width, 1);
+        actual = new SimulationModel(width, 1);
+        NetlistEngine engine = new NetlistEngine();
+        actual.setEngine(engine);
+        for (int x = 0; x < width; x++) {
+            set(x, 0, CellState.WIRE);
+        }
+        set(5, 0, CellState.HEAD);
+        set(4, 0, CellState.TAIL);
+        set(width - 6, 0, CellState.HEAD);
+        set(width - 5, 0, CellState.TAIL);
+        actual.step();
+        expected.step();
+        assertEquals(1, engine.getExplicitRunCount());
+        for (int i = 0; i < width; i++) {
+            actual.step();
+            expected.step();
+            assertSameCells();
+        }
+        assertEquals(0, engine.getExplicitRunCount());
+        assertEquals(0, actual.count(CellState.HEAD));
+        actual.setState(3, 0, CellState.HEAD);
+        actual.setState(2, 0, CellState.TAIL);
+        actual.advance(20);
+        assertEquals(0, engine.getExplicitRunCount());
+        assertEquals(CellState.HEAD, actual.getState(23, 0));
+    }
+
+    /**
+     * tests a closed loop without junctions, it's a single ring that the electrons circle forever
+     */
+    @Test
+    public void ring() {
+        int side = 20;
+        expected = new SimulationModel(side + 2, side + 2);
+        actual = new SimulationModel(side + 2, side + 2);
+        NetlistEngine engine = new NetlistEngine();
+        actual.setEngine(engine);
+        //the corners are cut so that every cell has two neighbours that don't touch each other
+        for (int k = 1; k <= side; k++) {
+            set(k, 0, CellState.WIRE);
+            set(side + 1, k, CellState.WIRE);
+            set(k, side + 1, CellState.WIRE);
+            set(0, k, CellState.WIRE);
+        }
+        set(5, 0, CellState.HEAD);
+        set(4, 0, CellState.TAIL);
+        set(side + 1, 10, CellState.HEAD);
+        set(side + 1, 9, CellState.TAIL);
+        actual.advance(1000);
+        expected.advance(1000);
+        assertEquals(0, engine.getNodeCount());
+        assertEquals(1, engine.getRunCount());
+        assertEquals(0, engine.getExplicitRunCount());
+        assertSameCells();
+        assertEquals(2, actual.count(CellState.HEAD));
+    }
+
+    private void set(int x, int y, CellState state) {
+        expected.setState(x, y, state);
+        actual.setState(x, y, state);
+    }
+
+    private void assertSameCells() {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella", x, y),
+                        expected.getState(x, y), actual.getState(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package view;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class PatternGeneratorTest {
+
+    File file;
+
+    /**
+     * creates a temporary file for the patterns
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("pattern", ".wire").toFile();
+    }
+
+    /**
+     * deletes the temporary file
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * tests that the written files contain the same cells as the models, for widths that don't
+     * fill the packed bytes, and that they can be mapped
+     */
+    @Test
+    public void write() throws IOException, ClassNotFoundException {
+        for (String pattern : new String[]{"clocks", "delaylines", "diodes", "mesh"}) {
+            PatternGenerator generator = new PatternGenerator(pattern, 83, 45);
+            generator.write(file);
+            SimulationModel expected = generator.toModel();
+            SimulationModel loaded = new SavedSims(".wire").loadModel(file);
+            try (MappedGrid grid = MappedGrid.open(file.toPath())) {
+                for (int y = 0; y < 45; y++) {
+                    for (int x = 0; x < 83; x++) {
+                        assertEquals(String.format("rossz allapotban van a(z) %s, %s cella (%s)", x, y, pattern),
+                                expected.getState(x, y), loaded.getState(x, y));
+                        assertEquals(expected.getState(x, y), grid.getState(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * tests that the electrons of the circuits keep running: the clocks and the racetracks return
+     * to their first state after at most a round, and never run out of heads
+     */
+    @Test
+    public void running() {
+        for (String pattern : new String[]{"clocks", "delaylines", "diodes"}) {
+            SimulationModel model = new PatternGenerator(pattern, 200, 50).toModel();
+            SimulationModel start = new PatternGenerator(pattern, 200, 50).toModel();
+            assertTrue(model.count(CellState.HEAD) > 10);
+            int period = 0;
+            do {
+                model.step();
+                period++;
+                assertTrue(pattern, model.count(CellState.HEAD) > 0);
+            } while (!sameCells(start, model) && period <= 2 * (200 + 50));
+            assertTrue(pattern + " period " + period, period <= 2 * (200 + 50));
+        }
+    }
+
+    /**
+     * compares the cells of two models
+     * @param expected a model
+     * @param actual a model of the same size
+     * @return true if every cell has the same state
+     */
+    private boolean sameCells(SimulationModel expected, SimulationModel actual) {
+        for (int i = 0; i < expected.getWidth() * expected.getHeight(); i++) {
+            if (expected.get(i) != actual.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * tests that the mesh is reproducible, depends on the seed and follows the densities
+     */
+    @Test
+    public void mesh() {
+        PatternGenerator generator = new PatternGenerator("mesh", 300, 200);
+        generator.setWireDensity(0.3);
+        generator.setHeadDensity(0.1);
+        SimulationModel first = generator.toModel(), second = generator.toModel();
+        generator.setSeed(7);
+        SimulationModel other = generator.toModel();
+        int differences = 0;
+        for (int i = 0; i < 300 * 200; i++) {
+            assertEquals(first.get(i), second.get(i));
+            if (first.get(i) != other.get(i))
+                differences++;
+        }
+        assertTrue(differences > 1000);
+        int wires = first.count(CellState.WIRE) + first.count(CellState.HEAD);
+        assertEquals(0.3, wires / 60000.0, 0.02);
+        assertEquals(0.1, first.count(CellState.HEAD) / (double) wires, 0.02);
+    }
+
+    /**
+     * tests that an unknown pattern is rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPattern() {
+        new PatternGenerator("gliders", 10, 10);
+    }
+}
@@ -0,0 +1,101 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class RleFormatTest {
+
+    RleFormat rleFormat;
+    MCellFormat mCellFormat;
+    final String diode = "#C a diode\n"
+            + "x = 6, y = 3, rule = WireWorld\n"
+            + ".2C$\n"
+            + "BA2.C\n"
+            + "C$.2C!\n";
+
+    /**
+     * setting up the formats
+     */
+    @Before
+    public void setUp() {
+        rleFormat = new RleFormat();
+        mCellFormat = new MCellFormat();
+    }
+
+    /**
+     * tests reading an RLE pattern, including a run continued on the next line
+     * @throws IOException
+     */
+    @Test
+    public void read() throws IOException {
+        SimulationModel model = rleFormat.read(new BufferedReader(new StringReader(diode)));
+        assertEquals(6, model.getWidth());
+        assertEquals(3, model.getHeight());
+        assertEquals(CellState.EMPTY, model.getState(0, 0));
+        assertEquals(CellState.WIRE, model.getState(2, 0));
+        assertEquals(CellState.TAIL, model.getState(0, 1));
+        assertEquals(CellState.HEAD, model.getState(1, 1));
+        assertEquals(CellState.WIRE, model.getState(5, 1));
+        assertEquals(CellState.WIRE, model.getState(2, 2));
+        assertEquals(10, model.count(CellState.EMPTY));
+    }
+
+    /**
+     * tests that writing and reading an RLE and an MCell pattern gives back the same cells
+     * @throws IOException
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        SimulationModel model = new SimulationModel(200, 4);
+        for (int x = 0; x < 200; x += 2) {
+            model.setState(x, 1, CellState.WIRE);
+            model.setState(x + 1, 3, CellState.HEAD);
+        }
+        StringWriter rle = new StringWriter();
+        rleFormat.write(model, rle);
+        StringWriter mCell = new StringWriter();
+        mCellFormat.write(model, mCell);
+        for (String line : rle.toString().split("\n")) {
+            assertTrue("tul hosszu sor", line.length() <= 70);
+        }
+        SimulationModel fromRle = rleFormat.read(new BufferedReader(new StringReader(rle.toString())));
+        SimulationModel fromMCell = mCellFormat.read(new BufferedReader(new StringReader(mCell.toString())));
+        for (int i = 0; i < 200 * 4; i++) {
+            assertEquals(model.get(i), fromRle.get(i));
+            assertEquals(model.get(i), fromMCell.get(i));
+        }
+    }
+
+    /**
+     * tests that a pattern with a different rule is rejected
+     */
+    @Test(expected = IOException.class)
+    public void wrongRule() throws IOException {
+        rleFormat.read(new BufferedReader(new StringReader("x = 3, y = 3, rule = B3/S23\nobo!\n")));
+    }
+
+    /**
+     * tests that runs overflowing the declared width are rejected
+     * @throws IOException
+     */
+    @Test(expected = IOException.class)
+    public void runTooLong() throws IOException {
+        rleFormat.read(new BufferedReader(new StringReader("x = 6, y = 3, rule = WireWorld\n2147483647.2147483647.C!\n")));
+    }
+
+    /**
+     * tests that a run that would overflow the column is rejected in a pattern without a declared width
+     * @throws IOException
+     */
+    @Test(expected = IOException.class)
+    public void runOverflow() throws IOException {
+        mCellFormat.read(new BufferedReader(new StringReader("#MCell 4.20\n#GAME WireWorld\n#L 2147483647.2147483647.C\n")));
+    }
+}
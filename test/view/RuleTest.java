@@ -0,0 +1,175 @@
+package view;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RuleTest {
+
+    final int width = 45, height = 30;
+
+    /**
+     * tests that the compiled table of Wireworld gives the classic transitions
+     */
+    @Test
+    public void wireworld() {
+        Rule rule = Rule.WIREWORLD;
+        for (int heads = 0; heads <= 8; heads++) {
+            assertEquals(CellState.EMPTY, rule.next(CellState.EMPTY, heads));
+            assertEquals(CellState.TAIL, rule.next(CellState.HEAD, heads));
+            assertEquals(CellState.WIRE, rule.next(CellState.TAIL, heads));
+            assertEquals(heads == 1 || heads == 2 ? CellState.HEAD : CellState.WIRE, rule.next(CellState.WIRE, heads));
+        }
+        assertTrue(rule.isElectronRule());
+        assertEquals(0b110, rule.getBirthCounts());
+        assertEquals(1 << CellState.WIRE.ordinal(), rule.getCountedStates());
+    }
+
+    /**
+     * tests the rules created by name
+     */
+    @Test
+    public void byName() {
+        assertSame(Rule.WIREWORLD, Rule.byName("wireworld"));
+        assertEquals(Rule.WIREWORLD, Rule.byName("21"));
+        assertEquals(0b1010, Rule.byName("13").getBirthCounts());
+        assertNotEquals(Rule.WIREWORLD, Rule.byName("2"));
+        assertThrows(IllegalArgumentException.class, () -> Rule.byName("09"));
+        assertThrows(IllegalArgumentException.class, () -> Rule.byName("life"));
+    }
+
+    /**
+     * tests that rules changing empty cells or idle wires are rejected, and that a rule changing
+     * the heads is not an electron rule
+     */
+    @Test
+    public void transitions() {
+        CellState[][] transitions = wireworldTransitions();
+        transitions[CellState.EMPTY.ordinal()][3] = CellState.WIRE;
+        assertThrows(IllegalArgumentException.class, () -> new Rule("bad", transitions));
+        CellState[][] idle = wireworldTransitions();
+        idle[CellState.WIRE.ordinal()][0] = CellState.HEAD;
+        assertThrows(IllegalArgumentException.class, () -> new Rule("bad", idle));
+        CellState[][] lasting = wireworldTransitions();
+        lasting[CellState.HEAD.ordinal()][8] = CellState.HEAD;
+        Rule rule = new Rule("lasting", lasting);
+        assertFalse(rule.isElectronRule());
+        assertEquals(CellState.HEAD, rule.next(CellState.HEAD, 8));
+        assertEquals(-1, rule.getBirthCounts());
+    }
+
+    /**
+     * tests that every engine supporting a rule computes the same generations as the naive one,
+     * also after switching the rule of a model that was already simulated
+     */
+    @Test
+    public void engines() {
+        SimulationEngine[] engines = {new ParallelEngine(), new IndexedEngine(), new HashlifeEngine(),
+                new FrontierEngine(), new BitslicedEngine()};
+        for (String name : new String[]{"2", "1357", "345678"}) {
+            Rule rule = Rule.byName(name);
+            for (SimulationEngine engine : engines) {
+                SimulationModel expected = randomModel(), actual = randomModel();
+                actual.setEngine(engine);
+                actual.advance(5);
+                expected.advance(5);
+                expected.setRule(rule);
+                actual.setRule(rule);
+                for (int i = 0; i < 5; i++) {
+                    expected.step();
+                    actual.step();
+                    assertSameCells(engine, expected, actual);
+                }
+                expected.advance(40);
+                actual.advance(40);
+                assertSameCells(engine, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * tests a rule that isn't an electron rule: only the table driven engines support it
+     */
+    @Test
+    public void tableEngines() {
+        CellState[][] transitions = wireworldTransitions();
+        for (int heads = 3; heads <= 8; heads++) {
+            transitions[CellState.HEAD.ordinal()][heads] = CellState.HEAD;
+        }
+        Rule rule = new Rule("crowded", transitions);
+        for (SimulationEngine engine : new SimulationEngine[]{new ParallelEngine(), new IndexedEngine(), new HashlifeEngine()}) {
+            SimulationModel expected = randomModel(), actual = randomModel();
+            expected.setRule(rule);
+            actual.setEngine(engine);
+            actual.setRule(rule);
+            expected.advance(30);
+            actual.advance(30);
+            assertSameCells(engine, expected, actual);
+        }
+        SimulationModel model = randomModel();
+        model.setRule(rule);
+        assertThrows(IllegalArgumentException.class, () -> model.setEngine(new FrontierEngine()));
+        assertThrows(IllegalArgumentException.class, () -> model.setEngine(new BitslicedEngine()));
+    }
+
+    /**
+     * tests that the netlist engine only supports Wireworld
+     */
+    @Test
+    public void netlist() {
+        SimulationModel model = randomModel();
+        model.setEngine(new NetlistEngine());
+        assertThrows(IllegalArgumentException.class, () -> model.setRule(Rule.byName("2")));
+        assertEquals(Rule.WIREWORLD, model.getRule());
+        model.setEngine(new NaiveEngine());
+        model.setRule(Rule.byName("2"));
+        assertThrows(IllegalArgumentException.class, () -> model.setEngine(new NetlistEngine()));
+    }
+
+    /**
+     * creates the transitions of Wireworld
+     * @return the next state for every state and number of heads around
+     */
+    private CellState[][] wireworldTransitions() {
+        CellState[][] transitions = new CellState[CellState.values().length][9];
+        for (CellState state : CellState.values()) {
+            for (int heads = 0; heads <= 8; heads++) {
+                transitions[state.ordinal()][heads] = Rule.WIREWORLD.next(state, heads);
+            }
+        }
+        return transitions;
+    }
+
+    /**
+     * creates a model with random cells, the same every time
+     * @return the model
+     */
+    private SimulationModel randomModel() {
+        SimulationModel model = new SimulationModel(width, height);
+        Random random = new Random(7);
+        CellState[] states = CellState.values();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                model.setState(x, y, random.nextInt(3) == 0 ? CellState.EMPTY : states[random.nextInt(states.length)]);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * asserts that two models have the same cells
+     * @param engine the engine of the actual model
+     * @param expected the model computed by the naive engine
+     * @param actual the model computed by the engine
+     */
+    private void assertSameCells(SimulationEngine engine, SimulationModel expected, SimulationModel actual) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(String.format("rossz allapotban van a(z) %s, %s cella (%s)", x, y, engine.getClass().getSimpleName()),
+                        expected.getState(x, y), actual.getState(x, y));
+            }
+        }
+    }
+}
@@ -6,7 +6,6 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 
 import static org.junit.Assert.*;
 
@@ -46,13 +45,19 @@ public class SavedSimsTest {
     }
 
     /**
-     * tests the saveToFile method.
+     * tests the saveToFile method. The grid is saved into a temporary file, the test1.wire
+     * fixture is only read.
      * After saving, the file's size shouldn't be 0.
      * @throws IOException
      */
     @Test
     public void saveToFile() throws IOException {
-        savedSims.saveToFile(cellGrid, new File(filename));
-        assertNotEquals(0, Files.size(Paths.get(filename)));
+        File file = File.createTempFile("saved", ".wire");
+        try {
+            savedSims.saveToFile(cellGrid, file);
+            assertNotEquals(0, Files.size(file.toPath()));
+        } finally {
+            file.delete();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package view;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class SimulationMetricsTest {
+
+    CellGrid cellGrid;
+
+    /**
+     * sets up the test class - a headless grid with a 4-cell loop and one electron in it
+     */
+    @Before
+    public void setUp() {
+        SimulationModel model = new SimulationModel(4, 3);
+        model.setState(1, 0, CellState.HEAD);
+        model.setState(2, 1, CellState.TAIL);
+        model.setState(0, 1, CellState.WIRE);
+        model.setState(1, 2, CellState.WIRE);
+        cellGrid = new CellGrid(model, 0, false);
+    }
+
+    /**
+     * tests that every step is recorded with the activity of the circuit
+     * @throws WrongCellTypeException
+     */
+    @Test
+    public void recordStep() throws WrongCellTypeException {
+        for (int i = 0; i < 5; i++) {
+            cellGrid.nextStep();
+        }
+        SimulationMetrics metrics = cellGrid.getMetrics();
+        assertEquals("rossz a lepesek szama", 5, metrics.getStepCount());
+        assertEquals("rossz a generacio", 5, metrics.getGeneration());
+        assertEquals("rossz a valtozott cellak szama", 3, metrics.getChangedCells());
+        assertEquals("rossz a fejek szama", 1, metrics.getHeadCount());
+        assertEquals("rossz a farkak szama", 1, metrics.getTailCount());
+        long steps = 0;
+        for (long count : metrics.getStepLatencyHistogram()) {
+            steps += count;
+        }
+        assertEquals("rossz a hisztogram", 5, steps);
+        assertTrue("rossz a median", metrics.getStepLatencyP50() <= metrics.getStepLatencyP99());
+        metrics.reset();
+        assertEquals("nem nullazodott a lepesek szama", 0, metrics.getStepCount());
+    }
+
+    /**
+     * tests that the heads and the tails counted from the changed cells follow the grid
+     * through edits and steps back
+     * @throws WrongCellTypeException
+     */
+    @Test
+    public void countElectrons() throws WrongCellTypeException {
+        SimulationMetrics metrics = cellGrid.getMetrics();
+        SimulationModel model = cellGrid.getModel();
+        for (int i = 0; i < 12; i++) {
+            if (i == 4)
+                cellGrid.editCell(0, 1, CellState.HEAD);
+            if (i == 8)
+                assertTrue(cellGrid.stepBack());
+            cellGrid.nextStep();
+            assertEquals("rossz a fejek szama", model.count(CellState.HEAD), metrics.getHeadCount());
+            assertEquals("rossz a farkak szama", model.count(CellState.TAIL), metrics.getTailCount());
+        }
+    }
+
+    /**
+     * tests the percentiles calculated from the histogram buckets
+     */
+    @Test
+    public void percentile() {
+        SimulationMetrics metrics = new SimulationMetrics(cellGrid.getModel());
+        for (int i = 0; i < 98; i++) {
+            metrics.recordStep(3_000, 0);
+        }
+        metrics.recordStep(100_000, 0);
+        metrics.recordStep(100_000, 0);
+        assertEquals("rossz a median", 4, metrics.getStepLatencyP50());
+        assertEquals("rossz a 99. percentilis", 128, metrics.getStepLatencyP99());
+        assertEquals("rossz a maximum", 100, metrics.getStepLatencyMax());
+        assertEquals("rossz a vodor", 0, SimulationMetrics.bucketOf(500));
+    }
+
+    /**
+     * tests that a simulation too slow for its schedule counts the missed ticks
+     * @throws InterruptedException
+     */
+    @Test
+    public void missedTicks() throws InterruptedException {
+        cellGrid.setTimeBetweenSteps(1);
+        cellGrid.addStepListener(model -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        cellGrid.runSimulation();
+        Thread.sleep(200);
+        cellGrid.stopSimulation();
+        assertTrue("nem szamolta a kimaradt utemeket", cellGrid.getMetrics().getMissedTicks() > 0);
+    }
+
+    /**
+     * tests that the metrics can be read through the platform MBean server
+     * @throws JMException
+     * @throws WrongCellTypeException
+     */
+    @Test
+    public void register() throws JMException, WrongCellTypeException {
+        cellGrid.getMetrics().register();
+        cellGrid.nextStep();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(SimulationMetrics.objectName);
+        assertEquals("rossz a lepesek szama", 1L, server.getAttribute(name, "StepCount"));
+        cellGrid.getMetrics().register();
+        assertEquals("rossz a fejek szama", 1, server.getAttribute(name, "HeadCount"));
+    }
+}
@@ -0,0 +1,59 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SimulationModelTest {
+
+    SimulationModel model;
+    final int width = 6, height = 5;
+
+    /**
+     * sets up a 6*5 model with a diode-less loop of wire: a head and a tail
+     * followed by two wire cells around a 2*2 empty hole
+     */
+    @Before
+    public void setUp() {
+        model = new SimulationModel(width, height);
+        model.setState(2, 0, CellState.WIRE);
+        model.setState(3, 1, CellState.HEAD);
+        model.setState(1, 1, CellState.WIRE);
+        model.setState(2, 2, CellState.TAIL);
+    }
+
+    /**
+     * tests the step method. After two steps the electron should have moved
+     * halfway around the loop, and the generation counter should be 2.
+     */
+    @Test
+    public void step() {
+        model.step();
+        model.step();
+        assertEquals(CellState.TAIL, model.getState(2, 0));
+        assertEquals(CellState.WIRE, model.getState(3, 1));
+        assertEquals(CellState.HEAD, model.getState(1, 1));
+        assertEquals(CellState.WIRE, model.getState(2, 2));
+        assertEquals(2, model.getGeneration());
+    }
+
+    /**
+     * tests the changed cell list. In every step exactly the three non-empty
+     * cells that aren't idle wire change.
+     */
+    @Test
+    public void getChangedCells() {
+        model.step();
+        assertEquals(3, model.getChangedCount());
+    }
+
+    /**
+     * tests the clear method. No non empty cells should be left after clearing.
+     */
+    @Test
+    public void clear() {
+        model.clear();
+        assertEquals(width * height, model.count(CellState.EMPTY));
+    }
+}
@@ -0,0 +1,123 @@
+package view;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StepHistoryTest {
+
+    SimulationModel model;
+    StepHistory history;
+    ArrayList<byte[]> states;
+
+    /**
+     * sets up the test class - a random circuit that is stepped 100 times, every state is remembered
+     */
+    @Before
+    public void setUp() {
+        model = new SimulationModel(40, 30);
+        Random random = new Random(7);
+        for (int i = 0; i < 40 * 30; i++) {
+            int r = random.nextInt(10);
+            model.set(i, r < 5 ? SimulationModel.WIRE : r == 5 ? SimulationModel.HEAD : SimulationModel.EMPTY);
+        }
+        history = new StepHistory(64, 1 << 20, 16);
+        history.reset(model);
+        states = new ArrayList<>();
+        states.add(model.current().clone());
+        for (int g = 1; g <= 100; g++) {
+            model.step();
+            history.record(model);
+            states.add(model.current().clone());
+        }
+    }
+
+    /**
+     * tests stepping back one generation at a time through the retained generations
+     */
+    @Test
+    public void stepBack() {
+        assertEquals("rossz a legregebbi generacio", 37, history.getFirstGeneration());
+        for (long g = 99; g >= 37; g--) {
+            assertTrue(String.format("nem allithato vissza a(z) %s. generacio", g), history.goTo(model, g));
+            assertArrayEquals(String.format("rossz a(z) %s. generacio", g), states.get((int) g), model.current());
+            assertEquals("rossz a generacio", g, model.getGeneration());
+        }
+        assertFalse("tul regi generacio", history.goTo(model, 36));
+    }
+
+    /**
+     * tests jumping back and forth between generations, through the keyframes as well
+     */
+    @Test
+    public void goTo() {
+        long[] targets = {40, 100, 41, 64, 63, 90, 37, 100};
+        for (long g : targets) {
+            assertTrue(String.format("nem allithato vissza a(z) %s. generacio", g), history.goTo(model, g));
+            assertArrayEquals(String.format("rossz a(z) %s. generacio", g), states.get((int) g), model.current());
+        }
+    }
+
+    /**
+     * tests that stepping again after going back records the same generations, and that
+     * an edit clears the history
+     */
+    @Test
+    public void recordAfterGoingBack() {
+        history.goTo(model, 50);
+        model.step();
+        history.record(model);
+        assertEquals("rossz a legujabb generacio", 51, history.getLastGeneration());
+        assertTrue("nem allithato vissza", history.goTo(model, 45));
+        assertArrayEquals("rossz a 45. generacio", states.get(45), model.current());
+        model.setState(0, 0, CellState.WIRE);
+        assertFalse("szerkesztes utan is visszaallithato", history.goTo(model, 44));
+    }
+
+    /**
+     * tests recording again after an edit in the middle of the retained generations, into the
+     * arrays of the history recorded before the edit
+     */
+    @Test
+    public void resetAfterEdit() {
+        history.goTo(model, 50);
+        model.setState(0, 0, CellState.HEAD);
+        history.reset(model);
+        ArrayList<byte[]> edited = new ArrayList<>();
+        edited.add(model.current().clone());
+        for (int g = 51; g <= 100; g++) {
+            model.step();
+            history.record(model);
+            edited.add(model.current().clone());
+        }
+        long[] targets = {50, 99, 64, 81, 97, 50};
+        for (long g : targets) {
+            assertTrue(String.format("nem allithato vissza a(z) %s. generacio", g), history.goTo(model, g));
+            assertArrayEquals(String.format("rossz a(z) %s. generacio", g), edited.get((int) g - 50), model.current());
+        }
+    }
+
+    /**
+     * tests the step back of CellGrid, which repaints the restored cells
+     * @throws WrongCellTypeException
+     */
+    @Test
+    public void cellGridStepBack() throws WrongCellTypeException {
+        CellGrid cellGrid = new CellGrid(4, 3, 500);
+        cellGrid.editCell(1, 0, CellState.HEAD);
+        cellGrid.editCell(2, 1, CellState.TAIL);
+        cellGrid.editCell(0, 1, CellState.WIRE);
+        cellGrid.editCell(1, 2, CellState.WIRE);
+        cellGrid.nextStep();
+        cellGrid.nextStep();
+        assertTrue("nem lehet visszalepni", cellGrid.stepBack());
+        assertTrue("nem lehet visszalepni", cellGrid.stepBack());
+        assertFalse("a kezdoallapot elott is vissza lehet lepni", cellGrid.stepBack());
+        assertEquals("rossz a generacio", 0, cellGrid.getModel().getGeneration());
+        assertEquals("rossz allapotban van az 1, 0 cella", CellState.HEAD, cellGrid.cells[1][0].getCellstate());
+        assertEquals("rossz allapotban van a 2, 1 cella", CellState.TAIL, cellGrid.cells[2][1].getCellstate());
+    }
+}
@@ -0,0 +1,89 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SummaryTilesTest {
+
+    final int width = 45, height = 23;
+    final int[] colors = {0x000000, 0x0000ff, 0xff0000, 0xffff00};
+    final Random random = new Random(3);
+    byte[] cells;
+    SummaryTiles tiles;
+
+    /**
+     * sets up the summary of a grid with a few random cells
+     */
+    @Before
+    public void setUp() {
+        cells = new byte[width * height];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (byte) (random.nextInt(8) == 0 ? 1 + random.nextInt(3) : 0);
+        }
+        tiles = new SummaryTiles(cells, width, height, colors);
+    }
+
+    /**
+     * tests the number of levels, the last one has a single block
+     */
+    @Test
+    public void levels() {
+        assertEquals(6, tiles.getLevels());
+        assertEquals(23, tiles.getImage(1).getWidth());
+        assertEquals(12, tiles.getImage(1).getHeight());
+        assertEquals(1, tiles.getImage(6).getWidth());
+        assertEquals(1, tiles.getImage(6).getHeight());
+    }
+
+    /**
+     * tests that every block shows its most visible cell, also after changing cells one by one
+     */
+    @Test
+    public void cellChanged() {
+        assertSummaries();
+        for (int k = 0; k < 500; k++) {
+            int x = random.nextInt(width), y = random.nextInt(height);
+            cells[y * width + x] = (byte) random.nextInt(4);
+            tiles.cellChanged(x, y);
+        }
+        assertSummaries();
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != 0) {
+                cells[i] = 0;
+                tiles.cellChanged(i % width, i / width);
+            }
+        }
+        assertSummaries();
+        assertEquals(CellState.EMPTY, tiles.getState(tiles.getLevels(), 0, 0));
+    }
+
+    /**
+     * compares every block with the cells it covers
+     */
+    private void assertSummaries() {
+        CellState[] byVisibility = {CellState.HEAD, CellState.TAIL, CellState.WIRE};
+        for (int level = 1; level <= tiles.getLevels(); level++) {
+            int block = 1 << level;
+            for (int by = 0; by * block < height; by++) {
+                for (int bx = 0; bx * block < width; bx++) {
+                    CellState expected = CellState.EMPTY;
+                    for (int k = byVisibility.length - 1; k >= 0; k--) {
+                        for (int y = by * block; y < Math.min((by + 1) * block, height); y++) {
+                            for (int x = bx * block; x < Math.min((bx + 1) * block, width); x++) {
+                                if (cells[y * width + x] == byVisibility[k].ordinal())
+                                    expected = byVisibility[k];
+                            }
+                        }
+                    }
+                    String message = String.format("rossz allapotban van a(z) %s. szint %s, %s blokkja", level, bx, by);
+                    assertEquals(message, expected, tiles.getState(level, bx, by));
+                    assertEquals(message, colors[expected.ordinal()], tiles.getImage(level).getRGB(bx, by) & 0xffffff);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WireFormatTest {
+
+    WireFormat wireFormat;
+    SimulationModel model;
+    final int width = 101, height = 37;
+
+    /**
+     * sets up a model with a long wire and a few electrons on it, advanced by 3 generations
+     */
+    @Before
+    public void setUp() {
+        wireFormat = new WireFormat();
+        model = new SimulationModel(width, height);
+        for (int x = 0; x < width; x++) {
+            model.setState(x, 10, CellState.WIRE);
+        }
+        model.setState(1, 10, CellState.HEAD);
+        model.setState(0, 10, CellState.TAIL);
+        model.advance(3);
+    }
+
+    /**
+     * tests writing and reading a mostly empty model, which is run-length encoded.
+     * It should be much smaller than one byte per cell.
+     * @throws IOException
+     */
+    @Test
+    public void runLength() throws IOException {
+        byte[] bytes = write(model);
+        assertEquals(WireFormat.runLengthEncoding, bytes[5]);
+        assertTrue("a file tul nagy", bytes.length < 64);
+        assertSameModel(model, read(bytes));
+        assertEquals(500, wireFormat.getTimeBetweenSteps());
+    }
+
+    /**
+     * tests writing and reading a random model, which is packed with 2 bits per cell
+     * @throws IOException
+     */
+    @Test
+    public void packed() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < width * height; i++) {
+            model.set(i, (byte) random.nextInt(4));
+        }
+        byte[] bytes = write(model);
+        assertEquals(WireFormat.packedEncoding, bytes[5]);
+        assertEquals(WireFormat.headerSize + (width * height + 3) / 4, bytes.length);
+        assertSameModel(model, read(bytes));
+    }
+
+    /**
+     * tests that files serialized with ObjectOutputStream can still be loaded
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void legacyFile() throws IOException, ClassNotFoundException {
+        CellGrid cellGrid = new CellGrid(5, 4, 300);
+        cellGrid.cells[2][1].setCellstate(CellState.HEAD);
+        File file = File.createTempFile("legacy", ".wire");
+        file.deleteOnExit();
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
+            oos.writeObject(cellGrid);
+        }
+        CellGrid loaded = new SavedSims(".wire").loadFromFile(file);
+        assertEquals(CellState.HEAD, loaded.getModel().getState(2, 1));
+        assertEquals(300, loaded.getTimeBetweenSteps());
+    }
+
+    private byte[] write(SimulationModel model) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wireFormat.write(model, 500, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private SimulationModel read(byte[] bytes) throws IOException {
+        return wireFormat.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    private void assertSameModel(SimulationModel expected, SimulationModel actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getGeneration(), actual.getGeneration());
+        for (int i = 0; i < width * height; i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+}